@@ -1,11 +1,11 @@
-package data;
-import java.awt.Color;
-import java.util.UUID;
-
-public class DataClass {	
-    public static final Color INFO_COLOR        = Color.BLUE;
-    public static final Color NEW_MUSIC_COLOR   = new Color(0, 220, 0);
-    public static final Color DEL_MUSIC_COLOR   = Color.ORANGE;
-    public static final Color ERROR_COLOR       = Color.RED;
-    public static final String ERROR_STRING		= UUID.randomUUID().toString();
-}
+package data;
+import java.awt.Color;
+import java.util.UUID;
+
+public class DataClass {	
+    public static final Color INFO_COLOR        = Color.BLUE;
+    public static final Color NEW_MUSIC_COLOR   = new Color(0, 220, 0);
+    public static final Color DEL_MUSIC_COLOR   = Color.ORANGE;
+    public static final Color ERROR_COLOR       = Color.RED;
+    public static final String ERROR_STRING		= UUID.randomUUID().toString();
+}
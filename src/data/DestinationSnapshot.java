@@ -0,0 +1,110 @@
+package data;
+
+import java.util.List;
+
+import org.jaudiotagger.tag.FieldKey;
+
+/**
+ * The tags of a music file in dst as they were when we last read or wrote them.
+ * As long as the size and last modified date of the file are unchanged, the
+ * snapshot can be compared against instead of reading the file again.
+ */
+public class DestinationSnapshot {
+	/**
+	 * The artwork digest of music without artwork.
+	 */
+	public static final long NO_ARTWORK = -1;
+	/**
+	 * The artwork digest of music whose artwork cannot be read (e.g. on an MTP
+	 * device).
+	 */
+	public static final long UNKNOWN_ARTWORK = -2;
+	private final long size;
+	private final long lastModified;
+	private final String duration;
+	private final String[] tagValues;
+	private final long artworkDigest;
+	private final long digest;
+
+	/**
+	 * @param tagValues
+	 *            - the tag values in the order of the compared field keys. Values
+	 *            that could not be read are {@link DataClass#ERROR_STRING}.
+	 */
+	public DestinationSnapshot(long size, long lastModified, String duration, String[] tagValues,
+			long artworkDigest) {
+		this.size = size;
+		this.lastModified = lastModified;
+		this.duration = duration;
+		this.tagValues = tagValues.clone();
+		this.artworkDigest = artworkDigest;
+		this.digest = digestOf(tagValues);
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	public String getDuration() {
+		return duration;
+	}
+
+	public int getTagCount() {
+		return tagValues.length;
+	}
+
+	public String getTagValue(int index) {
+		return tagValues[index];
+	}
+
+	/**
+	 * @return a copy of the tag values which can be modified freely.
+	 */
+	public String[] getTagValues() {
+		return tagValues.clone();
+	}
+
+	/**
+	 * @param fieldKeys
+	 *            - the compared field keys, in the order of the tag values.
+	 * @return the tag values as a snapshot, without computing their digest
+	 *         again.
+	 */
+	public TagSnapshot getTags(List<FieldKey> fieldKeys) {
+		return new TagSnapshot(fieldKeys, tagValues.clone(), digest);
+	}
+
+	public long getArtworkDigest() {
+		return artworkDigest;
+	}
+
+	/**
+	 * @return a digest of all the tag values. If it equals
+	 *         {@link #digestOf(String[])} of another set of values, then the
+	 *         values are (all but certainly) the same.
+	 */
+	public long getDigest() {
+		return digest;
+	}
+
+	/**
+	 * Check whether the file still has the size and last modified date it had
+	 * when the snapshot was taken. If not, it has been edited out of band and has
+	 * to be read again.
+	 */
+	public boolean isUnchanged(long currentSize, long currentLastModified) {
+		return currentSize >= 0 && currentLastModified > 0 && size == currentSize
+				&& lastModified == currentLastModified;
+	}
+
+	/**
+	 * @see TagSnapshot#digestOf(String[])
+	 */
+	public static long digestOf(String[] tagValues) {
+		return TagSnapshot.digestOf(tagValues);
+	}
+}
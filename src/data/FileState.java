@@ -0,0 +1,51 @@
+package data;
+
+/**
+ * What we remember about a music file from one sync session to the next: its
+ * size and last modified date, which are cheap to get, and its
+ * {@link Fingerprint}, which requires reading the whole file.
+ */
+public class FileState {
+	private final long size;
+	private final long lastModified;
+	private final Fingerprint fingerprint;
+
+	public FileState(long size, long lastModified, Fingerprint fingerprint) {
+		this.size = size;
+		this.lastModified = lastModified;
+		this.fingerprint = fingerprint;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	public Fingerprint getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Check whether a file still has the size and last modified date it had when
+	 * this state was recorded. If so, and the fingerprint is known, then the file
+	 * is assumed to be unchanged and does not have to be hashed again.
+	 *
+	 * @param currentSize
+	 *            - the current size of the file.
+	 * @param currentLastModified
+	 *            - the current last modified date of the file.
+	 * @return true if the file can be assumed unchanged.
+	 */
+	public boolean isUnchanged(long currentSize, long currentLastModified) {
+		return fingerprint.isKnown() && currentSize >= 0 && currentLastModified > 0 && size == currentSize
+				&& lastModified == currentLastModified;
+	}
+
+	@Override
+	public String toString() {
+		return size + " " + lastModified + " " + fingerprint;
+	}
+}
@@ -0,0 +1,82 @@
+package data;
+
+/**
+ * Two MurmurHash3 values describing the state of a music file: one for the
+ * region holding the tags and one for the audio payload. Keeping them apart
+ * lets us tell a tag-only change from a change of the music itself.
+ */
+public class Fingerprint {
+	/**
+	 * Used whenever a file cannot be read as bytes (e.g. on an MTP device). An
+	 * unknown fingerprint never {@link #matches} anything, not even itself.
+	 */
+	public static final Fingerprint UNKNOWN = new Fingerprint(0, 0, false);
+	private final int tagHash;
+	private final int audioHash;
+	private final boolean isKnown;
+
+	public Fingerprint(int tagHash, int audioHash) {
+		this(tagHash, audioHash, true);
+	}
+
+	private Fingerprint(int tagHash, int audioHash, boolean isKnown) {
+		this.tagHash = tagHash;
+		this.audioHash = audioHash;
+		this.isKnown = isKnown;
+	}
+
+	public int getTagHash() {
+		return tagHash;
+	}
+
+	public int getAudioHash() {
+		return audioHash;
+	}
+
+	public boolean isKnown() {
+		return isKnown;
+	}
+
+	/**
+	 * @return true if both fingerprints are known and their tag regions are
+	 *         equal.
+	 */
+	public boolean hasSameTags(Fingerprint other) {
+		return isKnown && other.isKnown && tagHash == other.tagHash;
+	}
+
+	/**
+	 * @return true if both fingerprints are known and their audio payloads are
+	 *         equal.
+	 */
+	public boolean hasSameAudio(Fingerprint other) {
+		return isKnown && other.isKnown && audioHash == other.audioHash;
+	}
+
+	/**
+	 * @return true if both fingerprints are known and equal, i.e. the file is
+	 *         unchanged as far as we can tell.
+	 */
+	public boolean matches(Fingerprint other) {
+		return hasSameTags(other) && hasSameAudio(other);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof Fingerprint)) {
+			return false;
+		}
+		Fingerprint other = (Fingerprint) obj;
+		return isKnown == other.isKnown && tagHash == other.tagHash && audioHash == other.audioHash;
+	}
+
+	@Override
+	public int hashCode() {
+		return isKnown ? 31 * tagHash + audioHash : 0;
+	}
+
+	@Override
+	public String toString() {
+		return tagHash + " " + audioHash;
+	}
+}
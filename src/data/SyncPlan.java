@@ -0,0 +1,139 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything a sync is going to change in dst, worked out before anything is
+ * changed: the orphaned music to delete, the music to add (or replace) and the
+ * tag changes of the music that is already there. All music is identified by
+ * its path relative to the src or dst folder, so a plan can be saved and
+ * applied later.
+ * <p>
+ * The plan also holds the state of the music in src as it was planned. Once
+ * the plan is applied, this becomes the session the next sync starts from, so
+ * an older plan never records the session of a newer one.
+ */
+public class SyncPlan {
+	private final String srcRoot;
+	private final String dstRoot;
+	private final List<String> deletes = new ArrayList<>();
+	private final List<String> adds = new ArrayList<>();
+	private final List<FilePatch> patches = new ArrayList<>();
+	private final Map<String, FileState> session = new LinkedHashMap<>();
+
+	/**
+	 * The tag changes of a single music file in dst.
+	 */
+	public static class FilePatch {
+		private final String relativePath;
+		private final TagPatch patch;
+		private final DestinationSnapshot result;
+
+		/**
+		 * @param relativePath
+		 *            - the path of the music relative to the dst folder.
+		 * @param patch
+		 *            - the changes to make.
+		 * @param result
+		 *            - how the music will look once the patch is applied. Its size
+		 *            and last modified date are not known yet.
+		 */
+		public FilePatch(String relativePath, TagPatch patch, DestinationSnapshot result) {
+			this.relativePath = relativePath;
+			this.patch = patch;
+			this.result = result;
+		}
+
+		public String getRelativePath() {
+			return relativePath;
+		}
+
+		public TagPatch getPatch() {
+			return patch;
+		}
+
+		public DestinationSnapshot getResult() {
+			return result;
+		}
+	}
+
+	/**
+	 * @param srcRoot
+	 *            - the absolute path of the src folder the plan was made for.
+	 * @param dstRoot
+	 *            - the absolute path of the dst folder the plan was made for.
+	 */
+	public SyncPlan(String srcRoot, String dstRoot) {
+		this.srcRoot = srcRoot;
+		this.dstRoot = dstRoot;
+	}
+
+	public String getSrcRoot() {
+		return srcRoot;
+	}
+
+	public String getDstRoot() {
+		return dstRoot;
+	}
+
+	/**
+	 * @param relativePath
+	 *            - the path of orphaned music relative to the dst folder.
+	 */
+	public void addDelete(String relativePath) {
+		deletes.add(relativePath);
+	}
+
+	/**
+	 * @param relativePath
+	 *            - the path of new (or replaced) music relative to the src folder.
+	 */
+	public void addAdd(String relativePath) {
+		adds.add(relativePath);
+	}
+
+	public void addPatch(FilePatch patch) {
+		patches.add(patch);
+	}
+
+	/**
+	 * @param relativePath
+	 *            - the path of music relative to the src folder.
+	 * @param fileState
+	 *            - the state of the music when it was planned.
+	 */
+	public void addSessionEntry(String relativePath, FileState fileState) {
+		session.put(relativePath, fileState);
+	}
+
+	public List<String> getDeletes() {
+		return Collections.unmodifiableList(deletes);
+	}
+
+	public List<String> getAdds() {
+		return Collections.unmodifiableList(adds);
+	}
+
+	public List<FilePatch> getPatches() {
+		return Collections.unmodifiableList(patches);
+	}
+
+	/**
+	 * @return the state of every music file in src by its relative path, in
+	 *         the order it was planned.
+	 */
+	public Map<String, FileState> getSession() {
+		return Collections.unmodifiableMap(session);
+	}
+
+	/**
+	 * @return the amount of music the plan will change.
+	 */
+	public int size() {
+		return deletes.size() + adds.size() + patches.size();
+	}
+}
@@ -0,0 +1,66 @@
+package data;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.jaudiotagger.tag.FieldKey;
+
+/**
+ * The changes that have to be made to a music file in dst to make it match its
+ * src version: either the music is replaced as a whole, or some of its tags
+ * and its artwork are changed.
+ */
+public class TagPatch {
+	public enum ArtworkAction {
+		KEEP, DELETE, REPLACE
+	}
+
+	private final boolean isReplacement;
+	private final Map<FieldKey, String> tagChanges;
+	private final ArtworkAction artworkAction;
+
+	private TagPatch(boolean isReplacement, Map<FieldKey, String> tagChanges, ArtworkAction artworkAction) {
+		this.isReplacement = isReplacement;
+		this.tagChanges = tagChanges;
+		this.artworkAction = artworkAction;
+	}
+
+	/**
+	 * @return a patch saying that the dst version has to be replaced by the src
+	 *         version.
+	 */
+	public static TagPatch replacement() {
+		return new TagPatch(true, Collections.<FieldKey, String>emptyMap(), ArtworkAction.KEEP);
+	}
+
+	/**
+	 * @param tagChanges
+	 *            - the new value of each changed tag.
+	 * @param artworkAction
+	 *            - what to do with the artwork of the dst version.
+	 * @return a patch changing the tags of the dst version.
+	 */
+	public static TagPatch tagChanges(EnumMap<FieldKey, String> tagChanges, ArtworkAction artworkAction) {
+		return new TagPatch(false, Collections.unmodifiableMap(tagChanges), artworkAction);
+	}
+
+	public boolean isReplacement() {
+		return isReplacement;
+	}
+
+	public Map<FieldKey, String> getTagChanges() {
+		return tagChanges;
+	}
+
+	public ArtworkAction getArtworkAction() {
+		return artworkAction;
+	}
+
+	/**
+	 * @return true if the patch changes anything at all.
+	 */
+	public boolean hasChanges() {
+		return isReplacement || !tagChanges.isEmpty() || artworkAction != ArtworkAction.KEEP;
+	}
+}
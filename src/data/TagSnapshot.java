@@ -0,0 +1,149 @@
+package data;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jaudiotagger.tag.FieldKey;
+
+/**
+ * The values of the compared tags of a music file, read in a single pass. The
+ * values are kept in the order of the compared field keys, which all snapshots
+ * share, and a digest of them is computed up front so that two snapshots are
+ * usually compared by their digests alone.
+ */
+public class TagSnapshot {
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private final List<FieldKey> fieldKeys;
+	private final String[] values;
+	private final long digest;
+
+	/**
+	 * @param fieldKeys
+	 *            - the compared field keys.
+	 * @param values
+	 *            - the tag values in the order of the field keys. Values that
+	 *            could not be read are {@link DataClass#ERROR_STRING}.
+	 */
+	public TagSnapshot(List<FieldKey> fieldKeys, String[] values) {
+		this(fieldKeys, values.clone(), digestOf(values));
+	}
+
+	TagSnapshot(List<FieldKey> fieldKeys, String[] values, long digest) {
+		if (fieldKeys.size() != values.length) {
+			throw new IllegalArgumentException("There are " + values.length + " values for " + fieldKeys.size()
+					+ " field keys.");
+		}
+		this.fieldKeys = fieldKeys;
+		this.values = values;
+		this.digest = digest;
+	}
+
+	public List<FieldKey> getFieldKeys() {
+		return fieldKeys;
+	}
+
+	/**
+	 * @return the value of the tag, or null if the tag is not compared.
+	 */
+	public String get(FieldKey fieldKey) {
+		final int index = fieldKeys.indexOf(fieldKey);
+		return index < 0 ? null : values[index];
+	}
+
+	public String getValue(int index) {
+		return values[index];
+	}
+
+	/**
+	 * @return a copy of the values which can be modified freely.
+	 */
+	public String[] getValues() {
+		return values.clone();
+	}
+
+	/**
+	 * @return a digest of all the values. If it equals the digest of another
+	 *         snapshot, then the values are (all but certainly) the same.
+	 */
+	public long getDigest() {
+		return digest;
+	}
+
+	/**
+	 * Find the tags whose values differ from the ones in another snapshot of the
+	 * same field keys. Values that could not be read on either side are never
+	 * considered different.
+	 *
+	 * @param other
+	 *            - the snapshot to compare with, e.g. the dst version of the
+	 *            music.
+	 * @return the field keys with a different value, mapped to the value in this
+	 *         snapshot.
+	 */
+	public EnumMap<FieldKey, String> diff(TagSnapshot other) {
+		final EnumMap<FieldKey, String> changes = new EnumMap<>(FieldKey.class);
+		if (digest == other.digest) {
+			return changes;
+		}
+		for (int i = 0; i < values.length; i++) {
+			final String value = values[i];
+			final String otherValue = other.values[i];
+			if (!value.equals(DataClass.ERROR_STRING) && !otherValue.equals(DataClass.ERROR_STRING)
+					&& !value.equals(otherValue)) {
+				changes.put(fieldKeys.get(i), value);
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * @param changes
+	 *            - new values of some of the tags.
+	 * @return a snapshot of the values once the changes are made.
+	 */
+	public TagSnapshot with(Map<FieldKey, String> changes) {
+		if (changes.isEmpty()) {
+			return this;
+		}
+		final String[] newValues = values.clone();
+		for (Map.Entry<FieldKey, String> change : changes.entrySet()) {
+			final int index = fieldKeys.indexOf(change.getKey());
+			if (index >= 0) {
+				newValues[index] = change.getValue();
+			}
+		}
+		return new TagSnapshot(fieldKeys, newValues, digestOf(newValues));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof TagSnapshot)) {
+			return false;
+		}
+		final TagSnapshot other = (TagSnapshot) obj;
+		return digest == other.digest && fieldKeys.equals(other.fieldKeys) && Arrays.equals(values, other.values);
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (digest ^ (digest >>> 32));
+	}
+
+	/**
+	 * Compute a 64-bit FNV-1a digest of the given tag values. A separator is
+	 * hashed after each value so that e.g. {"ab", "c"} and {"a", "bc"} differ.
+	 */
+	public static long digestOf(String[] values) {
+		long hash = FNV_OFFSET_BASIS;
+		for (String value : values) {
+			for (int i = 0; i < value.length(); i++) {
+				hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+			}
+			hash = (hash ^ 0xFFFF) * FNV_PRIME;
+		}
+		return hash;
+	}
+}
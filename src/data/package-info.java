@@ -1,8 +1,8 @@
-/**
- * 
- */
-/**
- * @author Aram
- *
- */
+/**
+ * 
+ */
+/**
+ * @author Aram
+ *
+ */
 package data;
\ No newline at end of file
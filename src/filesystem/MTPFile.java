@@ -1,237 +1,408 @@
-package filesystem;
-
-import java.io.File;
-import java.time.LocalDate;
-import java.time.ZoneId;
-import java.util.Calendar;
-
-import org.jaudiotagger.tag.FieldKey;
-import org.jaudiotagger.tag.images.Artwork;
-
-import data.DataClass;
-import framework.FileWrapper;
-import jmtp.PortableDeviceAudioObject;
-import jmtp.PortableDeviceFolderObject;
-import jmtp.PortableDeviceObject;
-import jmtp.PortableDeviceStorageObject;
-import util.MTPUtil;
-
-public class MTPFile implements FileWrapper {
-	private final PortableDeviceObject file;
-	private final PortableDeviceAudioObject audioFile;
-	private final String pathToFile; 
-	
-	/**
-	 * Constructs a valid MTPFile for a valid storage and file path.
-	 * 
-	 * @param storage
-	 *            - the storage object. If no storage is known at the time, then
-	 *            passing "null" will construct an invalid MTPFile. This means that
-	 *            all methods will do nothing or return default values (such as the
-	 *            empty string).
-	 * @param pathToFile
-	 *            - the path to the folder or file.
-	 * 
-	 */
-	public MTPFile(PortableDeviceStorageObject storage, String pathToFile) {
-		this.pathToFile = pathToFile;
-		// TODO Improve with Null Pattern for storage (!!!that and folderObject in MTPUtil!!!)
-		if (storage != null) {
-			file = MTPUtil.getChildFileByNameRecursively(storage, pathToFile);
-		} else {
-			file = new NullPortableDeviceObject();
-		}
-		if (file instanceof PortableDeviceAudioObject) {
-			audioFile = (PortableDeviceAudioObject) file;
-		} else {
-			// TODO improve with null pattern here as well
-			audioFile = null;
-		}
-	}
-	
-	/**
-	 * Constructs a valid MTPFile for a valid folder and file path. Behaves
-	 * similarly to the referred constructor.
-	 * 
-	 * @see #MTPFile(PortableDeviceStorageObject, String)
-	 */
-	public MTPFile(PortableDeviceFolderObject parentFolder, String pathToFile) {
-		this.pathToFile = pathToFile;
-		// TODO Improve with Null Pattern for storage (!!!that and folderObject in MTPUtil!!!)
-		if (parentFolder == null || parentFolder instanceof NullPortableDeviceFolderObject) {
-			file = new NullPortableDeviceObject();
-			System.out.println("MTP: path + " + pathToFile + " does not exist!");
-		} else {
-			file = MTPUtil.getChildFileByNameRecursively(parentFolder, pathToFile);
-			System.out.println("MTP: Constructed file of path " + pathToFile + " Path is folder? " + (file instanceof PortableDeviceFolderObject));
-		}
-		if (file instanceof PortableDeviceAudioObject) {
-			audioFile = (PortableDeviceAudioObject) file;
-		} else {
-			audioFile = null;
-		}
-	}
-	
-	/**
-	 * Private constructor for directly creating <b>known</b> MTP files.
-	 * 
-	 * @see #MTPFile(PortableDeviceStorageObject, String)
-	 */
-	private MTPFile(PortableDeviceObject file, String pathToFile) {
-		this.file = file;
-		this.pathToFile = pathToFile;
-		if (file instanceof PortableDeviceAudioObject) {
-			audioFile = (PortableDeviceAudioObject) file;
-		} else {
-			// TODO improve with null pattern here as well
-			audioFile = null;
-		}
-	}
-
-	@Override
-	public boolean isDirectory() {
-		if (file instanceof PortableDeviceFolderObject) {
-			return true;
-		} else {
-			return false;
-		}
-	}
-
-	@Override
-	public String getName() {
-		return file.getName();
-	}
-
-	@Override
-	public boolean deleteFile() {
-		if (file.canDelete()) {
-			file.delete();
-			return true;	
-		}
-		return false;
-	}
-
-//	@Override
-//	public int getUniqueHash() throws IOException {
-//		// TODO Auto-generated method stub
-//		return 0;
-//	}
-
-	@Override
-	public boolean doesFileExist() {
-		return file != null ? true : false;
-	}
-
-	@Override
-	public String getAbsolutePath() {
-		return pathToFile;
-	}
-
-	@Override
-	public FileWrapper[] listFiles() {
-		if (!isDirectory()) {
-			return null;
-		}
-		PortableDeviceObject[] deviceObjList = ((PortableDeviceFolderObject) file).getChildObjects();
-		FileWrapper[] fileList = new FileWrapper[deviceObjList.length];
-		for (int i = 0; i < deviceObjList.length; ++i) {
-			fileList[i] = new MTPFile(deviceObjList[i],
-					pathToFile + File.separator + deviceObjList[i].getOriginalFileName());
-		}
-		return fileList;
-	}
-
-	@Override
-	public String getDuration() {
-		String duration = audioFile.getDuration().toString();
-		// TODO jaudiotagger solution for duration did not work, so it has been changed
-		// to getting it from AudioHeader, which only supports duration down to seconds.
-		// Therefore, we cut off the milliseconds here with "-3".
-		return duration.substring(0, duration.length()-3);
-	}
-
-	@Override
-	public String getTagData(FieldKey fieldKey) {
-		switch (fieldKey) {
-		case TITLE:
-			return audioFile.getTitle();
-		case ARTIST:
-			return audioFile.getArtist();
-		case ALBUM_ARTIST:
-			return audioFile.getAlbumArtist();
-		case ALBUM:
-			return audioFile.getAlbum();
-		case YEAR:
-			LocalDate localDate = audioFile.getReleaseDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-			return localDate.getYear() - 1900 + "";
-		case COMPOSER:
-			return audioFile.getComposer();
-		case DISC_NO:
-			System.err.println("FATAL: Attempting to acquire disc_no from mtp when NOT IMPLEMENTED YET");
-			return DataClass.ERROR_STRING;
-		case GENRE:
-			return audioFile.getGenre();
-		case TRACK:
-			return audioFile.getTrackNumber() + "";
-		default:
-			System.err.println("FATAL: Unknown tag " + fieldKey + " from mtp is requested");
-			return DataClass.ERROR_STRING;
-		}
-	}
-
-	@Override
-	public void changeTag(FieldKey fieldKey, String tagValueSrc) {
-		System.out.println("Changing tag " + fieldKey + " to \"" + tagValueSrc + "\"");
-		switch (fieldKey) {
-		case TITLE:
-			audioFile.setTitle(tagValueSrc);
-			break;
-		case ARTIST:
-			audioFile.setArtist(tagValueSrc);
-			break;
-		case ALBUM_ARTIST:
-			audioFile.setAlbumArtist(tagValueSrc);
-			break;
-		case ALBUM:
-			audioFile.setAlbum(tagValueSrc);
-			break;
-		case YEAR:
-			// This is a very roundabout way of changing the year because Date's methods are
-			// more or less deprecated.
-			Calendar cal = Calendar.getInstance();
-			cal.setTime(audioFile.getReleaseDate());
-			cal.set(Calendar.YEAR, Integer.parseInt(tagValueSrc));
-			audioFile.setReleaseDate(cal.getTime());
-			break;
-		case COMPOSER:
-			audioFile.setComposer(tagValueSrc);
-			break;
-		case DISC_NO:
-			throw new UnsupportedOperationException(getClass().getName() + ": DISC_NO not implemented yet (because jmtp is incomplete)");
-			// REMEMBER BREAK
-		case GENRE:
-			audioFile.setGenre(tagValueSrc);
-			break;
-		case TRACK:
-			audioFile.setTrackNumber(Integer.parseInt(tagValueSrc));
-			break;
-		default:
-			System.err.println("FATAL: Unknown tag " + fieldKey + " from mtp is requested");
-			break;
-		}
-	}
-
-	@Override
-	public void applyTagChanges() { // Do nothing when using the jmtp library.
-	}
-
-	@Override
-	public Artwork getAlbumArt() {
-		throw new UnsupportedOperationException(getClass().getName() + ": getAlbumArt() not implemented yet");
-	}
-
-	@Override
-	public void changeAlbumArt(Artwork newArt) {
-		throw new UnsupportedOperationException(getClass().getName() + ": changeAlbumArt() not implemented yet");
-	}
-}
+package filesystem;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.images.Artwork;
+
+import be.derycke.pieter.com.COMException;
+import data.DataClass;
+import data.DestinationSnapshot;
+import data.Fingerprint;
+import data.TagSnapshot;
+import framework.FileWrapper;
+import jmtp.AudioPropertyChanges;
+import jmtp.AudioPropertyReader;
+import jmtp.PortableDeviceAudioObject;
+import jmtp.PortableDeviceFolderObject;
+import jmtp.PortableDeviceObject;
+import jmtp.PortableDeviceStorageObject;
+import util.MTPObjectIndex;
+import util.MTPUtil;
+
+public class MTPFile implements FileWrapper {
+	/** The object of the file. Unless it was known up front, it is looked up the first time it is needed. */
+	private PortableDeviceObject file;
+	private boolean isResolved;
+	private final String pathToFile; 
+	/** The index of the storage of the file, or null if the file was not found through one. */
+	private final MTPObjectIndex index;
+	private final Set<FieldKey> changedTags = EnumSet.noneOf(FieldKey.class);
+	/** The changed tags which have yet to be written to the device. */
+	private final AudioPropertyChanges tagChanges = new AudioPropertyChanges();
+	/** The properties of the file if it is music, once they have been read. */
+	private AudioPropertyReader.Properties properties;
+	
+	/**
+	 * Constructs a valid MTPFile for a valid storage and file path.
+	 * 
+	 * @param storage
+	 *            - the storage object. If no storage is known at the time, then
+	 *            passing "null" will construct an invalid MTPFile. This means that
+	 *            all methods will do nothing or return default values (such as the
+	 *            empty string).
+	 * @param pathToFile
+	 *            - the path to the folder or file.
+	 * 
+	 */
+	public MTPFile(PortableDeviceStorageObject storage, String pathToFile) {
+		this(storage != null ? new MTPObjectIndex(storage) : null, pathToFile);
+	}
+	
+	/**
+	 * Constructs an MTPFile whose path is looked up in the given index of its
+	 * storage. Files listed by this file share the index, so the whole storage
+	 * should share a single index for as long as it is used.
+	 * 
+	 * @param index
+	 *            - the index of the storage. If it is null, then an invalid
+	 *            MTPFile is constructed.
+	 * @param pathToFile
+	 *            - the path to the folder or file relative to the storage.
+	 * @see #MTPFile(PortableDeviceStorageObject, String)
+	 */
+	public MTPFile(MTPObjectIndex index, String pathToFile) {
+		this.pathToFile = pathToFile;
+		this.index = index;
+		// The path is only looked up once the file is used, so constructing a file costs nothing.
+		isResolved = false;
+	}
+	
+	/**
+	 * Constructs a valid MTPFile for a valid folder and file path. Behaves
+	 * similarly to the referred constructor.
+	 * 
+	 * @see #MTPFile(PortableDeviceStorageObject, String)
+	 */
+	public MTPFile(PortableDeviceFolderObject parentFolder, String pathToFile) {
+		this.pathToFile = pathToFile;
+		index = null;
+		// TODO Improve with Null Pattern for storage (!!!that and folderObject in MTPUtil!!!)
+		if (parentFolder == null || parentFolder instanceof NullPortableDeviceFolderObject) {
+			file = new NullPortableDeviceObject();
+			System.out.println("MTP: path + " + pathToFile + " does not exist!");
+		} else {
+			file = MTPUtil.getChildFileByNameRecursively(parentFolder, pathToFile);
+			System.out.println("MTP: Constructed file of path " + pathToFile + " Path is folder? " + (file instanceof PortableDeviceFolderObject));
+		}
+		isResolved = true;
+	}
+	
+	/**
+	 * Private constructor for directly creating <b>known</b> MTP files.
+	 * 
+	 * @see #MTPFile(PortableDeviceStorageObject, String)
+	 */
+	private MTPFile(PortableDeviceObject file, String pathToFile, MTPObjectIndex index) {
+		this.file = file;
+		this.pathToFile = pathToFile;
+		this.index = index;
+		isResolved = true;
+	}
+
+	/**
+	 * @return the object of the file, or null if there is no such file.
+	 */
+	private PortableDeviceObject getObject() {
+		if (!isResolved) {
+			// TODO Improve with Null Pattern for storage (!!!that and folderObject in MTPUtil!!!)
+			file = index != null ? index.get(pathToFile) : new NullPortableDeviceObject();
+			isResolved = true;
+		}
+		return file;
+	}
+
+	/**
+	 * @return the object of the file if it is music; null otherwise.
+	 */
+	private PortableDeviceAudioObject getAudioObject() {
+		final PortableDeviceObject object = getObject();
+		// TODO improve with null pattern here as well
+		return object instanceof PortableDeviceAudioObject ? (PortableDeviceAudioObject) object : null;
+	}
+
+	/**
+	 * @return the properties of the file if it is music; null otherwise. They
+	 *         are read through the index if there is one, along with those of
+	 *         the other music in the same folder.
+	 */
+	private AudioPropertyReader.Properties getProperties() {
+		if (properties == null && index != null) {
+			properties = index.getProperties(pathToFile);
+		}
+		if (properties == null && getAudioObject() != null) {
+			// Without an index, or if reading them all at once failed, they are read one at a time.
+			properties = AudioPropertyReader.Properties.of(getAudioObject());
+		}
+		return properties;
+	}
+
+	@Override
+	public boolean isDirectory() {
+		if (getObject() instanceof PortableDeviceFolderObject) {
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	@Override
+	public String getName() {
+		// The original file name is the last part of the path, so the device need not be asked.
+		if (!pathToFile.isEmpty()) {
+			return pathToFile.substring(pathToFile.lastIndexOf(File.separatorChar) + 1);
+		}
+		return getObject().getName();
+	}
+
+	@Override
+	public boolean deleteFile() {
+		final PortableDeviceObject file = getObject();
+		if (file != null && file.canDelete()) {
+			file.delete();
+			if (index != null) {
+				index.remove(pathToFile);
+			}
+			return true;	
+		}
+		return false;
+	}
+
+	@Override
+	public Fingerprint getFingerprint() {
+		// jmtp does not give us the bytes of a file without copying it to the PC first.
+		return Fingerprint.UNKNOWN;
+	}
+
+	@Override
+	public boolean doesFileExist() {
+		return getObject() != null ? true : false;
+	}
+
+	@Override
+	public long length() {
+		final PortableDeviceObject file = getObject();
+		final BigInteger size;
+		if (file instanceof PortableDeviceAudioObject && getProperties() != null) {
+			size = getProperties().getSize();
+		} else {
+			size = file != null ? file.getSize() : null;
+		}
+		return size != null ? size.longValue() : -1;
+	}
+
+	@Override
+	public long lastModified() {
+		final PortableDeviceObject file = getObject();
+		final Date dateModified;
+		if (file instanceof PortableDeviceAudioObject && getProperties() != null) {
+			dateModified = getProperties().getDateModified();
+		} else {
+			dateModified = file != null ? file.getDateModified() : null;
+		}
+		return dateModified != null ? dateModified.getTime() : 0;
+	}
+
+	@Override
+	public String getAbsolutePath() {
+		return pathToFile;
+	}
+
+	@Override
+	public FileWrapper[] listFiles() {
+		if (!isDirectory()) {
+			return null;
+		}
+		if (index != null) {
+			// The folder is only listed on the device the first time.
+			final Map<String, PortableDeviceObject> children = index.getChildren(pathToFile);
+			if (children == null) {
+				return null;
+			}
+			// The children are known already, so they are handed on instead of being looked up again.
+			FileWrapper[] fileList = new FileWrapper[children.size()];
+			int i = 0;
+			for (Map.Entry<String, PortableDeviceObject> child : children.entrySet()) {
+				fileList[i++] = new MTPFile(child.getValue(), child.getKey(), index);
+			}
+			return fileList;
+		}
+		PortableDeviceObject[] deviceObjList = ((PortableDeviceFolderObject) getObject()).getChildObjects();
+		FileWrapper[] fileList = new FileWrapper[deviceObjList.length];
+		for (int i = 0; i < deviceObjList.length; ++i) {
+			fileList[i] = new MTPFile(deviceObjList[i],
+					pathToFile + File.separator + deviceObjList[i].getOriginalFileName(), null);
+		}
+		return fileList;
+	}
+
+	@Override
+	public String getDuration() {
+		// WPD gives the duration in milliseconds, just like PCFile does.
+		return getProperties().getDuration().toString();
+	}
+
+	@Override
+	public String getTagData(FieldKey fieldKey) {
+		final AudioPropertyReader.Properties audioFile = getProperties();
+		switch (fieldKey) {
+		case TITLE:
+			return audioFile.getTitle();
+		case ARTIST:
+			return audioFile.getArtist();
+		case ALBUM_ARTIST:
+			return audioFile.getAlbumArtist();
+		case ALBUM:
+			return audioFile.getAlbum();
+		case YEAR:
+			LocalDate localDate = audioFile.getReleaseDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+			return localDate.getYear() - 1900 + "";
+		case COMPOSER:
+			return audioFile.getComposer();
+		case DISC_NO:
+			System.err.println("FATAL: Attempting to acquire disc_no from mtp when NOT IMPLEMENTED YET");
+			return DataClass.ERROR_STRING;
+		case GENRE:
+			return audioFile.getGenre();
+		case TRACK:
+			return audioFile.getTrackNumber() + "";
+		default:
+			System.err.println("FATAL: Unknown tag " + fieldKey + " from mtp is requested");
+			return DataClass.ERROR_STRING;
+		}
+	}
+
+	/**
+	 * The tags are taken from the properties of the music, which are read from
+	 * the device all at once.
+	 */
+	@Override
+	public TagSnapshot getTagSnapshot(List<FieldKey> fieldKeys) {
+		final String[] values = new String[fieldKeys.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = getTagData(fieldKeys.get(i));
+		}
+		return new TagSnapshot(fieldKeys, values);
+	}
+
+	/**
+	 * The properties stay in the index of the storage, if any, so only this
+	 * file's hold on them is let go of.
+	 */
+	@Override
+	public void release() {
+		properties = null;
+	}
+
+	@Override
+	public void changeTag(FieldKey fieldKey, String tagValueSrc) {
+		System.out.println("Changing tag " + fieldKey + " to \"" + tagValueSrc + "\"");
+		// The changes are only sent to the device by applyTagChanges.
+		switch (fieldKey) {
+		case TITLE:
+			tagChanges.setTitle(tagValueSrc);
+			break;
+		case ARTIST:
+			tagChanges.setArtist(tagValueSrc);
+			break;
+		case ALBUM_ARTIST:
+			tagChanges.setAlbumArtist(tagValueSrc);
+			break;
+		case ALBUM:
+			tagChanges.setAlbum(tagValueSrc);
+			break;
+		case YEAR:
+			// This is a very roundabout way of changing the year because Date's methods are
+			// more or less deprecated. The rest of the date is taken from the properties that
+			// were already read, rather than asked of the device once more.
+			Calendar cal = Calendar.getInstance();
+			final Date releaseDate = getProperties() != null ? getProperties().getReleaseDate() : null;
+			if (releaseDate != null) {
+				cal.setTime(releaseDate);
+			} else {
+				cal.clear();
+			}
+			cal.set(Calendar.YEAR, Integer.parseInt(tagValueSrc));
+			tagChanges.setReleaseDate(cal.getTime());
+			break;
+		case COMPOSER:
+			tagChanges.setComposer(tagValueSrc);
+			break;
+		case DISC_NO:
+			throw new UnsupportedOperationException(getClass().getName() + ": DISC_NO not implemented yet (because jmtp is incomplete)");
+			// REMEMBER BREAK
+		case GENRE:
+			tagChanges.setGenre(tagValueSrc);
+			break;
+		case TRACK:
+			tagChanges.setTrackNumber(Integer.parseInt(tagValueSrc));
+			break;
+		default:
+			System.err.println("FATAL: Unknown tag " + fieldKey + " from mtp is requested");
+			return;
+		}
+		changedTags.add(fieldKey);
+	}
+
+	/**
+	 * All the changed tags are written to the device with a single call. If
+	 * that fails, then the changes are kept.
+	 */
+	@Override
+	public boolean applyTagChanges() {
+		if (!hasTagChanges()) {
+			return false;
+		}
+		final PortableDeviceAudioObject audioFile = getAudioObject();
+		if (audioFile == null) {
+			System.err.println("FATAL: Could not write the tags of " + pathToFile + " as it is not music on the device.");
+			return false;
+		}
+		boolean isWritten;
+		try {
+			isWritten = tagChanges.writeTo(audioFile);
+		} catch (COMException e) {
+			System.err.println("FATAL: COMException occured when writing the tags of " + pathToFile + ".");
+			isWritten = false;
+		}
+		// The properties that were read may no longer match those on the device.
+		properties = null;
+		if (index != null) {
+			index.forgetProperties(pathToFile);
+		}
+		if (isWritten) {
+			tagChanges.clear();
+			changedTags.clear();
+		}
+		return isWritten;
+	}
+
+	@Override
+	public boolean hasTagChanges() {
+		return !changedTags.isEmpty();
+	}
+
+	@Override
+	public Artwork getAlbumArt() {
+		throw new UnsupportedOperationException(getClass().getName() + ": getAlbumArt() not implemented yet");
+	}
+
+	@Override
+	public long getArtworkDigest() {
+		return DestinationSnapshot.UNKNOWN_ARTWORK;
+	}
+
+	@Override
+	public void changeAlbumArt(Artwork newArt) {
+		throw new UnsupportedOperationException(getClass().getName() + ": changeAlbumArt() not implemented yet");
+	}
+}
@@ -1,68 +1,111 @@
-package filesystem;
-
-import org.jaudiotagger.tag.FieldKey;
-import org.jaudiotagger.tag.images.Artwork;
-
-import data.DataClass;
-import framework.FileWrapper;
-
-public class NullFileWrapper implements FileWrapper {
-	private static final NullFileWrapper[] NULL_FILE_WRAPPER_ARR = {new NullFileWrapper()};
-
-	@Override
-	public boolean isDirectory() {
-		return false;
-	}
-
-	@Override
-	public String getName() {
-		return DataClass.ERROR_STRING;
-	}
-
-	@Override
-	public String getAbsolutePath() {
-		return DataClass.ERROR_STRING;
-	}
-
-	@Override
-	public FileWrapper[] listFiles() {
-		return NULL_FILE_WRAPPER_ARR;
-	}
-
-	@Override
-	public boolean deleteFile() {
-		return false;
-	}
-
-	@Override
-	public boolean doesFileExist() {
-		return false;
-	}
-
-	@Override
-	public String getDuration() {
-		return DataClass.ERROR_STRING;
-	}
-
-	@Override
-	public String getTagData(FieldKey fieldKey) {
-		return DataClass.ERROR_STRING;
-	}
-
-	@Override
-	public void changeTag(FieldKey fieldKey, String tagValueSrc) { // Do nothing
-	}
-
-	@Override
-	public void applyTagChanges() { // Do nothing
-	}
-
-	@Override
-	public Artwork getAlbumArt() {
-		return null; // TODO Use null pattern for Artwork
-	}
-
-	@Override
-	public void changeAlbumArt(Artwork newArt) { // Do nothing
-	}
-}
+package filesystem;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.images.Artwork;
+
+import data.DataClass;
+import data.DestinationSnapshot;
+import data.Fingerprint;
+import data.TagSnapshot;
+import framework.FileWrapper;
+
+public class NullFileWrapper implements FileWrapper {
+	private static final NullFileWrapper[] NULL_FILE_WRAPPER_ARR = {new NullFileWrapper()};
+
+	@Override
+	public boolean isDirectory() {
+		return false;
+	}
+
+	@Override
+	public String getName() {
+		return DataClass.ERROR_STRING;
+	}
+
+	@Override
+	public String getAbsolutePath() {
+		return DataClass.ERROR_STRING;
+	}
+
+	@Override
+	public FileWrapper[] listFiles() {
+		return NULL_FILE_WRAPPER_ARR;
+	}
+
+	@Override
+	public boolean deleteFile() {
+		return false;
+	}
+
+	@Override
+	public boolean doesFileExist() {
+		return false;
+	}
+
+	@Override
+	public long length() {
+		return -1;
+	}
+
+	@Override
+	public long lastModified() {
+		return 0;
+	}
+
+	@Override
+	public Fingerprint getFingerprint() {
+		return Fingerprint.UNKNOWN;
+	}
+
+	@Override
+	public String getDuration() {
+		return DataClass.ERROR_STRING;
+	}
+
+	@Override
+	public String getTagData(FieldKey fieldKey) {
+		return DataClass.ERROR_STRING;
+	}
+
+	@Override
+	public TagSnapshot getTagSnapshot(List<FieldKey> fieldKeys) {
+		final String[] values = new String[fieldKeys.size()];
+		Arrays.fill(values, DataClass.ERROR_STRING);
+		return new TagSnapshot(fieldKeys, values);
+	}
+
+	@Override
+	public void release() { // Do nothing
+	}
+
+	@Override
+	public void changeTag(FieldKey fieldKey, String tagValueSrc) { // Do nothing
+	}
+
+	@Override
+	public boolean applyTagChanges() { // Do nothing
+		return false;
+	}
+
+	@Override
+	public boolean hasTagChanges() {
+		return false;
+	}
+
+	@Override
+	public Artwork getAlbumArt() {
+		return null; // TODO Use null pattern for Artwork
+	}
+
+	@Override
+	public long getArtworkDigest() {
+		return DestinationSnapshot.UNKNOWN_ARTWORK;
+	}
+
+	@Override
+	public void changeAlbumArt(Artwork newArt) { // Do nothing
+	}
+}
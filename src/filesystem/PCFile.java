@@ -1,188 +1,768 @@
-package filesystem;
-
-import java.io.File;
-import java.io.IOException;
-
-import org.jaudiotagger.audio.AudioFile;
-import org.jaudiotagger.audio.AudioFileIO;
-import org.jaudiotagger.audio.AudioHeader;
-import org.jaudiotagger.audio.exceptions.CannotReadException;
-import org.jaudiotagger.audio.exceptions.CannotWriteException;
-import org.jaudiotagger.audio.exceptions.InvalidAudioFrameException;
-import org.jaudiotagger.audio.exceptions.ReadOnlyFileException;
-import org.jaudiotagger.audio.mp3.MP3File;
-import org.jaudiotagger.tag.FieldDataInvalidException;
-import org.jaudiotagger.tag.FieldKey;
-import org.jaudiotagger.tag.KeyNotFoundException;
-import org.jaudiotagger.tag.Tag;
-import org.jaudiotagger.tag.TagException;
-import org.jaudiotagger.tag.id3.ID3v23Frames;
-import org.jaudiotagger.tag.images.Artwork;
-
-import data.DataClass;
-import framework.FileWrapper;
-
-public class PCFile implements FileWrapper {
-	private final File file;
-	private final String strExt;
-	private AudioFile audioFile;
-	private Tag musicTag;
-	private AudioHeader musicHeader;
-	private boolean isAudioDataInitialized = false;
-	private ID3v23Frames id3v23Frame;
-	
-	public PCFile(String pathToFile) {
-		file = new File(pathToFile);
-		final int index = pathToFile.lastIndexOf("."); // If there is no extension, this will default to -1.
-		strExt = pathToFile.substring(index + 1).toUpperCase();
-	}
-
-	@Override
-	public boolean isDirectory() {
-		return file.isDirectory();
-	}
-
-	@Override
-	public String getName() {
-		return file.getName();
-	}
-	
-	@Override
-	public String getAbsolutePath() {
-		return file.getAbsolutePath();
-	}
-
-	@Override
-	public boolean deleteFile() {
-		return file.delete();
-	}
-
-//	@Override
-//	public int getUniqueHash() throws IOException {
-//		byte[] fileEntrySrcBytes = Files.readAllBytes(file.toPath());
-//        // We use MurmurHash3 on the file itself to get a unique hash to compare with.
-//        return MurmurHash3.murmurhash3_x86_32(fileEntrySrcBytes, 0, file.getName().length(), 14); 
-//	}
-
-	@Override
-	public boolean doesFileExist() {
-		return file.exists();
-	}
-
-	@Override
-	public FileWrapper[] listFiles() {
-		File[] tempFileList = file.listFiles();
-		FileWrapper[] fileList = new FileWrapper[tempFileList.length];
-		for (int i = 0; i < tempFileList.length; ++i) {
-			fileList[i] = new PCFile(tempFileList[i].getAbsolutePath());
-		}
-		return fileList;
-	}
-	
-	/**
-	 * Initializes the tag data of the file, assuming it is an audio file, and if it
-	 * hasn't been done before (i.e. the method is called on this file for the first
-	 * time). If it has been done before, then it returns (true) immediately.
-	 * 
-	 * @return true if everything went well; false otherwise.
-	 * @throws InterruptedException 
-	 */
-	private boolean initializeMusicTagIfNecessary() throws InterruptedException {
-		if (!isAudioDataInitialized) {
-			try {
-				audioFile = AudioFileIO.read(file);
-				if (strExt.equals("MP3")) {
-					musicTag = ((MP3File) audioFile).getID3v2Tag();
-				} else {
-					musicTag = audioFile.getTag();
-				}
-				musicHeader = audioFile.getAudioHeader();
-				id3v23Frame = ID3v23Frames.getInstanceOf();
-			} catch (CannotReadException | TagException | ReadOnlyFileException
-					| InvalidAudioFrameException e) {
-				// TODO Use a logger just like in hotciv/cave
-                System.err.println("FATAL: " + e.getMessage() + System.lineSeparator() + "Type of exception: " + e.getClass().getName());
-                return false;
-			} catch (IOException e) {
-				if (audioFile == null) {
-					// Something seriously went wrong. It is likely because the user interrupted the
-					// read() operation.
-					throw new InterruptedException();
-				}
-			}
-			isAudioDataInitialized = true;
-		}
-		return true;
-	}
-	
-	@Override
-	public String getDuration() throws InterruptedException {
-		if (initializeMusicTagIfNecessary()) {
-			// For some reason, the following line stopped working, only returning the empty
-			// string. This is NOT good as the solution with getTrackLength() does NOT
-			// support milliseconds...
-			//return musicTag.getFirst(ID3v23Frames.FRAME_ID_V3_LENGTH); 
-			return musicHeader.getTrackLength() + "";
-		}
-		return DataClass.ERROR_STRING;
-	}
-	
-	@Override
-	public Artwork getAlbumArt() throws InterruptedException {
-		if (initializeMusicTagIfNecessary()) {
-			return musicTag.getFirstArtwork();
-		}
-		return null; // TODO Replace with Null Pattern 
-	}
-	
-	@Override
-	public void changeAlbumArt(Artwork newArt) {
-		if (newArt == null) {
-			musicTag.deleteArtworkField();
-		} else {
-			try {
-				musicTag.setField(newArt);
-			} catch (FieldDataInvalidException e) {
-				System.err.println("FATAL: " + e.getMessage());
-			}
-		}
-	}
-
-	@Override
-	public String getTagData(FieldKey fieldKey) throws InterruptedException {
-		if (!initializeMusicTagIfNecessary()) {
-			return DataClass.ERROR_STRING;
-		}
-		if (strExt.equals("MP3")) {
-			/* TODO bug report to Paul Taylor, author of jaudiotagger
-             * getFirst(FieldKey key) does NOT give the right year; it
-             * should be "TYER" and not "TDRC". We get "TYER" by getting it
-             * from the frame ID3v23Frames.FRAME_ID_V3_TYER and this is done
-             * as follows.
-             */
-			return musicTag.getFirst(id3v23Frame.getId3KeyFromGenericKey(fieldKey).getFieldName());
-		}
-		return musicTag.getFirst(fieldKey);
-	}
-
-	@Override
-	public void changeTag(FieldKey fieldKey, String tagValueSrc) {
-		try {
-			musicTag.setField(fieldKey, tagValueSrc);
-		} catch (KeyNotFoundException | FieldDataInvalidException e) {
-			System.err.println("FATAL: " + e.getMessage());
-		}
-	}
-
-	@Override
-	public void applyTagChanges() {
-		audioFile.setTag(musicTag);
-		try {
-			audioFile.commit();
-		} catch (CannotWriteException e) {
-			System.err.println("FATAL: Cannot write tag changes to " + getName()
-					+ System.lineSeparator() + "Original message: " + e.getMessage());
-		}
-	}
-
-}
+package filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.audio.AudioHeader;
+import org.jaudiotagger.audio.exceptions.CannotReadException;
+import org.jaudiotagger.audio.exceptions.CannotWriteException;
+import org.jaudiotagger.audio.exceptions.InvalidAudioFrameException;
+import org.jaudiotagger.audio.exceptions.ReadOnlyFileException;
+import org.jaudiotagger.audio.mp3.MP3File;
+import org.jaudiotagger.tag.FieldDataInvalidException;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.KeyNotFoundException;
+import org.jaudiotagger.tag.Tag;
+import org.jaudiotagger.tag.TagException;
+import org.jaudiotagger.tag.id3.ID3v23Frames;
+import org.jaudiotagger.tag.id3.ID3v24Frames;
+import org.jaudiotagger.tag.id3.ID3v24Tag;
+import org.jaudiotagger.tag.images.Artwork;
+
+import data.DataClass;
+import data.DestinationSnapshot;
+import data.Fingerprint;
+import data.TagSnapshot;
+import framework.FileWrapper;
+import util.ContentFingerprinter;
+import util.ID3v2Reader;
+import util.ID3v2Writer;
+import util.MP4TagWriter;
+import util.MP3DurationProbe;
+import util.SourceMetadataStore;
+import util.VorbisCommentReader;
+
+public class PCFile implements FileWrapper {
+	private final File file;
+	private final String strExt;
+	/**
+	 * How many files may hold on to what jaudiotagger read from them at once.
+	 * It can be set with the system property "mlms.maxParsedTags".
+	 */
+	private static final int MAX_PARSED_TAGS = Math.max(1, Integer.getInteger("mlms.maxParsedTags", 16));
+	/**
+	 * The files holding on to what jaudiotagger read from them, the least
+	 * recently used first. Once there are too many, the least recently used one
+	 * lets go of it.
+	 */
+	private static final Map<PCFile, Boolean> FILES_WITH_PARSED_TAGS = new LinkedHashMap<PCFile, Boolean>(16,
+			0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<PCFile, Boolean> eldest) {
+			if (size() > MAX_PARSED_TAGS) {
+				eldest.getKey().parsedTag = null;
+				return true;
+			}
+			return false;
+		}
+	};
+	/** What jaudiotagger read, if it is still held on to. */
+	private volatile ParsedTag parsedTag;
+	/**
+	 * What jaudiotagger read, once it has been changed. It is held on to until
+	 * the changes have been written, no matter how many files hold on to their
+	 * tags.
+	 */
+	private volatile ParsedTag changedParsedTag;
+	private ID3v2Reader.Tag id3v2Tag;
+	private boolean isID3v2TagRead = false;
+	private VorbisCommentReader.Tag vorbisTag;
+	private boolean isVorbisTagRead = false;
+	private long artworkDigest = DestinationSnapshot.UNKNOWN_ARTWORK;
+	private final SourceMetadataStore metadataStore;
+	private BasicFileAttributes attributes;
+	private final Map<FieldKey, String> changedTags = new EnumMap<>(FieldKey.class);
+	private boolean isArtworkChanged = false;
+	
+	public PCFile(String pathToFile) {
+		this(pathToFile, null);
+	}
+	
+	/**
+	 * Constructs a file whose metadata is looked up in the given store before
+	 * the file itself is read. Whatever is read from the file is put in the
+	 * store. Files listed by this file use the same store.
+	 * 
+	 * @param pathToFile
+	 *            - the path to the file or folder.
+	 * @param metadataStore
+	 *            - the store, or null if the metadata should always be read from
+	 *            the file.
+	 */
+	public PCFile(String pathToFile, SourceMetadataStore metadataStore) {
+		this.metadataStore = metadataStore;
+		file = new File(pathToFile);
+		final int index = pathToFile.lastIndexOf("."); // If there is no extension, this will default to -1.
+		strExt = pathToFile.substring(index + 1).toUpperCase();
+	}
+
+	/**
+	 * Constructs a file found by listing its folder, along with the attributes
+	 * read while listing, so that they need not be read again.
+	 */
+	private PCFile(Path path, SourceMetadataStore metadataStore, BasicFileAttributes attributes) {
+		this(path.toString(), metadataStore);
+		this.attributes = attributes;
+	}
+
+	@Override
+	public boolean isDirectory() {
+		return readAttributesIfNecessary() && attributes.isDirectory();
+	}
+
+	@Override
+	public String getName() {
+		return file.getName();
+	}
+	
+	@Override
+	public String getAbsolutePath() {
+		return file.getAbsolutePath();
+	}
+
+	@Override
+	public boolean deleteFile() {
+		attributes = null;
+		return file.delete();
+	}
+
+	@Override
+	public Fingerprint getFingerprint() throws InterruptedException {
+		if (isStoreUsable()) {
+			final Fingerprint storedFingerprint = metadataStore.getFingerprint(getAbsolutePath(), length(), lastModified());
+			if (storedFingerprint.isKnown()) {
+				return storedFingerprint;
+			}
+		}
+		final Fingerprint fingerprint = readFingerprint();
+		if (isStoreUsable() && fingerprint.isKnown()) {
+			metadataStore.putFingerprint(getAbsolutePath(), length(), lastModified(), fingerprint);
+		}
+		return fingerprint;
+	}
+
+	private Fingerprint readFingerprint() throws InterruptedException {
+		try {
+			// We use MurmurHash3 on the file itself to get a unique hash to compare with.
+			return ContentFingerprinter.fingerprint(file.toPath(), strExt);
+		} catch (ClosedByInterruptException e) {
+			throw new InterruptedException();
+		} catch (IOException e) {
+			System.err.println("FATAL: Could not read bytes of " + getName() + " for hashing.");
+			return Fingerprint.UNKNOWN;
+		}
+	}
+
+	@Override
+	public boolean doesFileExist() {
+		return readAttributesIfNecessary();
+	}
+
+	@Override
+	public long length() {
+		return readAttributesIfNecessary() ? attributes.size() : -1;
+	}
+
+	@Override
+	public long lastModified() {
+		return readAttributesIfNecessary() ? attributes.lastModifiedTime().toMillis() : 0;
+	}
+
+	/**
+	 * Reads the size and last modified date of the file with a single stat call,
+	 * if it hasn't been done before.
+	 * 
+	 * @return true if the attributes are available; false otherwise.
+	 */
+	private boolean readAttributesIfNecessary() {
+		if (attributes == null) {
+			try {
+				attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+			} catch (IOException e) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public FileWrapper[] listFiles() {
+		final List<PCFile> listOfFiles = new ArrayList<>();
+		try (DirectoryStream<PCFile> listing = openListing()) {
+			for (PCFile child : listing) {
+				listOfFiles.add(child);
+			}
+		} catch (IOException | DirectoryIteratorException e) {
+			return null; // Just like File.listFiles(), e.g. if this is not a folder.
+		}
+		return listOfFiles.toArray(new FileWrapper[listOfFiles.size()]);
+	}
+
+	/**
+	 * Lists the folder lazily: the files are found as they are iterated over,
+	 * and each comes with its type, size and last modified date, which are read
+	 * along with it. So listing a large folder, or one on a slow network drive,
+	 * takes a single pass over the folder and no further lookups per file.
+	 * Files listed this way use the same store as this file.
+	 * <p>
+	 * Links to files are listed as the files they point to, but links to
+	 * folders (including junctions) are left out, so that a link to a parent
+	 * folder cannot make a walk of the library go round in circles.
+	 * 
+	 * @return the listing, which must be closed once done with. Iterating over
+	 *         it may throw a {@link DirectoryIteratorException}.
+	 * @throws IOException
+	 *             if the folder could not be opened, e.g. because it is not a
+	 *             folder.
+	 */
+	public DirectoryStream<PCFile> openListing() throws IOException {
+		final DirectoryStream<Path> paths = Files.newDirectoryStream(file.toPath());
+		return new DirectoryStream<PCFile>() {
+			@Override
+			public Iterator<PCFile> iterator() {
+				final Iterator<Path> iterator = paths.iterator();
+				return new Iterator<PCFile>() {
+					/** The next file, found ahead of time so that links to folders can be skipped. */
+					private PCFile next;
+
+					@Override
+					public boolean hasNext() {
+						while (next == null && iterator.hasNext()) {
+							next = listedFile(iterator.next());
+						}
+						return next != null;
+					}
+
+					@Override
+					public PCFile next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						final PCFile file = next;
+						next = null;
+						return file;
+					}
+				};
+			}
+
+			@Override
+			public void close() throws IOException {
+				paths.close();
+			}
+		};
+	}
+
+	/**
+	 * @return the listed file along with its attributes, or null if it is a
+	 *         link to a folder.
+	 */
+	private PCFile listedFile(Path path) {
+		BasicFileAttributes childAttributes;
+		try {
+			// On Windows, these were read with the listing itself.
+			childAttributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			// Junctions are neither files nor symbolic links to Java.
+			if (childAttributes.isSymbolicLink() || childAttributes.isOther()) {
+				childAttributes = Files.readAttributes(path, BasicFileAttributes.class);
+				if (childAttributes.isDirectory()) {
+					return null;
+				}
+			}
+		} catch (IOException e) {
+			childAttributes = null; // E.g. a broken link. They are read when needed.
+		}
+		return new PCFile(path, metadataStore, childAttributes);
+	}
+	
+	/**
+	 * Reads the tag data of the file with jaudiotagger, assuming it is an audio
+	 * file, if it isn't held on to already. Since another file may make this file
+	 * let go of it at any time, the caller should only use what is returned.
+	 * 
+	 * @return what jaudiotagger read, or null if the file could not be read.
+	 * @throws InterruptedException
+	 */
+	private ParsedTag readParsedTagIfNecessary() throws InterruptedException {
+		ParsedTag tag = changedParsedTag;
+		if (tag == null) {
+			tag = parsedTag;
+		}
+		if (tag == null) {
+			try {
+				final AudioFile audioFile = AudioFileIO.read(file);
+				final Tag musicTag = strExt.equals("MP3") ? ((MP3File) audioFile).getID3v2Tag() : audioFile.getTag();
+				tag = new ParsedTag(audioFile, musicTag, audioFile.getAudioHeader());
+			} catch (CannotReadException | TagException | ReadOnlyFileException
+					| InvalidAudioFrameException e) {
+				// TODO Use a logger just like in hotciv/cave
+                System.err.println("FATAL: " + e.getMessage() + System.lineSeparator() + "Type of exception: " + e.getClass().getName());
+                return null;
+			} catch (IOException e) {
+				// Something seriously went wrong. It is likely because the user interrupted the
+				// read() operation.
+				throw new InterruptedException();
+			}
+			parsedTag = tag;
+		}
+		synchronized (FILES_WITH_PARSED_TAGS) {
+			FILES_WITH_PARSED_TAGS.put(this, Boolean.TRUE);
+		}
+		return tag;
+	}
+	
+	/**
+	 * Reads the text frames of the ID3v2 tag of an MP3 file, if it hasn't been
+	 * done before. This is much cheaper than
+	 * {@link #readParsedTagIfNecessary()}, which parses every frame including
+	 * the artwork, so it is used whenever the tags are only read. Once the tag
+	 * read by jaudiotagger has been changed, it is used instead.
+	 * 
+	 * @return true if the tag was read; false if the file is not an MP3 file or
+	 *         its tag has to be read by jaudiotagger.
+	 * @throws InterruptedException
+	 */
+	private boolean readID3v2TagIfNecessary() throws InterruptedException {
+		if (!strExt.equals("MP3")) {
+			return false;
+		}
+		if (!isID3v2TagRead) {
+			try {
+				id3v2Tag = ID3v2Reader.read(file.toPath());
+			} catch (ClosedByInterruptException e) {
+				throw new InterruptedException();
+			} catch (IOException e) {
+				id3v2Tag = null;
+			}
+			isID3v2TagRead = true;
+		}
+		return id3v2Tag != null;
+	}
+	
+	/**
+	 * Reads the Vorbis comments of a FLAC, Ogg Vorbis or Opus file, if it hasn't
+	 * been done before. Just like {@link #readID3v2TagIfNecessary()}, this only
+	 * reads the metadata at the start of the file and is used whenever the tags
+	 * are only read.
+	 * 
+	 * @return true if the comments were read; false if the file is not such a
+	 *         file or its tag has to be read by jaudiotagger.
+	 * @throws InterruptedException
+	 */
+	private boolean readVorbisTagIfNecessary() throws InterruptedException {
+		if (!strExt.equals("FLAC") && !strExt.equals("OGG") && !strExt.equals("OPUS")) {
+			return false;
+		}
+		if (!isVorbisTagRead) {
+			try {
+				vorbisTag = strExt.equals("FLAC") ? VorbisCommentReader.readFlac(file.toPath())
+						: VorbisCommentReader.readOgg(file.toPath());
+			} catch (ClosedByInterruptException e) {
+				throw new InterruptedException();
+			} catch (IOException e) {
+				vorbisTag = null;
+			}
+			isVorbisTagRead = true;
+		}
+		return vorbisTag != null;
+	}
+	
+	/**
+	 * The metadata store can only be used while the file is as it is on the disk,
+	 * i.e. while it has no unwritten changes.
+	 * 
+	 * @return true if there is a store to use.
+	 */
+	private boolean isStoreUsable() {
+		return metadataStore != null && !hasTagChanges() && readAttributesIfNecessary();
+	}
+	
+	@Override
+	public String getDuration() throws InterruptedException {
+		if (isStoreUsable()) {
+			final String storedDuration = metadataStore.getDuration(getAbsolutePath(), length(), lastModified());
+			if (storedDuration != null) {
+				return storedDuration;
+			}
+		}
+		final String duration = readDuration();
+		if (isStoreUsable()) {
+			metadataStore.putDuration(getAbsolutePath(), length(), lastModified(), duration);
+		}
+		return duration;
+	}
+	
+	private String readDuration() throws InterruptedException {
+		if (changedParsedTag == null && readID3v2TagIfNecessary()) {
+			// Only the first frames are read; the tag in front of them is skipped.
+			try {
+				final MP3DurationProbe.Duration duration = MP3DurationProbe.probe(file.toPath(),
+						id3v2Tag.getAudioStart());
+				if (duration != null) {
+					return duration.getMillis() + "";
+				}
+			} catch (ClosedByInterruptException e) {
+				throw new InterruptedException();
+			} catch (IOException e) {
+				// Let jaudiotagger have a go at it below.
+			}
+		}
+		if (changedParsedTag == null && readVorbisTagIfNecessary() && vorbisTag.getDurationMillis() >= 0) {
+			return vorbisTag.getDurationMillis() + "";
+		}
+		final ParsedTag tag = readParsedTagIfNecessary();
+		if (tag != null) {
+			// For some reason, the following line stopped working, only returning the empty
+			// string. This is NOT good as the solution with getTrackLength() does NOT
+			// support milliseconds...
+			//return musicTag.getFirst(ID3v23Frames.FRAME_ID_V3_LENGTH); 
+			return Math.round(tag.musicHeader.getPreciseTrackLength() * 1000) + "";
+		}
+		return DataClass.ERROR_STRING;
+	}
+	
+	@Override
+	public Artwork getAlbumArt() throws InterruptedException {
+		final ParsedTag tag = readParsedTagIfNecessary();
+		if (tag != null && tag.musicTag != null) {
+			return tag.musicTag.getFirstArtwork();
+		}
+		return null; // TODO Replace with Null Pattern 
+	}
+	
+	@Override
+	public long getArtworkDigest() throws InterruptedException {
+		if (artworkDigest == DestinationSnapshot.UNKNOWN_ARTWORK && isStoreUsable()) {
+			artworkDigest = metadataStore.getArtworkDigest(getAbsolutePath(), length(), lastModified());
+		}
+		if (artworkDigest == DestinationSnapshot.UNKNOWN_ARTWORK) {
+			try {
+				if (strExt.equals("M4A")) {
+					artworkDigest = ContentFingerprinter.mp4ArtworkDigest(file.toPath());
+				} else if (changedParsedTag == null && readVorbisTagIfNecessary()) {
+					artworkDigest = vorbisTag.artworkDigest(file.toPath());
+				} else if (changedParsedTag == null && readID3v2TagIfNecessary()) {
+					if (!id3v2Tag.hasArtwork()) {
+						artworkDigest = DestinationSnapshot.NO_ARTWORK;
+					} else if (id3v2Tag.getArtworkStart() >= 0) {
+						artworkDigest = ContentFingerprinter.artworkDigest(file.toPath(), id3v2Tag.getArtworkStart(),
+								id3v2Tag.getArtworkLength());
+					}
+				}
+			} catch (ClosedByInterruptException e) {
+				throw new InterruptedException();
+			} catch (IOException e) {
+				System.err.println("FATAL: Could not read the artwork of " + getName() + " for hashing.");
+			}
+			if (artworkDigest == DestinationSnapshot.UNKNOWN_ARTWORK) {
+				// The artwork could not be located in the file, so let jaudiotagger read it.
+				artworkDigest = ContentFingerprinter.artworkDigest(getAlbumArt());
+			}
+			if (isStoreUsable()) {
+				metadataStore.putArtworkDigest(getAbsolutePath(), length(), lastModified(), artworkDigest);
+			}
+		}
+		return artworkDigest;
+	}
+
+	@Override
+	public void changeAlbumArt(Artwork newArt) {
+		final ParsedTag tag = readParsedTagBeforeWriting();
+		if (tag == null) {
+			return;
+		}
+		if (newArt == null) {
+			if (tag.musicTag.getFirstArtwork() != null) {
+				tag.musicTag.deleteArtworkField();
+				isArtworkChanged = true;
+			}
+		} else {
+			try {
+				tag.musicTag.setField(newArt);
+				isArtworkChanged = true;
+			} catch (FieldDataInvalidException e) {
+				System.err.println("FATAL: " + e.getMessage());
+			}
+		}
+	}
+
+	@Override
+	public String getTagData(FieldKey fieldKey) throws InterruptedException {
+		if (isStoreUsable()) {
+			final String storedValue = metadataStore.getTagData(getAbsolutePath(), length(), lastModified(), fieldKey);
+			if (storedValue != null) {
+				return storedValue;
+			}
+		}
+		final String value = readTagData(fieldKey);
+		if (isStoreUsable()) {
+			metadataStore.putTagData(getAbsolutePath(), length(), lastModified(), fieldKey, value);
+		}
+		return value;
+	}
+
+	@Override
+	public TagSnapshot getTagSnapshot(List<FieldKey> fieldKeys) throws InterruptedException {
+		final boolean isStoreUsable = isStoreUsable();
+		if (isStoreUsable) {
+			final String[] storedValues = metadataStore.getTagValues(getAbsolutePath(), length(), lastModified(),
+					fieldKeys);
+			if (storedValues != null) {
+				return new TagSnapshot(fieldKeys, storedValues);
+			}
+		}
+		final String[] values = new String[fieldKeys.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = readTagData(fieldKeys.get(i));
+		}
+		if (isStoreUsable) {
+			metadataStore.putTagValues(getAbsolutePath(), length(), lastModified(), fieldKeys, values);
+		}
+		return new TagSnapshot(fieldKeys, values);
+	}
+
+	private String readTagData(FieldKey fieldKey) throws InterruptedException {
+		if (changedTags.containsKey(fieldKey)) {
+			return changedTags.get(fieldKey);
+		}
+		if (changedParsedTag == null && readID3v2TagIfNecessary()) {
+			return id3v2Tag.getFirst(frameIdOf(fieldKey, id3v2Tag.getMajorVersion()));
+		}
+		if (changedParsedTag == null && readVorbisTagIfNecessary() && vorbisTag.getFirst(fieldKey) != null) {
+			return vorbisTag.getFirst(fieldKey);
+		}
+		final ParsedTag tag = readParsedTagIfNecessary();
+		if (tag == null || tag.musicTag == null) {
+			return DataClass.ERROR_STRING;
+		}
+		if (strExt.equals("MP3")) {
+			/* TODO bug report to Paul Taylor, author of jaudiotagger
+             * getFirst(FieldKey key) does NOT give the right year; it
+             * should be "TYER" and not "TDRC". We get "TYER" by getting it
+             * from the frame ID3v23Frames.FRAME_ID_V3_TYER and this is done
+             * as follows. An ID3v2.4 tag has the year in "TDRC" though.
+             */
+			return tag.musicTag.getFirst(frameIdOf(fieldKey, tag.musicTag instanceof ID3v24Tag ? 4 : 3));
+		}
+		return tag.musicTag.getFirst(fieldKey);
+	}
+
+	/**
+	 * If the tags of the file can be written without jaudiotagger (see
+	 * {@link #canWriteTagsDirectly()}), the change is only noted until it is
+	 * applied.
+	 */
+	@Override
+	public void changeTag(FieldKey fieldKey, String tagValueSrc) {
+		try {
+			if (tagValueSrc.equals(getTagData(fieldKey))) {
+				return; // Setting the same value again does not change the file.
+			}
+			if (canWriteTagsDirectly()) {
+				changedTags.put(fieldKey, tagValueSrc);
+				return;
+			}
+			final ParsedTag tag = readParsedTagBeforeWriting();
+			if (tag == null) {
+				return;
+			}
+			tag.musicTag.setField(fieldKey, tagValueSrc);
+			changedTags.put(fieldKey, tagValueSrc);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (KeyNotFoundException | FieldDataInvalidException e) {
+			System.err.println("FATAL: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public boolean applyTagChanges() {
+		// Writing changes the file, so it is only done if something was changed.
+		if (!hasTagChanges()) {
+			return false;
+		}
+		try {
+			// If only the tags were changed, they are written without jaudiotagger if possible.
+			if (isArtworkChanged || !canWriteTagsDirectly() || !writeTagsDirectly()) {
+				return commitChanges();
+			}
+		} catch (InterruptedException | ClosedByInterruptException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (IOException e) {
+			System.err.println("FATAL: Cannot write tag changes to " + getName()
+					+ System.lineSeparator() + "Original message: " + e.getMessage());
+			return false;
+		}
+		clearChanges();
+		return true;
+	}
+
+	/**
+	 * The text frames of an ID3v2.3 or ID3v2.4 tag are written by
+	 * {@link ID3v2Writer} and the items of an M4A file by {@link MP4TagWriter},
+	 * neither of which reads the whole file or moves the audio.
+	 * 
+	 * @return true if the tags of the file may be written by one of them.
+	 * @throws InterruptedException
+	 */
+	private boolean canWriteTagsDirectly() throws InterruptedException {
+		if (strExt.equals("M4A")) {
+			return true;
+		}
+		return readID3v2TagIfNecessary() && id3v2Tag.getMajorVersion() > 0;
+	}
+
+	/**
+	 * @return true if the changed tags were written; false if they have to be
+	 *         written by jaudiotagger instead.
+	 * @throws IOException
+	 */
+	private boolean writeTagsDirectly() throws IOException {
+		if (strExt.equals("M4A")) {
+			return MP4TagWriter.write(file.toPath(), changedTags);
+		}
+		return ID3v2Writer.write(file.toPath(), getChangedTextFrames());
+	}
+
+	/**
+	 * Write the changes with jaudiotagger, which reads the whole file first.
+	 */
+	private boolean commitChanges() {
+		final ParsedTag tag = readParsedTagBeforeWriting();
+		if (tag == null) {
+			return false;
+		}
+		try {
+			// Changes which were only noted for writing them directly are made now.
+			for (Map.Entry<FieldKey, String> change : changedTags.entrySet()) {
+				tag.musicTag.setField(change.getKey(), change.getValue());
+			}
+		} catch (KeyNotFoundException | FieldDataInvalidException e) {
+			System.err.println("FATAL: " + e.getMessage());
+			return false;
+		}
+		tag.audioFile.setTag(tag.musicTag);
+		try {
+			tag.audioFile.commit();
+		} catch (CannotWriteException e) {
+			System.err.println("FATAL: Cannot write tag changes to " + getName()
+					+ System.lineSeparator() + "Original message: " + e.getMessage());
+			return false;
+		}
+		clearChanges();
+		return true;
+	}
+
+	/**
+	 * The changes have been written, so the file is not as it was read anymore.
+	 */
+	private void clearChanges() {
+		attributes = null; // The size and last modified date have changed.
+		artworkDigest = DestinationSnapshot.UNKNOWN_ARTWORK;
+		changedTags.clear();
+		isArtworkChanged = false;
+		release(); // What was read, if anything, is out of date.
+	}
+
+	/**
+	 * @return the changed tags by the frame ID of the ID3v2 version of the tag.
+	 */
+	private Map<String, String> getChangedTextFrames() {
+		final Map<String, String> textFrames = new LinkedHashMap<>();
+		for (Map.Entry<FieldKey, String> change : changedTags.entrySet()) {
+			textFrames.put(frameIdOf(change.getKey(), id3v2Tag.getMajorVersion()), change.getValue());
+		}
+		return textFrames;
+	}
+
+	/**
+	 * Tags are read and written by the same frame ID, e.g. the year is "TYER"
+	 * in an ID3v2.3 tag but "TDRC" in an ID3v2.4 tag.
+	 * 
+	 * @return the frame ID of the field in the given ID3v2 version. Versions
+	 *         other than 4 use the frame IDs of ID3v2.3.
+	 */
+	private static String frameIdOf(FieldKey fieldKey, int majorVersion) {
+		return majorVersion == 4 ? ID3v24Frames.getInstanceOf().getId3KeyFromGenericKey(fieldKey).getFieldName()
+				: ID3v23Frames.getInstanceOf().getId3KeyFromGenericKey(fieldKey).getFieldName();
+	}
+
+	@Override
+	public boolean hasTagChanges() {
+		return !changedTags.isEmpty() || isArtworkChanged;
+	}
+
+	@Override
+	public void release() {
+		if (hasTagChanges()) {
+			return;
+		}
+		changedParsedTag = null;
+		parsedTag = null;
+		id3v2Tag = null;
+		isID3v2TagRead = false;
+		vorbisTag = null;
+		isVorbisTagRead = false;
+		synchronized (FILES_WITH_PARSED_TAGS) {
+			FILES_WITH_PARSED_TAGS.remove(this);
+		}
+	}
+
+	/**
+	 * The tags of a file may be changed without having been read first (e.g.
+	 * when they were compared against a snapshot), so they are initialized here
+	 * as well. The writing methods cannot throw {@link InterruptedException},
+	 * so an interruption is passed on by setting the flag again.
+	 * 
+	 * The tag is held on to until the changes are written.
+	 * 
+	 * @return what jaudiotagger read, or null if the tags cannot be changed.
+	 */
+	private ParsedTag readParsedTagBeforeWriting() {
+		try {
+			final ParsedTag tag = readParsedTagIfNecessary();
+			if (tag == null || tag.musicTag == null) {
+				return null;
+			}
+			changedParsedTag = tag;
+			return tag;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	/**
+	 * What jaudiotagger read from the file.
+	 */
+	private static class ParsedTag {
+		private final AudioFile audioFile;
+		private final Tag musicTag;
+		private final AudioHeader musicHeader;
+
+		ParsedTag(AudioFile audioFile, Tag musicTag, AudioHeader musicHeader) {
+			this.audioFile = audioFile;
+			this.musicTag = musicTag;
+			this.musicHeader = musicHeader;
+		}
+	}
+
+}
@@ -1,17 +1,43 @@
-package framework;
-
-import java.io.IOException;
-
-public interface DeviceStrategy {
-	public boolean isADirectory();
-
-	public FileWrapper[] listFiles();
-
-	public FileWrapper getFolder();
-
-	public FileWrapper getFileInstance(String path);
-	
-	public void copyMusicToCurrentFolder(FileWrapper newMusic) throws IOException;
-	
-	public void copyMusicToSpecificFolder(FileWrapper newMusic, String pathToFolder) throws IOException;
-}
+package framework;
+
+import java.io.IOException;
+import java.util.List;
+
+public interface DeviceStrategy {
+	public boolean isADirectory();
+
+	public FileWrapper[] listFiles();
+
+	public FileWrapper getFolder();
+
+	public FileWrapper getFileInstance(String path);
+	
+	/**
+	 * Copy music into the folder of this strategy.
+	 * 
+	 * @param newMusic
+	 *            - the music to be copied.
+	 * @param subfolder
+	 *            - a path relative to the folder of this strategy, which is
+	 *            created if it does not exist. The empty string means the folder
+	 *            itself.
+	 * @throws IOException
+	 *             if the music could not be copied.
+	 */
+	public void copyMusicToCurrentFolder(FileWrapper newMusic, String subfolder) throws IOException;
+	
+	/**
+	 * Copy music into the same subfolder of the folder of this strategy.
+	 * 
+	 * @param newMusic
+	 *            - the music to be copied.
+	 * @param subfolder
+	 *            - as in {@link #copyMusicToCurrentFolder(FileWrapper, String)}.
+	 * @throws IOException
+	 *             if some music could not be copied. The music after it in the
+	 *             list may not have been copied either.
+	 */
+	public void copyMusicListToCurrentFolder(List<FileWrapper> newMusic, String subfolder) throws IOException;
+	
+	public void copyMusicToSpecificFolder(FileWrapper newMusic, String pathToFolder) throws IOException;
+}
@@ -1,36 +1,97 @@
-package framework;
-
-import java.io.IOException;
-
-import org.jaudiotagger.tag.FieldKey;
-import org.jaudiotagger.tag.images.Artwork;
-
-public interface FileWrapper {
-	public boolean isDirectory();
-	public String getName();
-	public String getAbsolutePath();
-	public FileWrapper[] listFiles();
-	
-	public boolean deleteFile();
-	
-	/**
-	 * 
-	 * @return A unique value corresponding to the file's current state. If it could
-	 *         not be computed, then 0 is returned.
-	 * @throws IOException
-	 *             if any operation on the file fails/is abruptly stopped.
-	 */
-	//public int getUniqueHash() throws IOException;
-
-	public boolean doesFileExist();
-	public String getDuration() throws InterruptedException;
-	public String getTagData(FieldKey fieldKey) throws InterruptedException;
-	public void changeTag(FieldKey fieldKey, String tagValueSrc);
-	public void applyTagChanges();
-	//////////////////////
-	// TODO ONLY WORKS FOR NON-MTP DEVICES (FOR NOW)
-	public Artwork getAlbumArt() throws InterruptedException;
-	public void changeAlbumArt(Artwork newArt);
-	//////////////////////
-	
-}
+package framework;
+
+import java.util.List;
+
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.images.Artwork;
+
+import data.DestinationSnapshot;
+import data.Fingerprint;
+import data.TagSnapshot;
+
+public interface FileWrapper {
+	public boolean isDirectory();
+	public String getName();
+	public String getAbsolutePath();
+	public FileWrapper[] listFiles();
+	
+	public boolean deleteFile();
+	
+	/**
+	 * 
+	 * @return Two hashes corresponding to the current state of the file's tags and
+	 *         audio, respectively. If they could not be computed, then
+	 *         {@link Fingerprint#UNKNOWN} is returned.
+	 * @throws InterruptedException
+	 *             if the hashing was abruptly stopped.
+	 */
+	public Fingerprint getFingerprint() throws InterruptedException;
+
+	public boolean doesFileExist();
+	/**
+	 * @return the size of the file in bytes, or -1 if it is unknown.
+	 */
+	public long length();
+	/**
+	 * @return the time the file was last modified in milliseconds since the epoch,
+	 *         or 0 if it is unknown.
+	 */
+	public long lastModified();
+	/**
+	 * @return the duration of the music in milliseconds, or
+	 *         {@link data.DataClass#ERROR_STRING} if it could not be read.
+	 *         Durations read in different ways may differ slightly, so compare
+	 *         them with {@link util.MP3DurationProbe#isSameDuration(String, String)}.
+	 * @throws InterruptedException
+	 */
+	public String getDuration() throws InterruptedException;
+	public String getTagData(FieldKey fieldKey) throws InterruptedException;
+	/**
+	 * Read all the given tags in a single pass, e.g. with a single lookup of the
+	 * tag and of the stored metadata instead of one per tag.
+	 * 
+	 * @param fieldKeys
+	 *            - the compared field keys.
+	 * @return the values of the tags, just like {@link #getTagData(FieldKey)}
+	 *         gives them.
+	 * @throws InterruptedException
+	 */
+	public TagSnapshot getTagSnapshot(List<FieldKey> fieldKeys) throws InterruptedException;
+	public void changeTag(FieldKey fieldKey, String tagValueSrc);
+	/**
+	 * Write the changed tags and artwork to the file, if there are any.
+	 * 
+	 * @return true if changes were written; false if there was nothing to write
+	 *         or the writing failed. In the latter case, {@link #hasTagChanges()}
+	 *         is still true.
+	 */
+	public boolean applyTagChanges();
+	/**
+	 * @return true if a tag or the artwork was changed since the last time the
+	 *         changes were applied.
+	 */
+	public boolean hasTagChanges();
+	/**
+	 * Let go of what was read from the file (e.g. the parsed tags and artwork),
+	 * so that a wrapper which is kept around takes up little memory. It is read
+	 * again if it is needed later. Changes which have not been applied yet are
+	 * kept.
+	 */
+	public void release();
+	//////////////////////
+	// TODO ONLY WORKS FOR NON-MTP DEVICES (FOR NOW)
+	public Artwork getAlbumArt() throws InterruptedException;
+	/**
+	 * Compute a digest of the image data of the first artwork without holding
+	 * the image in memory. The digest is computed once per file.
+	 * 
+	 * @return the digest, {@link DestinationSnapshot#NO_ARTWORK} if there is no
+	 *         artwork or {@link DestinationSnapshot#UNKNOWN_ARTWORK} if it cannot
+	 *         be read.
+	 * @throws InterruptedException
+	 */
+	public long getArtworkDigest() throws InterruptedException;
+	public void changeAlbumArt(Artwork newArt);
+	//////////////////////
+	
+}
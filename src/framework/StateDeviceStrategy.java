@@ -1,7 +1,32 @@
-package framework;
-
-import java.io.IOException;
-
-public interface StateDeviceStrategy {
-	public void copyMusicToDst(FileWrapper newMusic) throws IOException;
-}
+package framework;
+
+import java.io.IOException;
+import java.util.List;
+
+public interface StateDeviceStrategy {
+	/**
+	 * Copy music from the source to the destination.
+	 * 
+	 * @param newMusic
+	 *            - the music to be copied.
+	 * @param subfolder
+	 *            - the folder, relative to the destination folder, to copy the
+	 *            music into. Used to mirror the folder structure of the source.
+	 * @throws IOException
+	 *             if the music could not be copied.
+	 */
+	public void copyMusicToDst(FileWrapper newMusic, String subfolder) throws IOException;
+	
+	/**
+	 * Copy music from the source into the same folder of the destination.
+	 * 
+	 * @param newMusic
+	 *            - the music to be copied.
+	 * @param subfolder
+	 *            - as in {@link #copyMusicToDst(FileWrapper, String)}.
+	 * @throws IOException
+	 *             if some music could not be copied. The music after it in the
+	 *             list may not have been copied either.
+	 */
+	public void copyMusicListToDst(List<FileWrapper> newMusic, String subfolder) throws IOException;
+}
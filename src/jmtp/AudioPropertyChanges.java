@@ -0,0 +1,132 @@
+package jmtp;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import be.derycke.pieter.com.COMException;
+import be.derycke.pieter.com.OleDate;
+
+/**
+ * Collects changes to the properties of a piece of music on an MTP device, so
+ * that they are written with a single call to the device. The setters of
+ * {@link PortableDeviceAudioObject} each write one property, which is a round
+ * trip per property.
+ * <p>
+ * This class is part of the package of jmtp, because jmtp keeps the properties
+ * of its objects and the keys of WPD to itself.
+ *
+ * @author Aram
+ * @see AudioPropertyReader
+ */
+public class AudioPropertyChanges {
+	/** The new values by their key, in the order they were changed. */
+	private final Map<PropertyKey, Object> changes = new LinkedHashMap<>();
+
+	public void setTitle(String value) {
+		changes.put(Win32WPDDefines.WPD_OBJECT_NAME, value);
+	}
+
+	public void setArtist(String value) {
+		changes.put(Win32WPDDefines.WPD_MEDIA_ARTIST, value);
+	}
+
+	public void setAlbumArtist(String value) {
+		changes.put(Win32WPDDefines.WPD_MEDIA_ALBUM_ARTIST, value);
+	}
+
+	public void setAlbum(String value) {
+		changes.put(Win32WPDDefines.WPD_MUSIC_ALBUM, value);
+	}
+
+	public void setReleaseDate(Date value) {
+		changes.put(Win32WPDDefines.WPD_MEDIA_RELEASE_DATE, value);
+	}
+
+	public void setComposer(String value) {
+		changes.put(Win32WPDDefines.WPD_MEDIA_COMPOSER, value);
+	}
+
+	public void setGenre(String value) {
+		changes.put(Win32WPDDefines.WPD_MEDIA_GENRE, value);
+	}
+
+	public void setTrackNumber(int value) {
+		changes.put(Win32WPDDefines.WPD_MUSIC_TRACK, (long) value);
+	}
+
+	public boolean isEmpty() {
+		return changes.isEmpty();
+	}
+
+	public void clear() {
+		changes.clear();
+	}
+
+	/**
+	 * Write every change to a piece of music with a single call to the device.
+	 * The changes are kept, so that they can be written again if some failed.
+	 *
+	 * @param object
+	 *            - the music.
+	 * @return true if every change was written. If the object was not made by
+	 *         jmtp, then the changes are written one at a time.
+	 * @throws COMException
+	 *             if the changes could not be sent to the device.
+	 */
+	public boolean writeTo(PortableDeviceAudioObject object) throws COMException {
+		if (!(object instanceof PortableDeviceObjectImplWin32)) {
+			for (Map.Entry<PropertyKey, Object> change : changes.entrySet()) {
+				writeOneAtATime(object, change.getKey(), change.getValue());
+			}
+			return true;
+		}
+		final PortableDeviceValuesImplWin32 values = new PortableDeviceValuesImplWin32();
+		for (Map.Entry<PropertyKey, Object> change : changes.entrySet()) {
+			final Object value = change.getValue();
+			if (value instanceof Long) {
+				values.setUnsignedIntegerValue(change.getKey(), (Long) value);
+			} else if (value instanceof Date) {
+				values.setFloateValue(change.getKey(), (float) new OleDate((Date) value).toDouble());
+			} else {
+				values.setStringValue(change.getKey(), (String) value);
+			}
+		}
+		final PortableDeviceObjectImplWin32 impl = (PortableDeviceObjectImplWin32) object;
+		final PortableDeviceValuesImplWin32 results = impl.properties.setValues(impl.objectID, values);
+		if (results.count() == 0) {
+			return true;
+		}
+		// The results only hold the properties that were attempted, each with its own error.
+		for (PropertyKey key : changes.keySet()) {
+			try {
+				if (results.getErrorValue(key).getHresult() != COMException.S_OK) {
+					return false;
+				}
+			} catch (COMException e) {
+				// The property has no result, so nothing went wrong with it.
+			}
+		}
+		return true;
+	}
+
+	private static void writeOneAtATime(PortableDeviceAudioObject object, PropertyKey key, Object value) {
+		if (key.equals(Win32WPDDefines.WPD_OBJECT_NAME)) {
+			object.setTitle((String) value);
+		} else if (key.equals(Win32WPDDefines.WPD_MEDIA_ARTIST)) {
+			object.setArtist((String) value);
+		} else if (key.equals(Win32WPDDefines.WPD_MEDIA_ALBUM_ARTIST)) {
+			object.setAlbumArtist((String) value);
+		} else if (key.equals(Win32WPDDefines.WPD_MUSIC_ALBUM)) {
+			object.setAlbum((String) value);
+		} else if (key.equals(Win32WPDDefines.WPD_MEDIA_RELEASE_DATE)) {
+			object.setReleaseDate((Date) value);
+		} else if (key.equals(Win32WPDDefines.WPD_MEDIA_COMPOSER)) {
+			object.setComposer((String) value);
+		} else if (key.equals(Win32WPDDefines.WPD_MEDIA_GENRE)) {
+			object.setGenre((String) value);
+		} else if (key.equals(Win32WPDDefines.WPD_MUSIC_TRACK)) {
+			object.setTrackNumber(((Long) value).intValue());
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package jmtp;
+
+import java.math.BigInteger;
+import java.util.Date;
+
+import be.derycke.pieter.com.COMException;
+import be.derycke.pieter.com.OleDate;
+
+/**
+ * Reads every property of a piece of music on an MTP device that is compared
+ * during a sync with a single call to the device. The getters of
+ * {@link PortableDeviceAudioObject} each ask the device for one property,
+ * which is a round trip per property.
+ * <p>
+ * This class is part of the package of jmtp, because jmtp keeps the properties
+ * of its objects and the keys of WPD to itself.
+ *
+ * @author Aram
+ */
+public class AudioPropertyReader {
+	private static final PropertyKey[] KEYS = { Win32WPDDefines.WPD_OBJECT_NAME, Win32WPDDefines.WPD_MEDIA_ARTIST,
+			Win32WPDDefines.WPD_MEDIA_ALBUM_ARTIST, Win32WPDDefines.WPD_MUSIC_ALBUM,
+			Win32WPDDefines.WPD_MEDIA_RELEASE_DATE, Win32WPDDefines.WPD_MEDIA_COMPOSER,
+			Win32WPDDefines.WPD_MEDIA_GENRE, Win32WPDDefines.WPD_MUSIC_TRACK, Win32WPDDefines.WPD_MEDIA_DURATION,
+			Win32WPDDefines.WPD_OBJECT_SIZE, Win32WPDDefines.WPD_OBJECT_DATE_MODIFIED };
+	/** Created on first use, so that nothing is asked of COM until music is read. */
+	private PortableDeviceKeyCollectionImplWin32 keys;
+
+	/**
+	 * The properties of a piece of music as they were when they were read. The
+	 * values of missing properties are the same as those the getters of
+	 * {@link PortableDeviceAudioObject} return.
+	 */
+	public static final class Properties {
+		private final String title;
+		private final String artist;
+		private final String albumArtist;
+		private final String album;
+		private final Date releaseDate;
+		private final String composer;
+		private final String genre;
+		private final int trackNumber;
+		private final BigInteger duration;
+		private final BigInteger size;
+		private final Date dateModified;
+
+		public Properties(String title, String artist, String albumArtist, String album, Date releaseDate,
+				String composer, String genre, int trackNumber, BigInteger duration, BigInteger size,
+				Date dateModified) {
+			this.title = title;
+			this.artist = artist;
+			this.albumArtist = albumArtist;
+			this.album = album;
+			this.releaseDate = releaseDate;
+			this.composer = composer;
+			this.genre = genre;
+			this.trackNumber = trackNumber;
+			this.duration = duration;
+			this.size = size;
+			this.dateModified = dateModified;
+		}
+
+		/**
+		 * Read the properties one at a time through the getters of the object.
+		 */
+		public static Properties of(PortableDeviceAudioObject object) {
+			return new Properties(object.getTitle(), object.getArtist(), object.getAlbumArtist(), object.getAlbum(),
+					object.getReleaseDate(), object.getComposer(), object.getGenre(), object.getTrackNumber(),
+					object.getDuration(), object.getSize(), object.getDateModified());
+		}
+
+		public String getTitle() {
+			return title;
+		}
+
+		public String getArtist() {
+			return artist;
+		}
+
+		public String getAlbumArtist() {
+			return albumArtist;
+		}
+
+		public String getAlbum() {
+			return album;
+		}
+
+		public Date getReleaseDate() {
+			return releaseDate;
+		}
+
+		public String getComposer() {
+			return composer;
+		}
+
+		public String getGenre() {
+			return genre;
+		}
+
+		public int getTrackNumber() {
+			return trackNumber;
+		}
+
+		public BigInteger getDuration() {
+			return duration;
+		}
+
+		public BigInteger getSize() {
+			return size;
+		}
+
+		public Date getDateModified() {
+			return dateModified;
+		}
+	}
+
+	/**
+	 * Read the properties of a piece of music with a single call to the device.
+	 *
+	 * @param object
+	 *            - the music.
+	 * @return the properties. If the object was not made by jmtp, then they are
+	 *         read one at a time.
+	 * @throws COMException
+	 *             if the properties could not be read.
+	 */
+	public synchronized Properties read(PortableDeviceAudioObject object) throws COMException {
+		if (!(object instanceof PortableDeviceObjectImplWin32)) {
+			return Properties.of(object);
+		}
+		if (keys == null) {
+			keys = new PortableDeviceKeyCollectionImplWin32();
+			for (PropertyKey key : KEYS) {
+				keys.add(key);
+			}
+		}
+		final PortableDeviceObjectImplWin32 impl = (PortableDeviceObjectImplWin32) object;
+		final PortableDeviceValuesImplWin32 values = impl.properties.getValues(impl.objectID, keys);
+		return new Properties(stringValue(values, Win32WPDDefines.WPD_OBJECT_NAME),
+				stringValue(values, Win32WPDDefines.WPD_MEDIA_ARTIST),
+				stringValue(values, Win32WPDDefines.WPD_MEDIA_ALBUM_ARTIST),
+				stringValue(values, Win32WPDDefines.WPD_MUSIC_ALBUM),
+				dateValue(values, Win32WPDDefines.WPD_MEDIA_RELEASE_DATE),
+				stringValue(values, Win32WPDDefines.WPD_MEDIA_COMPOSER),
+				stringValue(values, Win32WPDDefines.WPD_MEDIA_GENRE),
+				(int) longValue(values, Win32WPDDefines.WPD_MUSIC_TRACK),
+				bigIntegerValue(values, Win32WPDDefines.WPD_MEDIA_DURATION),
+				bigIntegerValue(values, Win32WPDDefines.WPD_OBJECT_SIZE),
+				dateValue(values, Win32WPDDefines.WPD_OBJECT_DATE_MODIFIED));
+	}
+
+	// The values are held by the PC, so reading them one at a time costs nothing.
+	private static String stringValue(PortableDeviceValuesImplWin32 values, PropertyKey key) {
+		try {
+			return values.getStringValue(key);
+		} catch (COMException e) {
+			return null;
+		}
+	}
+
+	private static long longValue(PortableDeviceValuesImplWin32 values, PropertyKey key) {
+		try {
+			return values.getUnsignedIntegerValue(key);
+		} catch (COMException e) {
+			return -1;
+		}
+	}
+
+	private static BigInteger bigIntegerValue(PortableDeviceValuesImplWin32 values, PropertyKey key) {
+		try {
+			return values.getUnsignedLargeIntegerValue(key);
+		} catch (COMException e) {
+			return BigInteger.ONE.negate();
+		}
+	}
+
+	private static Date dateValue(PortableDeviceValuesImplWin32 values, PropertyKey key) {
+		try {
+			return new OleDate(values.getFloatValue(key));
+		} catch (COMException e) {
+			return null;
+		}
+	}
+}
@@ -1,521 +1,914 @@
-package main;
-
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
-
-import javax.swing.text.SimpleAttributeSet;
-import javax.swing.text.StyleConstants;
-
-import org.jaudiotagger.tag.FieldKey;
-import org.jaudiotagger.tag.images.Artwork;
-
-import data.DataClass;
-import data.DoubleWrapper;
-import filesystem.MTPDeviceStrategy;
-import filesystem.PCDeviceStrategy;
-import framework.DeviceStrategy;
-import framework.FileWrapper;
-import framework.StateDeviceStrategy;
-
-public class MusicSyncer {
-    private final FileWrapper srcFolder;
-    private final FileWrapper dstFolder;
-    // Options are false by default.
-    private boolean optionAddNewMusic = false;
-    private boolean optionDeleteOrphanedMusic = false;
-    private boolean optionSearchInSubdirectories = false;
-    private final SimpleAttributeSet attr = new SimpleAttributeSet();
-    private final DeviceStrategy srcStrategy;
-    private final DeviceStrategy dstStrategy;
-    private final StateDeviceStrategy stateDeviceStrategy;
-    /**
-     * We want to make a list of keys to avoid duplication and reduce the
-     * likelihood of the programmer forgetting to check for a key. This list
-     * will NOT be able to be modified after creation as this will add bugs.
-     */
-    // TODO DISC_NO disabled until it can be looked up on an MTP device
-    private final List<FieldKey> listOfFieldKeys = Collections.unmodifiableList(Arrays.asList(
-            FieldKey.TITLE, FieldKey.ARTIST,
-            FieldKey.ALBUM_ARTIST,
-            FieldKey.ALBUM, FieldKey.YEAR,
-            FieldKey.TRACK, //FieldKey.DISC_NO,
-            FieldKey.GENRE, FieldKey.COMPOSER));
-	
-    // TODO Temporary measure for getting artwork on PC. On mtp, this is used to
-	// ignore artwork because I do not know how to get artwork from an mtp device
-	// (unless completely assumed to be android...)
-	private boolean isSrcDevice;
-	private boolean isDstDevice;
-    
-    public MusicSyncer(String srcFolderStr, String dstFolderStr, boolean isSrcDevice, boolean isDstDevice) {
-    	//srcFolderStr = srcFolderStr.replace('\\', '/');
-    	//dstFolderStr = dstFolderStr.replace('\\', '/');
-    	this.isSrcDevice = isSrcDevice;
-    	this.isDstDevice = isDstDevice;
-    	srcStrategy = (isSrcDevice ? new MTPDeviceStrategy(srcFolderStr) : new PCDeviceStrategy(srcFolderStr));
-    	dstStrategy = (isDstDevice ? new MTPDeviceStrategy(dstFolderStr) : new PCDeviceStrategy(dstFolderStr));
-    	// TODO Statedevicestrat is ONLY used to determine whether to use mtp strat. or pc strat when copying...
-		stateDeviceStrategy = new SwitchBetweenDevicesStrategy(srcStrategy, dstStrategy, isSrcDevice, isDstDevice);
-    	//deviceStrategy.setToPCOrDevice(false); // Default value.
-    	srcFolder = srcStrategy.getFolder();
-    	dstFolder = dstStrategy.getFolder();
-    }
-    
-    /**
-     * This method is used to start the whole syncing process. It consists of
-     * three parts: building a list of modified music, determining what metadata
-     * was changed, and making the appropriate updates.
-     * 
-     * @throws InterruptedException
-     */
-    public void initiate() throws InterruptedException {
-        if (srcFolder.isDirectory() && dstFolder.isDirectory()) {
-			DoubleWrapper<List<FileWrapper>, List<FileWrapper>> tuppleModifiedNewMusic = buildMusicListToSync(srcFolder);
-            updateMetaData(tuppleModifiedNewMusic.getArg1(), tuppleModifiedNewMusic.getArg2());
-            addNewMusicList(tuppleModifiedNewMusic.getArg2());
-        } else {
-            StyleConstants.setForeground(attr, DataClass.ERROR_COLOR);
-            UI.writeStatusMsg("ERROR: The source/target folder is not a folder or does not exist.", attr);
-        }
-    }
-
-    /**
-	 * This method builds a list of music which have been modified since last sync
-	 * session. Note that this means if the program cannot find a previous session
-	 * file, <b>ALL</b> music will be marked as modified until the metadata is
-	 * closely examined.
-	 * 
-	 * @param currentSrcFolder
-	 *            - the current source folder. Used to handle nested folders.
-	 * @return a tuple of lists containing 1) a list of modified music and 2) a list
-	 *         of new music.
-	 * @throws InterruptedException
-	 */
-    public DoubleWrapper<List<FileWrapper>,List<FileWrapper>> buildMusicListToSync(FileWrapper currentSrcFolder)
-            throws InterruptedException {
-    	final FileWrapper[] listOfSrc = srcFolder.listFiles();
-    	final FileWrapper[] listOfDst = dstFolder.listFiles();
-        // TODO This call here is useless when it comes to nested folders...
-        UI.setMaximumLimitOnProgressBar((listOfSrc.length + listOfDst.length));
-        final List<FileWrapper> sortedListOfSrc = new ArrayList<>(); // A list with only the modified music.
-        final List<FileWrapper> listOfNewMusic = new ArrayList<>(); // A list with only the music to be added.
-        final StringBuilder currentSession = new StringBuilder();
-        final List<DoubleWrapper<String, Integer>> lastSession = tryToLoadPreviousSession();
-        
-        StyleConstants.setForeground(attr, DataClass.INFO_COLOR);
-        UI.writeStatusMsg("List of src and dst folders completed.", attr);
-        // Before we begin, we might want to check if there is any orphaned
-        // music which we can get rid of to avoid extra comparisons.
-        if (optionDeleteOrphanedMusic) {
-            UI.writeStatusMsg("Locating orphaned music...", attr);
-            final String folderSrcPath = currentSrcFolder.getAbsolutePath();
-            lookForAndDeleteOrphanedMusicInDst(listOfDst, folderSrcPath);
-        }
-        StyleConstants.setForeground(attr, DataClass.INFO_COLOR);
-        UI.writeStatusMsg("Finding files in src which have been updated since last session...", attr);
-        /*
-         * We use a separate index for the last session file because we cannot
-         * guarantee that the amount of music in the source folder equals the
-         * amount described in the file.
-         */
-        int lastSessionIndex = 0;
-        for (int i = 0; i < listOfSrc.length; i++) { // The algorithm
-            if (Thread.currentThread().isInterrupted()) {
-                throw new InterruptedException();
-            }
-            final FileWrapper fileEntrySrc = listOfSrc[i];
-            if (optionSearchInSubdirectories && fileEntrySrc.isDirectory()) {
-                // If a folder was found, and the user wants it, then search it.
-                // TODO Will not be tested with the current directory
-                System.err.println("Recursing through folder; THIS SHOULD NOT HAPPEN (FOR NOW)");
-                throw new UnsupportedOperationException(getClass().getName() + ": Recursing subdirectories in music folder not implemented yet");
-                /*
-                FileWrapper currentSrcFolderCopy = currentSrcFolder; // Take a backup of the current location
-                currentSrcFolder = fileEntrySrc;
-                buildMusicListToSync(currentSrcFolder); // Recurse the subdirectory
-                currentSrcFolder = currentSrcFolderCopy; // Restore the original folder.
-                continue;
-                */
-            }
-            // Get file name and extension, if any.
-            final String strFile = fileEntrySrc.getName();
-            final int fileExtIndex = strFile.lastIndexOf("."); // If no extension, this will default to -1.
-            final String strExt = strFile.substring(fileExtIndex + 1); 
-            // We use MurmurHash3 on the file itself to get a unique hash to compare with.
-            /* TODO Somehow find a way to create a unique value for files on PC AND MOTHERFUCKING MTP. Fuck jmtp...
-            byte[] fileEntrySrcBytes = {0};
-            try {
-                fileEntrySrcBytes = Files.readAllBytes(fileEntrySrc.toPath());
-            } catch (IOException e) { // Will occur if the synchronization is stopped abruptly. 
-                System.err.println("FATAL: Could not read bytes of " + strFile + " for hashing.");
-                e.printStackTrace();
-            }
-            final int fileHash = MurmurHash3.murmurhash3_x86_32(fileEntrySrcBytes, 0, strFile.length(), 14);
-            */
-            final int fileHash = 0;
-            //final long fileLastMod = fileEntrySrc.lastModified();
-            // To make it case-insensitive (and avoid problems with Turkish), convert to uppercase.
-            switch (strExt.toUpperCase()) {
-            // Exploit the concept of fallthrough.
-            case "MP3":
-            case "M4A":
-                // Try to locate the file in the previous session instead of checking all the metadata.
-                updateCurrentSession(currentSession, strFile, fileHash);
-                boolean hasBeenModified = true;
-                boolean wasFileLocated = false;
-                if (lastSessionIndex < lastSession.size()) {
-                    final boolean isSameFile = lastSession.get(lastSessionIndex).getArg1().equals(strFile);
-                    // We assume that, for the most part, most music is unchanged from last session.
-                    if (!isSameFile) {
-						// Although it is not the same file, we have to make absolutely sure that it is
-						// not further down (or up) the last session file.
-                        DoubleWrapper<Boolean, Integer> locateFileWrapper =
-                                tryToLocateFileInPreviouSession(lastSession, lastSessionIndex, strFile);
-                        wasFileLocated = locateFileWrapper.getArg1();
-                        hasBeenModified = locateFileWrapper.getArg2() != fileHash;
-                    } else {
-                    	hasBeenModified = lastSession.get(lastSessionIndex).getArg2() != fileHash;
-                        wasFileLocated = true;
-                    }
-                    if (wasFileLocated) {
-						// If and only if the file was located, then we can move on to the next file
-						// entry. This is to avoid skipping a file and prematurely finish the last
-						// session.
-                        lastSessionIndex++;
-                    }
-                }
-                // Check if the music exists in dst.
-                
-                
-                
-                ///////////////////////////////////////////////////////////////////////////////
-				// TODO until hashing or something similar can be implemented for mtp files
-				// (hashing requires a byte array representing the MTPFile...), hasBeenModified
-				// will always be true.
-                ///////////////////////////////////////////////////////////////////////////////
-                hasBeenModified = true;
-                
-                
-                
-                FileWrapper fileInDst = dstStrategy.getFileInstance(dstFolder.getAbsolutePath() + File.separatorChar + strFile);
-                if (wasFileLocated && !hasBeenModified) {
-                    UI.updateProgressBar(2);
-                    continue;
-                } else if (optionAddNewMusic && !fileInDst.doesFileExist()) {
-					// If the option was checked, "mark" new music by adding them to a list whose
-					// contents will be added later. This should be the last operation in the whole
-					// program because it adds unnecessary comparisons (at minimum n-checks!).
-                    listOfNewMusic.add(fileEntrySrc);
-                } else if (fileInDst.doesFileExist()){
-                    sortedListOfSrc.add(fileEntrySrc);
-                } else {
-                	UI.updateProgressBar(2); // File was not found on dst and the user does not want to add it.
-                }
-                break;
-            default:
-            	UI.updateProgressBar(1);
-                break; // "These are not the files you are looking for."
-            }
-        }
-        // When all is finished and done, save the list of music to a .txt file (will overwrite existing).
-        try {
-            Paths.get("MLMS_LastSession.txt").toFile().setWritable(true);
-            Files.write(Paths.get("MLMS_LastSession.txt"),
-                        Arrays.asList(currentSession.toString()), Charset.forName("UTF-8"));
-            Paths.get("MLMS_LastSession.txt").toFile().setWritable(false);
-        } catch (IOException e) {
-            System.err.println("FATAL: Could not save a list of the music to a .txt file!");
-        }
-        return new DoubleWrapper<List<FileWrapper>, List<FileWrapper>>(sortedListOfSrc, listOfNewMusic);
-    }
-    
-    /**
-     * This method inspects the list of music given and examines the metadata,
-     * updating it a change is detected.
-     * @param sortedListOfSrc
-     *            - a list of modified music to be examined.
-     * @param listOfNewMusic
-     *            - a list of new music to be directly copied from src to dst.
-     * 
-     * @throws InterruptedException
-     */
-    public void updateMetaData(List<FileWrapper> sortedListOfSrc, List<FileWrapper> listOfNewMusic)
-            throws InterruptedException {
-        StyleConstants.setForeground(attr, DataClass.INFO_COLOR);
-        UI.writeStatusMsg("Updating metadata...", attr);
-        
-        for (final FileWrapper fileSrc : sortedListOfSrc) {
-            if (Thread.currentThread().isInterrupted()) {
-                throw new InterruptedException();
-            }
-            // Create a FileWrapper of the file at destination.
-            FileWrapper fileDst = dstStrategy.getFileInstance(dstFolder.getAbsolutePath() + File.separatorChar + fileSrc.getName());
-            
-			// Before getting every relevant metadata, we check the length of both music
-			// files. If the mod. version is not the same, then the music data has been
-			// modified. The only fix is to replace and return.
-            
-            // TODO jmtp does not seem to support m4a files even though they have WPD information.
-            // So, m4a files are skipped for now...
-            final int fileExtIndex = fileSrc.getName().lastIndexOf("."); // If no extension, this will default to -1.
-            final String strExt = fileSrc.getName().substring(fileExtIndex + 1);
-        	if (strExt.toUpperCase().equals("MP3")) {
-        		// TODO added space to differentiate between necessary code (below)
-        		// and temporary library-constrains-me-again code (above)
-        		
-        		
-	            if (!fileSrc.getDuration().equals(fileDst.getDuration())) {
-	            	listOfNewMusic.add(fileSrc);
-	            }
-	            else {
-	            	// Get each relevant tag from src and dst version of the file and save
-	                // them in lists for later comparisons.
-	            	for (FieldKey fieldKey : listOfFieldKeys) {
-	            		final String tagValueSrc = fileSrc.getTagData(fieldKey);
-	                	final String tagValueDst = fileDst.getTagData(fieldKey);
-						if (!tagValueSrc.equals(DataClass.ERROR_STRING) && !tagValueDst.equals(DataClass.ERROR_STRING)
-								&& !tagValueSrc.equals(tagValueDst)) {
-	                		fileDst.changeTag(fieldKey, tagValueSrc);
-	                	}
-	            	}
-					// Artworks, however, are a special case. Notice that we are only interested in
-					// the first artwork as the others are assumed to be mistakes since they are not
-					// shown when the music is played.
-	            	
-	            	// TODO This check is very, very necessary as I can only
-	            	// acquire artwork if the music is on the pc. If it's on an MTP
-	            	// device, then I have yet to find a method on how to get it.
-	            	// jmtp is not documented at all...
-	            	if (!isSrcDevice && !isDstDevice) {
-		                final Artwork srcArtwork = fileSrc.getAlbumArt();
-		                final Artwork dstArtwork = fileDst.getAlbumArt();
-		                if (srcArtwork != null && dstArtwork == null) {
-		                	fileDst.changeAlbumArt(srcArtwork);
-		                } else if (srcArtwork == null && dstArtwork != null) {
-		                	fileDst.changeAlbumArt(null); // Delete artwork
-		                } else if (srcArtwork != null && dstArtwork != null) {
-		                    // Only get the first artwork.
-		                    byte[] srcArtworkArr = srcArtwork.getBinaryData();
-		                    byte[] dstArtworkArr = dstArtwork.getBinaryData();
-		                    if (!Arrays.equals(srcArtworkArr, dstArtworkArr)) {
-		                    	fileDst.changeAlbumArt(null); // Delete dst artwork first
-		                    	fileDst.changeAlbumArt(srcArtwork); // Add new artwork from src.
-		                    }
-		                }
-	            	}
-	            	fileDst.applyTagChanges();
-	            }
-        	}
-            UI.updateProgressBar(2);
-        }
-    }
-
-    /**
-	 * Locate the current file in the previous session file.
-	 * 
-	 * @param lastSession
-	 *            - our last session file where each entry contains a name and a
-	 *            last modified.
-	 * @param lastSessionIndex
-	 *            - the current index describing our location in src.
-	 * @param strFile
-	 *            - the name of the current file.
-	 * @return a tuple containing a boolean for whether the file was found and its
-	 *         last modified date. If it was not found, then the date is 0.
-	 */
-    public DoubleWrapper<Boolean, Integer> tryToLocateFileInPreviouSession(
-            List<DoubleWrapper<String, Integer>> lastSession, int lastSessionIndex,
-            String strFile) {
-        boolean isOutOfBound = lastSession.size() < lastSessionIndex || lastSessionIndex < 0;
-        boolean isPreceedingCurrentFile = false;
-        boolean isFollowingCurrentFile = false;
-        boolean wasFileLocated = false;
-        do {
-			int currentFileComparedToPreviousVersion = lastSession.get(lastSessionIndex).getArg1().compareTo(strFile);
-            if (currentFileComparedToPreviousVersion < 0) {
-                // We are too low behind in our session list.
-                if (isFollowingCurrentFile) {
-					// The previous session did not contain the current file; in the previous
-					// iteration, the index was decremented.
-                    break;
-                }
-                isPreceedingCurrentFile = true;
-                lastSessionIndex++;
-            } else if (currentFileComparedToPreviousVersion > 0) {
-                // We are too far ahead in our session list.
-                if (isPreceedingCurrentFile) {
-                    break; // Same conclusion for the opposite reason; before, the index was incremented.
-                }
-                isFollowingCurrentFile = true;
-                lastSessionIndex--;
-            } else {
-                wasFileLocated = true; // Hoozah! We found the file.
-            }
-            isOutOfBound = lastSessionIndex >= lastSession.size() || lastSessionIndex < 0;
-        } while (!isOutOfBound && !wasFileLocated);
-        if (!isOutOfBound) {
-            return new DoubleWrapper<Boolean, Integer>(wasFileLocated, lastSession.get(lastSessionIndex).getArg2());
-        }
-        return new DoubleWrapper<Boolean, Integer>(wasFileLocated, 0);
-    }
-    
-	/**
-	 * This method copies new music to {@link #dstFolder}.
-	 * 
-	 * @param listOfNewMusic
-	 *            - a list of new music to be added directly.
-	 * @throws InterruptedException
-	 */
-    public void addNewMusicList(List<FileWrapper> listOfNewMusic) throws InterruptedException {
-        StyleConstants.setForeground(attr, DataClass.NEW_MUSIC_COLOR);
-        for (final FileWrapper newMusic : listOfNewMusic) {
-            if (Thread.currentThread().isInterrupted()) {
-                throw new InterruptedException();
-            }
-            String strFile = newMusic.getName();
-            try {
-                stateDeviceStrategy.copyMusicToDst(newMusic);
-                UI.writeStatusMsg("Added " + strFile + ".", attr);
-            } catch (IOException e) {
-                StyleConstants.setForeground(attr, DataClass.ERROR_COLOR);
-                UI.writeStatusMsg("FATAL: Could not copy " + strFile + " to destination.", attr);
-                e.printStackTrace();
-            }
-            UI.updateProgressBar(2);
-        }
-    }
-    
-    /**
-     * Delete orphaned music in the specified folder if the option was checked.
-     * This should be the first operation of the program. Otherwise, it adds
-     * more comparisons and bugs out the sorted list.
-     * 
-     * @param listOfFolder
-     *            - a list of files in the specified folder
-     * @param pathToFolder
-     *            - the path to the folder.
-     * @throws InterruptedException 
-     */
-    public void lookForAndDeleteOrphanedMusicInDst(FileWrapper[] listOfFolder, String pathToFolder) throws InterruptedException {
-        for (final FileWrapper fileEntryDst : listOfFolder) {
-            if (Thread.currentThread().isInterrupted()) {
-                throw new InterruptedException();
-            }
-            // Check if it's music first. If it is not, then skip it.
-            final String strFile = fileEntryDst.getName();
-            final int fileExtIndex = strFile.lastIndexOf("."); // If no extension, this will default to -1.
-            final String strExt = strFile.substring(fileExtIndex + 1);
-            switch (strExt.toUpperCase()) {
-            // Exploit the concept of fallthrough.
-            case "MP3":
-            case "M4A":
-				FileWrapper fileOnSrc = srcStrategy.getFileInstance(pathToFolder + File.separatorChar + fileEntryDst.getName());
-	            if (fileOnSrc.doesFileExist()) {
-	                continue;
-	            }
-	            if (fileEntryDst.deleteFile()) {
-	                StyleConstants.setForeground(attr, DataClass.DEL_MUSIC_COLOR);
-	                UI.writeStatusMsg("Deleted " + fileEntryDst.getName(), attr);
-	                UI.updateProgressBar(1);
-	            } else {
-	                StyleConstants.setForeground(attr, DataClass.ERROR_COLOR);
-	                UI.writeStatusMsg("Could not delete " + fileEntryDst.getName() + ".", attr);
-	            }
-            default:
-            	UI.updateProgressBar(1); // This was not a music file. Just skip it.
-            	break;
-            }
-        }
-    }
-    
-    /**
-     * Load and return the contents of the previous session file, if available.
-     * The music contained in the .txt file should be sorted in an alphabetic
-     * order. Use this fact to search through this list and the current list of
-     * music (i.e. the src folder) at the same time.
-     * 
-     * @return a list containing the previous session. Otherwise, it is empty.
-     * @throws InterruptedException
-     */
-    public List<DoubleWrapper<String, Integer>> tryToLoadPreviousSession() throws InterruptedException {
-        File lastSession = new File("MLMS_LastSession.txt");
-        // If the file does not exist, then create it for the future syncing.
-        if (!lastSession.exists()) {
-            try {
-                lastSession.createNewFile();
-            } catch (IOException e) {
-                StyleConstants.setForeground(attr, DataClass.ERROR_COLOR);
-                UI.writeStatusMsg("FATAL: Could not create a file to store the current list of music in!", attr);
-            }
-        }
-        List<DoubleWrapper<String, Integer>> lastSessionList = new ArrayList<>();
-        // Try-with-ressources to ensure that the stream is closed. Notice that
-        // we do not just make a new instance of FileReader because it uses
-        // Java's platform default encoding, and that is not always correct!
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(
-                new FileInputStream(lastSession), Charset.forName("UTF-8")))) {
-            // Syntax: name of file on the first line and its last modified date on the next line.
-            String line = br.readLine();
-            while (line != null) {
-                if (Thread.currentThread().isInterrupted()) {
-                    throw new InterruptedException();
-                }
-                String name = line;
-                line = br.readLine();
-                // To avoid NumberFormatException on empty lines.
-                if (line != null) {
-                    int lastMod = Integer.parseInt(line);
-                    lastSessionList.add(new DoubleWrapper<>(name, lastMod));
-                }
-                line = br.readLine();
-            }
-        } catch (FileNotFoundException e) {
-            SimpleAttributeSet attr = new SimpleAttributeSet();
-            StyleConstants.setForeground(attr, DataClass.INFO_COLOR);
-            UI.writeStatusMsg("No last sync session was found.", attr);
-        } catch (IOException e) {
-            System.err.println("Error when loading last sync session: " + e.getMessage());
-        }
-        return lastSessionList;
-    }
-    
-    /**
-     * Update the current session file with new entries. We use a StringBuilder
-     * to pass the reference to the string by value and thus update the session
-     * file correctly.
-     * 
-     * @param currentSession
-     *            - A StringBuilder representation of the current session file.
-     * @param strFile
-     *            - the current file.
-     * @param fileLastMod
-     *            - the last modified date of the file.
-     */
-    private void updateCurrentSession(StringBuilder currentSession, String strFile, long fileLastMod) {
-        currentSession.append(strFile + System.lineSeparator());
-        currentSession.append(fileLastMod + System.lineSeparator());
-    }
-    
-    public void setAddNewMusicOption(boolean option) {
-        optionAddNewMusic = option;
-    }
-    
-    public void setDeleteOrphanedMusic(boolean option) {
-        optionDeleteOrphanedMusic = option;
-    }
-    
-    public void setSearchInSubdirectories(boolean option) {
-        optionSearchInSubdirectories = option;
-    }
-}
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+
+import org.jaudiotagger.tag.FieldKey;
+
+import data.DataClass;
+import data.DestinationSnapshot;
+import data.DoubleWrapper;
+import data.FileState;
+import data.Fingerprint;
+import data.SyncPlan;
+import data.TagPatch;
+import data.TagSnapshot;
+import filesystem.MTPDeviceStrategy;
+import filesystem.PCDeviceStrategy;
+import framework.DeviceStrategy;
+import framework.FileWrapper;
+import framework.StateDeviceStrategy;
+import util.ChangeDetector;
+import util.CopyScheduler;
+import util.DestinationSnapshotStore;
+import util.LibraryWalker;
+import util.ListingDiff;
+import util.MP3DurationProbe;
+import util.MurmurHash3;
+import util.MusicFormat;
+import util.Pipeline;
+import util.SessionIndex;
+import util.SourceMetadataStore;
+import util.SyncPlanFile;
+
+public class MusicSyncer {
+    private final FileWrapper srcFolder;
+    private final FileWrapper dstFolder;
+    // Options are false by default.
+    private boolean optionAddNewMusic = false;
+    private boolean optionDeleteOrphanedMusic = false;
+    private boolean optionSearchInSubdirectories = false;
+    private static final int WALKER_THREADS_PER_CORE = 2;
+    private static final FileState UNKNOWN_STATE = new FileState(-1, 0, Fingerprint.UNKNOWN);
+    private static final String SESSION_FILE_PREFIX = "MLMS_LastSession_";
+    private static final String SESSION_FILE_SUFFIX = ".dat";
+    private static final String DST_SNAPSHOT_FILE = "MLMS_DstSnapshots.dat";
+    private static final String SRC_METADATA_FILE = "MLMS_SrcMetadata.dat";
+    private static final int METADATA_QUEUE_SIZE_PER_WORKER = 4;
+    /**
+     * The amount of files copied at once when both src and dst are folders on
+     * the PC; 1 copies them one by one. It can be set with the system property
+     * "mlms.copyParallelism".
+     */
+    private static final int COPY_PARALLELISM = Math.max(1, Integer.getInteger("mlms.copyParallelism", 4));
+    private static final long BYTES_PER_MB = 1024 * 1024;
+    private final SimpleAttributeSet attr = new SimpleAttributeSet();
+    private final DeviceStrategy srcStrategy;
+    private final DeviceStrategy dstStrategy;
+    private final StateDeviceStrategy stateDeviceStrategy;
+    private final SourceMetadataStore srcMetadata;
+    /** The session file of this pair of src and dst folders. */
+    private final Path sessionFile;
+    /**
+     * The music in dst to be patched by the last plan, by its relative path, as
+     * found by the listing diff. Applying the plan then needs no lookups in dst.
+     */
+    private final Map<String, FileWrapper> dstFilesToPatch = new HashMap<>();
+    /**
+     * The absolute paths of the music in dst which is also in src, as found by
+     * the listing diff of the last plan. Null if no plan was made in this
+     * session. Snapshots of any other music in dst are dropped from the store.
+     */
+    private Set<String> dstMusicInSrc;
+    /**
+     * We want to make a list of keys to avoid duplication and reduce the
+     * likelihood of the programmer forgetting to check for a key. This list
+     * will NOT be able to be modified after creation as this will add bugs.
+     */
+    // TODO DISC_NO disabled until it can be looked up on an MTP device
+    private final List<FieldKey> listOfFieldKeys = Collections.unmodifiableList(Arrays.asList(
+            FieldKey.TITLE, FieldKey.ARTIST,
+            FieldKey.ALBUM_ARTIST,
+            FieldKey.ALBUM, FieldKey.YEAR,
+            FieldKey.TRACK, //FieldKey.DISC_NO,
+            FieldKey.GENRE, FieldKey.COMPOSER));
+	
+    // TODO Temporary measure for getting artwork on PC. On mtp, this is used to
+	// ignore artwork because I do not know how to get artwork from an mtp device
+	// (unless completely assumed to be android...)
+	private boolean isSrcDevice;
+	private boolean isDstDevice;
+    
+    public MusicSyncer(String srcFolderStr, String dstFolderStr, boolean isSrcDevice, boolean isDstDevice) {
+    	//srcFolderStr = srcFolderStr.replace('\\', '/');
+    	//dstFolderStr = dstFolderStr.replace('\\', '/');
+    	this.isSrcDevice = isSrcDevice;
+    	this.isDstDevice = isDstDevice;
+    	// Music in src on the PC remembers its metadata, so it is only read again once it changes.
+    	srcMetadata = new SourceMetadataStore(listOfFieldKeys);
+    	srcStrategy = (isSrcDevice ? new MTPDeviceStrategy(srcFolderStr)
+    			: new PCDeviceStrategy(srcFolderStr, srcMetadata));
+    	dstStrategy = (isDstDevice ? new MTPDeviceStrategy(dstFolderStr) : new PCDeviceStrategy(dstFolderStr));
+    	// TODO Statedevicestrat is ONLY used to determine whether to use mtp strat. or pc strat when copying...
+		stateDeviceStrategy = new SwitchBetweenDevicesStrategy(srcStrategy, dstStrategy, isSrcDevice, isDstDevice);
+    	//deviceStrategy.setToPCOrDevice(false); // Default value.
+    	srcFolder = srcStrategy.getFolder();
+    	dstFolder = dstStrategy.getFolder();
+    	sessionFile = sessionFileFor(srcFolderStr, dstFolderStr);
+    }
+    
+    /**
+     * Get the session file of a pair of src and dst folders. Each pair has its
+     * own, so that syncing the same src with another dst starts from what is
+     * known about that dst.
+     * 
+     * @param srcFolderStr
+     *            - the src folder, as given by the user.
+     * @param dstFolderStr
+     *            - the dst folder, as given by the user.
+     * @return the path of the session file in the current directory.
+     */
+    static Path sessionFileFor(String srcFolderStr, String dstFolderStr) {
+        final String folders = srcFolderStr + File.pathSeparator + dstFolderStr;
+        final int hash = MurmurHash3.murmurhash3_x86_32(folders, 0, folders.length(), 0);
+        return Paths.get(SESSION_FILE_PREFIX + String.format("%08x", hash) + SESSION_FILE_SUFFIX);
+    }
+    
+    /**
+     * This method is used to start the whole syncing process. It consists of
+     * two phases: planning, which finds the orphaned, new and modified music and
+     * determines what metadata was changed, and applying, which makes the
+     * appropriate updates.
+     * 
+     * @throws InterruptedException
+     */
+    public void initiate() throws InterruptedException {
+        if (srcFolder.isDirectory() && dstFolder.isDirectory()) {
+            applyPlan(plan());
+        } else {
+            StyleConstants.setForeground(attr, DataClass.ERROR_COLOR);
+            UI.writeStatusMsg("ERROR: The source/target folder is not a folder or does not exist.", attr);
+        }
+    }
+
+    /**
+     * The planning phase. Nothing in dst is changed; the plan only describes
+     * what has to be changed.
+     * 
+     * @return the plan for syncing dst with src.
+     * @throws InterruptedException
+     */
+    public SyncPlan plan() throws InterruptedException {
+        final SyncPlan plan = new SyncPlan(srcFolder.getAbsolutePath(), dstFolder.getAbsolutePath());
+        dstFilesToPatch.clear();
+        tryToLoadSourceMetadata();
+        final DoubleWrapper<List<DoubleWrapper<FileWrapper, FileWrapper>>, List<FileWrapper>> tuppleModifiedNewMusic =
+                buildMusicListToSync(srcFolder, plan);
+        planMetaData(tuppleModifiedNewMusic.getArg1(), tuppleModifiedNewMusic.getArg2(), plan);
+        if (!isSrcDevice) {
+            try {
+                srcMetadata.save(Paths.get(SRC_METADATA_FILE));
+            } catch (IOException e) {
+                System.err.println("FATAL: Could not save the metadata of the music in src!");
+            }
+        }
+        for (final FileWrapper newMusic : tuppleModifiedNewMusic.getArg2()) {
+            plan.addAdd(LibraryWalker.relativePath(srcFolder, newMusic));
+        }
+        StyleConstants.setForeground(attr, DataClass.INFO_COLOR);
+        UI.writeStatusMsg("Planned " + plan.getDeletes().size() + " deletions, " + plan.getAdds().size()
+                + " additions and " + plan.getPatches().size() + " tag updates.", attr);
+        return plan;
+    }
+    
+    /**
+     * The applying phase. The plan is not applied in the order it was made:
+     * orphaned music is deleted first to make room in dst, then the tags are
+     * updated folder by folder, and finally the new music is copied.
+     * 
+     * @param plan
+     *            - the plan to apply, made by {@link #plan()} in this or an
+     *            earlier session. It is rejected if it was made for other
+     *            src or dst folders.
+     * @throws InterruptedException
+     */
+    public void applyPlan(SyncPlan plan) throws InterruptedException {
+        if (!ListingDiff.isSamePath(plan.getSrcRoot(), srcFolder.getAbsolutePath())
+                || !ListingDiff.isSamePath(plan.getDstRoot(), dstFolder.getAbsolutePath())) {
+            StyleConstants.setForeground(attr, DataClass.ERROR_COLOR);
+            UI.writeStatusMsg("ERROR: The plan was made for syncing " + plan.getSrcRoot() + " with "
+                    + plan.getDstRoot() + ", not for these folders.", attr);
+            return;
+        }
+        // The music which could not be copied or patched, by its path relative to src.
+        final Set<String> failedMusic = new HashSet<>();
+        deleteOrphanedMusic(plan.getDeletes());
+        applyTagPatches(plan.getPatches(), failedMusic);
+        final List<FileWrapper> listOfNewMusic = new ArrayList<>();
+        for (final String strFile : plan.getAdds()) {
+            listOfNewMusic.add(srcStrategy.getFileInstance(srcFolder.getAbsolutePath() + File.separatorChar + strFile));
+        }
+        addNewMusicList(listOfNewMusic, failedMusic);
+        // Only now is dst in sync with the session of the plan, except for the failed music.
+        // It is left out of the session, so that it is looked at again next time.
+        final SessionIndex.Writer appliedSession = new SessionIndex.Writer();
+        for (Map.Entry<String, FileState> sessionEntry : plan.getSession().entrySet()) {
+            appliedSession.add(sessionEntry.getKey(), sessionEntry.getValue());
+        }
+        appliedSession.removeAll(failedMusic);
+        try {
+            sessionFile.toFile().setWritable(true);
+            appliedSession.write(sessionFile);
+            sessionFile.toFile().setWritable(false);
+        } catch (IOException e) {
+            System.err.println("FATAL: Could not save a list of the music to the session file!");
+        }
+    }
+    
+    /**
+     * Save a plan so that it can be applied later with {@link #loadPlan}, by a
+     * MusicSyncer for the same src and dst folders. Note that making a plan
+     * reads dst as well, so dst has to be available in both sessions.
+     * 
+     * @throws IOException
+     *             if the plan could not be saved.
+     */
+    public void savePlan(SyncPlan plan, Path path) throws IOException {
+        SyncPlanFile.save(plan, path, listOfFieldKeys);
+    }
+    
+    /**
+     * Load a plan saved by {@link #savePlan}.
+     * 
+     * @throws IOException
+     *             if the plan could not be loaded.
+     */
+    public SyncPlan loadPlan(Path path) throws IOException {
+        return SyncPlanFile.load(path, listOfFieldKeys);
+    }
+    
+    /**
+	 * This method builds a list of music which have been modified since last sync
+	 * session. Note that this means if the program cannot find a previous session
+	 * file, <b>ALL</b> music will be marked as modified until the metadata is
+	 * closely examined.
+	 * 
+	 * @param currentSrcFolder
+	 *            - the current source folder. Used to handle nested folders.
+	 * @param plan
+	 *            - the plan to add the orphaned music to.
+	 * @return a tuple of lists containing 1) a list of modified music, each with
+	 *         its dst version, and 2) a list of new music.
+	 * @throws InterruptedException
+	 */
+    public DoubleWrapper<List<DoubleWrapper<FileWrapper, FileWrapper>>, List<FileWrapper>> buildMusicListToSync(
+            FileWrapper currentSrcFolder, SyncPlan plan) throws InterruptedException {
+        StyleConstants.setForeground(attr, DataClass.INFO_COLOR);
+        UI.writeStatusMsg("Listing the music in src and dst...", attr);
+        // Each side is walked on its own pool. MTP devices are walked on this thread instead.
+        final List<FileWrapper> listOfSrc = createWalker(isSrcDevice).walk(currentSrcFolder, optionSearchInSubdirectories);
+        final List<FileWrapper> listOfDst = createWalker(isDstDevice).walk(dstFolder, optionSearchInSubdirectories);
+        UI.setMaximumLimitOnProgressBar((listOfSrc.size() + listOfDst.size()));
+        // A list with only the modified music, each with its dst version.
+        final List<DoubleWrapper<FileWrapper, FileWrapper>> sortedListOfSrc = new ArrayList<>();
+        final List<FileWrapper> listOfNewMusic = new ArrayList<>(); // A list with only the music to be added.
+        final boolean hasLastSession = sessionFile.toFile().exists();
+        final SessionIndex lastSession = tryToLoadPreviousSession();
+        final Set<String> listedDstMusic = new HashSet<>();
+        
+        StyleConstants.setForeground(attr, DataClass.INFO_COLOR);
+        UI.writeStatusMsg("List of src and dst folders completed.", attr);
+        if (!hasLastSession) {
+            UI.writeStatusMsg("No last sync session was found.", attr);
+        }
+        UI.writeStatusMsg("Finding files in src which have been updated since last session...", attr);
+		// Both listings are walked side by side, so whether a music file exists on the other
+		// side is known without looking it up. Anything which is not music is skipped here.
+        try {
+            ListingDiff.diff(currentSrcFolder, filterMusic(listOfSrc), dstFolder, filterMusic(listOfDst),
+                    new ListingDiff.Visitor() {
+                        @Override
+                        public void added(String relativePath, FileWrapper fileSrc) throws InterruptedException {
+                            addToMusicListToSync(relativePath, fileSrc, null, lastSession, plan,
+                                    sortedListOfSrc, listOfNewMusic);
+                        }
+
+                        @Override
+                        public void orphaned(String relativePath, FileWrapper fileDst) throws InterruptedException {
+                            if (optionDeleteOrphanedMusic) {
+                                plan.addDelete(relativePath);
+                            }
+                            UI.updateProgressBar(1);
+                        }
+
+                        @Override
+                        public void common(String relativePath, FileWrapper fileSrc, FileWrapper fileDst)
+                                throws InterruptedException {
+                            listedDstMusic.add(fileDst.getAbsolutePath());
+                            addToMusicListToSync(relativePath, fileSrc, fileDst, lastSession, plan,
+                                    sortedListOfSrc, listOfNewMusic);
+                            UI.updateProgressBar(1);
+                        }
+                    });
+        } finally {
+            // The old session has to be unmapped, otherwise Windows refuses to replace it once
+            // the plan has been applied (see applyPlan).
+            lastSession.close();
+        }
+        dstMusicInSrc = listedDstMusic;
+        return new DoubleWrapper<List<DoubleWrapper<FileWrapper, FileWrapper>>, List<FileWrapper>>(sortedListOfSrc,
+                listOfNewMusic);
+    }
+    
+    /**
+     * This method inspects the list of music given and examines the metadata,
+     * adding a patch to the plan for every music whose metadata has changed.
+     * @param sortedListOfSrc
+     *            - a list of modified music to be examined, each with its dst
+     *            version.
+     * @param listOfNewMusic
+     *            - a list of new music to be directly copied from src to dst.
+     *            Music whose audio has changed is added to it.
+     * @param plan
+     *            - the plan to add the patches to.
+     * 
+     * @throws InterruptedException
+     */
+    public void planMetaData(List<DoubleWrapper<FileWrapper, FileWrapper>> sortedListOfSrc,
+            final List<FileWrapper> listOfNewMusic,
+            final SyncPlan plan) throws InterruptedException {
+        StyleConstants.setForeground(attr, DataClass.INFO_COLOR);
+        UI.writeStatusMsg("Comparing metadata...", attr);
+        final DestinationSnapshotStore dstSnapshots = tryToLoadDestinationSnapshots();
+		// Reading and comparing tags is done by a pool of workers while the results are
+		// collected on this thread. MTP devices can only be used by one thread, so if
+		// either side is a device, everything is done here.
+        final int workers = isSrcDevice || isDstDevice ? 1 : Runtime.getRuntime().availableProcessors();
+        new Pipeline<DoubleWrapper<FileWrapper, FileWrapper>, MetadataComparison>(workers,
+                workers * METADATA_QUEUE_SIZE_PER_WORKER).run(
+                sortedListOfSrc,
+                new Pipeline.Stage<DoubleWrapper<FileWrapper, FileWrapper>, MetadataComparison>() {
+                    @Override
+                    public MetadataComparison process(DoubleWrapper<FileWrapper, FileWrapper> music)
+                            throws InterruptedException {
+                        final MetadataComparison comparison = compareMetaData(music.getArg1(), music.getArg2(),
+                                dstSnapshots);
+                        // Only the result is needed from now on, not what was read from the files.
+                        comparison.fileSrc.release();
+                        comparison.fileDst.release();
+                        return comparison;
+                    }
+                },
+                new Pipeline.Sink<MetadataComparison>() {
+                    @Override
+                    public void accept(MetadataComparison comparison) throws InterruptedException {
+                        addToPlan(comparison, listOfNewMusic, plan);
+                    }
+                });
+    }
+    
+    /**
+     * Compare the metadata of a music file in src with its dst version. This
+     * only reads the files, so it may be called by several threads at once.
+     * 
+     * @param fileSrc
+     *            - the music file in src.
+     * @param fileDst
+     *            - the same music file in dst, as found by the listing diff.
+     * @param dstSnapshots
+     *            - the snapshots of the music in dst.
+     * @return the comparison. Its patch is null if the music is not compared at
+     *         all. Its snapshot is the dst version as it is now, if the patch
+     *         has no changes, or as it will be once the patch is applied.
+     * @throws InterruptedException
+     */
+    private MetadataComparison compareMetaData(FileWrapper fileSrc, FileWrapper fileDst,
+            DestinationSnapshotStore dstSnapshots) throws InterruptedException {
+		// Before getting every relevant metadata, we check the length of both music
+		// files. If the mod. version is not the same, then the music data has been
+		// modified. The only fix is to replace and return.
+        
+        // Only some formats can be compared on an MTP device; the rest only between folders on the pc.
+        final MusicFormat format = MusicFormat.of(fileSrc.getName());
+        if (!format.isComparedOnDevices() && (isSrcDevice || isDstDevice)) {
+            return new MetadataComparison(fileSrc, fileDst, null, null);
+        }
+		// Compare against what we know of the dst version. Only if it was edited
+		// outside of the program (or never seen before) do we read it again.
+        DestinationSnapshot dstSnapshot = dstSnapshots.get(fileDst.getAbsolutePath());
+        if (dstSnapshot == null || !dstSnapshot.isUnchanged(fileDst.length(), fileDst.lastModified())) {
+            dstSnapshot = readDestinationSnapshot(fileDst);
+        }
+        if (!MP3DurationProbe.isSameDuration(fileSrc.getDuration(), dstSnapshot.getDuration())) {
+            return new MetadataComparison(fileSrc, fileDst, TagPatch.replacement(), null);
+        }
+        // Read every relevant tag from src at once and compare it with the dst version.
+        final TagSnapshot tagsDst = dstSnapshot.getTags(listOfFieldKeys);
+        final EnumMap<FieldKey, String> tagChanges = fileSrc.getTagSnapshot(listOfFieldKeys).diff(tagsDst);
+		// Artworks, however, are a special case. Notice that we are only interested in
+		// the first artwork as the others are assumed to be mistakes since they are not
+		// shown when the music is played.
+        
+        // TODO This check is very, very necessary as I can only
+        // acquire artwork if the music is on the pc. If it's on an MTP
+        // device, then I have yet to find a method on how to get it.
+        // jmtp is not documented at all...
+        TagPatch.ArtworkAction artworkAction = TagPatch.ArtworkAction.KEEP;
+        long artworkDigestDst = dstSnapshot.getArtworkDigest();
+        if (!isSrcDevice && !isDstDevice) {
+            final long artworkDigestSrc = fileSrc.getArtworkDigest();
+            if (artworkDigestSrc != artworkDigestDst) {
+                artworkAction = artworkDigestSrc == DestinationSnapshot.NO_ARTWORK
+                        ? TagPatch.ArtworkAction.DELETE : TagPatch.ArtworkAction.REPLACE;
+                artworkDigestDst = artworkDigestSrc;
+            }
+        }
+        final TagPatch patch = TagPatch.tagChanges(tagChanges, artworkAction);
+        if (!patch.hasChanges()) {
+            return new MetadataComparison(fileSrc, fileDst, patch, dstSnapshot);
+        }
+        if (!format.isTagWritable()) {
+            // The changes cannot be written, so the src version is copied again instead.
+            return new MetadataComparison(fileSrc, fileDst, TagPatch.replacement(), null);
+        }
+        return new MetadataComparison(fileSrc, fileDst, patch,
+                new DestinationSnapshot(-1, 0, dstSnapshot.getDuration(), tagsDst.with(tagChanges).getValues(),
+                        artworkDigestDst));
+    }
+    
+    /**
+     * Add the result of {@link #compareMetaData} to the plan. This is always
+     * done on the syncing thread.
+     * 
+     * @param comparison
+     *            - the comparison of a music file.
+     * @param listOfNewMusic
+     *            - the list of music to be copied from src to dst. Music that
+     *            has to be replaced is added to it.
+     * @param plan
+     *            - the plan to add the patch to.
+     * @throws InterruptedException
+     */
+    private void addToPlan(MetadataComparison comparison, List<FileWrapper> listOfNewMusic, SyncPlan plan)
+            throws InterruptedException {
+        final TagPatch patch = comparison.patch;
+        if (patch != null && patch.isReplacement()) {
+            listOfNewMusic.add(comparison.fileSrc);
+        } else if (patch != null && patch.hasChanges()) {
+            final String relativePath = LibraryWalker.relativePath(srcFolder, comparison.fileSrc);
+            plan.addPatch(new SyncPlan.FilePatch(relativePath, patch, comparison.dstSnapshot));
+            dstFilesToPatch.put(relativePath, comparison.fileDst);
+        }
+        // The snapshots of dst are only changed once a patch has been applied (see applyTagPatches).
+        UI.updateProgressBar(1);
+    }
+    
+    /**
+     * Apply the tag changes of a plan. The music is patched in the order of its
+     * path, so all music in a folder is handled in one go.
+     * 
+     * @param patches
+     *            - the tag changes of the plan.
+     * @param failedMusic
+     *            - the set to add the music whose tags could not be written to.
+     * @throws InterruptedException
+     */
+    private void applyTagPatches(List<SyncPlan.FilePatch> patches, Set<String> failedMusic)
+            throws InterruptedException {
+        if (patches.isEmpty()) {
+            return;
+        }
+        StyleConstants.setForeground(attr, DataClass.INFO_COLOR);
+        UI.writeStatusMsg("Updating metadata...", attr);
+        final List<SyncPlan.FilePatch> sortedPatches = new ArrayList<>(patches);
+        Collections.sort(sortedPatches, new Comparator<SyncPlan.FilePatch>() {
+            @Override
+            public int compare(SyncPlan.FilePatch patch1, SyncPlan.FilePatch patch2) {
+                return ListingDiff.PATH_COLLATION.compare(patch1.getRelativePath(), patch2.getRelativePath());
+            }
+        });
+        final DestinationSnapshotStore dstSnapshots = tryToLoadDestinationSnapshots();
+        int writtenMusic = 0;
+        int skippedMusic = 0;
+        for (final SyncPlan.FilePatch filePatch : sortedPatches) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            final TagPatch patch = filePatch.getPatch();
+            // Only a plan made in an earlier session has to look up its music in dst.
+            FileWrapper fileDst = dstFilesToPatch.get(filePatch.getRelativePath());
+            if (fileDst == null) {
+                fileDst = dstStrategy.getFileInstance(dstFolder.getAbsolutePath() + File.separatorChar
+                        + filePatch.getRelativePath());
+            }
+            for (Map.Entry<FieldKey, String> tagChange : patch.getTagChanges().entrySet()) {
+                fileDst.changeTag(tagChange.getKey(), tagChange.getValue());
+            }
+            switch (patch.getArtworkAction()) {
+            case DELETE:
+                fileDst.changeAlbumArt(null);
+                break;
+            case REPLACE:
+                final FileWrapper fileSrc = srcStrategy.getFileInstance(srcFolder.getAbsolutePath()
+                        + File.separatorChar + filePatch.getRelativePath());
+                fileDst.changeAlbumArt(null); // Delete dst artwork first
+                fileDst.changeAlbumArt(fileSrc.getAlbumArt()); // Add new artwork from src.
+                fileSrc.release();
+                break;
+            default:
+                break;
+            }
+            // Music whose tags already had the new values is not rewritten.
+            final boolean wasWritten = fileDst.applyTagChanges();
+            if (fileDst.hasTagChanges()) {
+                // The changes could not be written, so the dst version has to be read again next time.
+                dstSnapshots.remove(fileDst.getAbsolutePath());
+                failedMusic.add(filePatch.getRelativePath());
+            } else {
+                // Remember what was written, so the next sync does not have to read it back.
+                final DestinationSnapshot written = filePatch.getResult();
+                dstSnapshots.put(fileDst.getAbsolutePath(), new DestinationSnapshot(fileDst.length(),
+                        fileDst.lastModified(), written.getDuration(), written.getTagValues(),
+                        written.getArtworkDigest()));
+                if (wasWritten) {
+                    writtenMusic++;
+                } else {
+                    skippedMusic++;
+                }
+            }
+            fileDst.release();
+            UI.updateProgressBar(1);
+        }
+        dstFilesToPatch.clear();
+        StyleConstants.setForeground(attr, DataClass.INFO_COLOR);
+        UI.writeStatusMsg("Updated the tags of " + writtenMusic + " music files; " + skippedMusic
+                + " were already up to date.", attr);
+        if (dstMusicInSrc != null) {
+            dstSnapshots.removeMissing(dstFolder.getAbsolutePath(), optionSearchInSubdirectories, dstMusicInSrc);
+        }
+        try {
+            dstSnapshots.save(Paths.get(DST_SNAPSHOT_FILE));
+        } catch (IOException e) {
+            System.err.println("FATAL: Could not save the snapshots of the music in dst!");
+        }
+    }
+    
+    /**
+     * Read the duration, tags and artwork of a music file in dst.
+     * 
+     * @param fileDst
+     *            - the music file in dst.
+     * @return a snapshot of the file as it is now.
+     * @throws InterruptedException
+     */
+    private DestinationSnapshot readDestinationSnapshot(FileWrapper fileDst) throws InterruptedException {
+        final String[] tagValues = fileDst.getTagSnapshot(listOfFieldKeys).getValues();
+        final long artworkDigest = !isSrcDevice && !isDstDevice
+                ? fileDst.getArtworkDigest() : DestinationSnapshot.UNKNOWN_ARTWORK;
+        return new DestinationSnapshot(fileDst.length(), fileDst.lastModified(), fileDst.getDuration(), tagValues,
+                artworkDigest);
+    }
+    
+    /**
+     * Load the metadata of the music in src from the last session, if the music
+     * is on the PC.
+     */
+    private void tryToLoadSourceMetadata() {
+        if (!isSrcDevice) {
+            try {
+                srcMetadata.load(Paths.get(SRC_METADATA_FILE));
+            } catch (IOException e) {
+                System.err.println("Error when loading the metadata of the music in src: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Load the snapshots of the music in dst from the previous sessions, if
+     * available.
+     * 
+     * @return the snapshots. If there are none, then the store is empty.
+     */
+    private DestinationSnapshotStore tryToLoadDestinationSnapshots() {
+        try {
+            return DestinationSnapshotStore.load(Paths.get(DST_SNAPSHOT_FILE), listOfFieldKeys);
+        } catch (IOException e) {
+            System.err.println("Error when loading the snapshots of the music in dst: " + e.getMessage());
+            return new DestinationSnapshotStore(listOfFieldKeys);
+        }
+    }
+    
+	/**
+	 * This method copies new music to {@link #dstFolder}.
+	 * 
+	 * @param listOfNewMusic
+	 *            - a list of new music to be added directly.
+	 * @param failedMusic
+	 *            - the set to add the paths (relative to src) of the music which
+	 *            could not be copied to.
+	 * @throws InterruptedException
+	 */
+    public void addNewMusicList(List<FileWrapper> listOfNewMusic, Set<String> failedMusic)
+            throws InterruptedException {
+        StyleConstants.setForeground(attr, DataClass.NEW_MUSIC_COLOR);
+        if (!isSrcDevice && !isDstDevice && COPY_PARALLELISM > 1) {
+            addNewMusicListConcurrently(listOfNewMusic, failedMusic);
+            return;
+        }
+        // Mirror the folder structure of src on dst, one folder at a time, so that an MTP device
+        // only has to look up and list each folder once.
+        final Map<String, List<FileWrapper>> newMusicPerFolder = new LinkedHashMap<>();
+        for (final FileWrapper newMusic : listOfNewMusic) {
+            final String subfolder = LibraryWalker.relativeFolder(LibraryWalker.relativePath(srcFolder, newMusic));
+            List<FileWrapper> folderMusic = newMusicPerFolder.get(subfolder);
+            if (folderMusic == null) {
+                folderMusic = new ArrayList<>();
+                newMusicPerFolder.put(subfolder, folderMusic);
+            }
+            folderMusic.add(newMusic);
+        }
+        for (final Map.Entry<String, List<FileWrapper>> folder : newMusicPerFolder.entrySet()) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            try {
+                stateDeviceStrategy.copyMusicListToDst(folder.getValue(), folder.getKey());
+                StyleConstants.setForeground(attr, DataClass.NEW_MUSIC_COLOR);
+                for (final FileWrapper newMusic : folder.getValue()) {
+                    UI.writeStatusMsg("Added " + LibraryWalker.relativePath(srcFolder, newMusic) + ".", attr);
+                    UI.updateProgressBar(2);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                // Copy the folder again a file at a time to find out which music failed.
+                for (final FileWrapper newMusic : folder.getValue()) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedException();
+                    }
+                    addNewMusic(newMusic, folder.getKey(), failedMusic);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Copy a single file of new music to {@link #dstFolder}.
+     * 
+     * @param newMusic
+     *            - the music to be added.
+     * @param subfolder
+     *            - the folder, relative to dst, to copy the music into.
+     * @param failedMusic
+     *            - the set to add the path (relative to src) of the music to if
+     *            it could not be copied.
+     * @throws InterruptedException
+     */
+    private void addNewMusic(FileWrapper newMusic, String subfolder, Set<String> failedMusic)
+            throws InterruptedException {
+        String strFile = LibraryWalker.relativePath(srcFolder, newMusic);
+        try {
+            stateDeviceStrategy.copyMusicToDst(newMusic, subfolder);
+            StyleConstants.setForeground(attr, DataClass.NEW_MUSIC_COLOR);
+            UI.writeStatusMsg("Added " + strFile + ".", attr);
+        } catch (IOException e) {
+            StyleConstants.setForeground(attr, DataClass.ERROR_COLOR);
+            UI.writeStatusMsg("FATAL: Could not copy " + strFile + " to destination.", attr);
+            e.printStackTrace();
+            failedMusic.add(strFile);
+        }
+        UI.updateProgressBar(2);
+    }
+    
+    /**
+     * Copy new music from one folder on the PC to another with
+     * {@link #COPY_PARALLELISM} files at a time, starting with the largest
+     * files. The amount of copied bytes is shown on the progress bar.
+     * 
+     * @param listOfNewMusic
+     *            - a list of new music to be added directly.
+     * @param failedMusic
+     *            - the set to add the paths (relative to src) of the music which
+     *            could not be copied to.
+     * @throws InterruptedException
+     */
+    private void addNewMusicListConcurrently(List<FileWrapper> listOfNewMusic, final Set<String> failedMusic)
+            throws InterruptedException {
+        final Path dstPath = Paths.get(dstFolder.getAbsolutePath());
+        final List<CopyScheduler.CopyJob<String>> jobs = new ArrayList<>();
+        for (final FileWrapper newMusic : listOfNewMusic) {
+            final String strFile = LibraryWalker.relativePath(srcFolder, newMusic);
+            // Mirror the folder structure of src on dst.
+            jobs.add(new CopyScheduler.CopyJob<String>(strFile, Paths.get(newMusic.getAbsolutePath()),
+                    dstPath.resolve(strFile), newMusic.length()));
+        }
+        try {
+            new CopyScheduler(COPY_PARALLELISM).copy(jobs, new CopyScheduler.Listener<String>() {
+                @Override
+                public void copied(CopyScheduler.CopyJob<String> job) throws InterruptedException {
+                    UI.writeStatusMsg("Added " + job.getItem() + ".", attr);
+                    UI.updateProgressBar(2);
+                }
+                
+                @Override
+                public void failed(CopyScheduler.CopyJob<String> job, IOException e) throws InterruptedException {
+                    final SimpleAttributeSet errorAttr = new SimpleAttributeSet();
+                    StyleConstants.setForeground(errorAttr, DataClass.ERROR_COLOR);
+                    UI.writeStatusMsg("FATAL: Could not copy " + job.getItem() + " to destination.", errorAttr);
+                    e.printStackTrace();
+                    failedMusic.add(job.getItem());
+                    UI.updateProgressBar(2);
+                }
+                
+                @Override
+                public void progress(long copiedBytes, long totalBytes) {
+                    UI.setProgressBarText("Copied " + copiedBytes / BYTES_PER_MB + " of " + totalBytes / BYTES_PER_MB
+                            + " MB");
+                }
+            });
+        } finally {
+            UI.setProgressBarText(null);
+        }
+    }
+    
+    /**
+     * Decide what to do with a music file in src (see {@link ChangeDetector}):
+     * skip it if it is in dst and has not changed since last session, add it to
+     * the new music if it is not in dst or its audio has changed, otherwise add
+     * it to the music whose metadata is to be examined.
+     * 
+     * @param strFile
+     *            - the path of the music relative to the src folder.
+     * @param fileEntrySrc
+     *            - the music in src.
+     * @param fileEntryDst
+     *            - the same music in dst, or null if it is not there.
+     * @param lastSession
+     *            - the previous session.
+     * @param plan
+     *            - the plan being made, whose session the music is added to.
+     * @param sortedListOfSrc
+     *            - the list of modified music, each with its dst version.
+     * @param listOfNewMusic
+     *            - the list of new music.
+     * @throws InterruptedException
+     */
+    private void addToMusicListToSync(String strFile, FileWrapper fileEntrySrc, FileWrapper fileEntryDst,
+            SessionIndex lastSession, SyncPlan plan, List<DoubleWrapper<FileWrapper, FileWrapper>> sortedListOfSrc,
+            List<FileWrapper> listOfNewMusic) throws InterruptedException {
+        srcMetadata.keep(fileEntrySrc.getAbsolutePath());
+        // Try to locate the file in the previous session instead of checking all the metadata.
+        final FileState locatedState = lastSession.find(strFile);
+        final FileState previousState = locatedState != null ? locatedState : UNKNOWN_STATE;
+		// The size and last modified date are much cheaper to get than reading the
+		// file. Only if one of them changed do we use MurmurHash3 on the file itself
+		// to get a unique hash of its tags and its audio to compare with. An unchanged
+		// file only tells us src has not changed; it is still added if dst lacks it.
+        final long fileSize = fileEntrySrc.length();
+        final long fileLastMod = fileEntrySrc.lastModified();
+        final Fingerprint previousFingerprint = previousState.getFingerprint();
+        final Fingerprint fingerprint = previousState.isUnchanged(fileSize, fileLastMod)
+                ? previousFingerprint : fileEntrySrc.getFingerprint();
+        final FileState currentState = new FileState(fileSize, fileLastMod, fingerprint);
+        plan.addSessionEntry(strFile, currentState);
+        switch (ChangeDetector.decide(locatedState, currentState, fileEntryDst != null, optionAddNewMusic)) {
+        case ADD:
+			// If the option was checked, "mark" new music by adding them to a list whose
+			// contents will be added later. This should be the last operation in the whole
+			// program because it adds unnecessary comparisons (at minimum n-checks!).
+        case REPLACE:
+			// The music itself has changed since last session. Comparing the tags is
+			// pointless as the dst version will be replaced anyway.
+            listOfNewMusic.add(fileEntrySrc);
+            break;
+        case COMPARE:
+            sortedListOfSrc.add(new DoubleWrapper<>(fileEntrySrc, fileEntryDst));
+            break;
+        default:
+            // Either unchanged since last session, or not in dst and the user does not want to add it.
+            UI.updateProgressBar(1);
+            break;
+        }
+    }
+    
+    /**
+     * Keep only the music of a listing. Everything else counts as done on the
+     * progress bar right away.
+     * 
+     * @param listOfFiles
+     *            - the files of either src or dst.
+     * @return the music among the files.
+     * @throws InterruptedException
+     */
+    private List<FileWrapper> filterMusic(List<FileWrapper> listOfFiles) throws InterruptedException {
+        final List<FileWrapper> listOfMusic = new ArrayList<>(listOfFiles.size());
+        for (final FileWrapper file : listOfFiles) {
+            if (MusicFormat.of(file.getName()) != null) {
+                listOfMusic.add(file);
+            } else {
+            	UI.updateProgressBar(1); // "These are not the files you are looking for."
+            }
+        }
+        return listOfMusic;
+    }
+    
+    /**
+     * Delete the orphaned music of a plan.
+     * 
+     * @param deletes
+     *            - the paths of the orphaned music relative to the dst folder.
+     * @throws InterruptedException
+     */
+    private void deleteOrphanedMusic(List<String> deletes) throws InterruptedException {
+        for (final String strFile : deletes) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            final FileWrapper fileEntryDst = dstStrategy.getFileInstance(dstFolder.getAbsolutePath()
+                    + File.separatorChar + strFile);
+            if (fileEntryDst.deleteFile()) {
+                StyleConstants.setForeground(attr, DataClass.DEL_MUSIC_COLOR);
+                UI.writeStatusMsg("Deleted " + fileEntryDst.getName(), attr);
+            } else {
+                StyleConstants.setForeground(attr, DataClass.ERROR_COLOR);
+                UI.writeStatusMsg("Could not delete " + fileEntryDst.getName() + ".", attr);
+            }
+            UI.updateProgressBar(1);
+        }
+    }
+    
+    /**
+     * Load the previous session file, if available. The file is memory-mapped
+     * and sorted by name, so looking up a file is a binary search instead of
+     * a walk through the whole session.
+     * 
+     * @return the previous session. If there is none, then it is empty.
+     * @throws InterruptedException
+     */
+    public SessionIndex tryToLoadPreviousSession() throws InterruptedException {
+        File lastSession = sessionFile.toFile();
+        // If the file does not exist, then create it for the future syncing.
+        if (!lastSession.exists()) {
+            try {
+                lastSession.createNewFile();
+            } catch (IOException e) {
+                StyleConstants.setForeground(attr, DataClass.ERROR_COLOR);
+                UI.writeStatusMsg("FATAL: Could not create a file to store the current list of music in!", attr);
+            }
+        }
+        try {
+            return SessionIndex.load(lastSession.toPath());
+        } catch (IOException e) {
+            System.err.println("Error when loading last sync session: " + e.getMessage());
+            return SessionIndex.EMPTY;
+        }
+    }
+    
+    /**
+     * Create a walker for either src or dst. Listing folders is mostly waiting on
+     * the disk, so we use more threads than there are cores.
+     * 
+     * @param isDevice
+     *            - whether the side to be walked is an MTP device. If so, the walk
+     *            is done on the current thread.
+     * @return a walker suited for the given side.
+     */
+    private LibraryWalker createWalker(boolean isDevice) {
+        return new LibraryWalker(isDevice ? 1 : WALKER_THREADS_PER_CORE * Runtime.getRuntime().availableProcessors());
+    }
+    
+    public void setAddNewMusicOption(boolean option) {
+        optionAddNewMusic = option;
+    }
+    
+    public void setDeleteOrphanedMusic(boolean option) {
+        optionDeleteOrphanedMusic = option;
+    }
+    
+    public void setSearchInSubdirectories(boolean option) {
+        optionSearchInSubdirectories = option;
+    }
+    
+    /**
+     * The result of comparing a music file in src with its dst version.
+     */
+    private static class MetadataComparison {
+        final FileWrapper fileSrc;
+        final FileWrapper fileDst;
+        final TagPatch patch;
+        /** The snapshot of the dst version once the patch has been applied. */
+        final DestinationSnapshot dstSnapshot;
+        
+        MetadataComparison(FileWrapper fileSrc, FileWrapper fileDst, TagPatch patch, DestinationSnapshot dstSnapshot) {
+            this.fileSrc = fileSrc;
+            this.fileDst = fileDst;
+            this.patch = patch;
+            this.dstSnapshot = dstSnapshot;
+        }
+    }
+}
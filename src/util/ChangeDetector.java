@@ -0,0 +1,70 @@
+package util;
+
+import data.FileState;
+
+/**
+ * Decides what has to be done with a music file in src, given what is known of
+ * it from the last session and whether it is in dst. Nothing is read here; the
+ * caller gathers the states of the file first.
+ *
+ * @author Aram
+ */
+public class ChangeDetector {
+	/**
+	 * What has to be done with a music file in src.
+	 */
+	public enum Action {
+		/** Nothing; the music is unchanged since last session and is in dst. */
+		SKIP,
+		/** Copy the music to dst, as it is not there. */
+		ADD,
+		/** Compare the metadata of the music with its dst version. */
+		COMPARE,
+		/** Copy the music to dst again, as its audio has changed. */
+		REPLACE,
+		/** Nothing; the music is not in dst and is not to be added. */
+		IGNORE
+	}
+
+	private ChangeDetector() {
+	}
+
+	/**
+	 * Decide what to do with a music file in src. Music which is not in dst is
+	 * always added (if new music is to be added at all), no matter whether it
+	 * changed since last session: dst may have lost it in the meantime, e.g.
+	 * because it was deleted on the device or could not be copied.
+	 *
+	 * @param previousState
+	 *            - the state of the music in the last session, or null if it
+	 *            was not part of it.
+	 * @param currentState
+	 *            - the state of the music now.
+	 * @param existsInDst
+	 *            - whether the music is in dst.
+	 * @param addNewMusic
+	 *            - whether music which is not in dst is to be added.
+	 * @return the action to take.
+	 */
+	public static Action decide(FileState previousState, FileState currentState, boolean existsInDst,
+			boolean addNewMusic) {
+		if (!existsInDst) {
+			return addNewMusic ? Action.ADD : Action.IGNORE;
+		}
+		if (previousState == null) {
+			return Action.COMPARE; // We know nothing about the music.
+		}
+		// Unknown fingerprints (e.g. music on an MTP device) never match, so such
+		// music always has its metadata examined.
+		if (currentState.getFingerprint().matches(previousState.getFingerprint())) {
+			return Action.SKIP;
+		}
+		if (previousState.getFingerprint().isKnown()
+				&& !currentState.getFingerprint().hasSameAudio(previousState.getFingerprint())) {
+			// The music itself has changed since last session. Comparing the tags is
+			// pointless as the dst version will be replaced anyway.
+			return Action.REPLACE;
+		}
+		return Action.COMPARE; // Only the tags were changed.
+	}
+}
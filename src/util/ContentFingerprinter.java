@@ -0,0 +1,328 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.jaudiotagger.tag.images.Artwork;
+
+import data.DestinationSnapshot;
+import data.Fingerprint;
+
+/**
+ * Computes a {@link Fingerprint} of a music file by streaming it through
+ * MurmurHash3. The file is split into its tag region and its audio payload,
+ * which are hashed separately. The whole file is never held in memory; each
+ * block is hashed with the hash of the previous block as its seed.
+ *
+ * @author Aram
+ */
+public class ContentFingerprinter {
+	private static final int SEED = 14;
+	private static final int BLOCK_SIZE = 64 * 1024;
+	private static final int ID3V2_HEADER_SIZE = 10;
+	private static final int ID3V1_SIZE = 128;
+
+	/**
+	 * Fingerprint the file at the given path.
+	 *
+	 * @param path
+	 *            - the path to the music file.
+	 * @param strExt
+	 *            - the upper case extension of the file. It decides how the file
+	 *            is split into tags and audio. Unknown formats are hashed as audio
+	 *            only.
+	 * @return the fingerprint of the file.
+	 * @throws IOException
+	 *             if the file could not be read.
+	 */
+	public static Fingerprint fingerprint(Path path, String strExt) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+			switch (strExt) {
+			case "MP3":
+				return fingerprintMP3(channel, buffer);
+			case "M4A":
+				return fingerprintMP4(channel, buffer);
+			case "FLAC":
+				return fingerprintFLAC(path, channel, buffer);
+			case "OGG":
+			case "OPUS":
+				return fingerprintOgg(path, channel, buffer);
+			default:
+				return new Fingerprint(SEED, hashRegion(channel, buffer, 0, channel.size(), SEED));
+			}
+		}
+	}
+
+	/**
+	 * Compute a digest of the image data of an artwork. The data is hashed block
+	 * by block, so the digest is the same as the one computed by
+	 * {@link #artworkDigest(Path, long, long)} from the file.
+	 *
+	 * @param artwork
+	 *            - the artwork, or null if the music has none.
+	 * @return the unsigned MurmurHash3 of the image data, or
+	 *         {@link DestinationSnapshot#NO_ARTWORK} if there is no artwork.
+	 */
+	public static long artworkDigest(Artwork artwork) {
+		if (artwork == null || artwork.getBinaryData() == null) {
+			return DestinationSnapshot.NO_ARTWORK;
+		}
+		final byte[] data = artwork.getBinaryData();
+		return artworkDigest(data, 0, data.length);
+	}
+
+	/**
+	 * Compute a digest of image data held in memory, e.g. decoded from a
+	 * picture comment.
+	 *
+	 * @return the unsigned MurmurHash3 of the image data.
+	 */
+	static long artworkDigest(byte[] data, int start, int length) {
+		int hash = SEED;
+		for (int offset = start; offset < start + length; offset += BLOCK_SIZE) {
+			hash = MurmurHash3.murmurhash3_x86_32(data, offset, Math.min(BLOCK_SIZE, start + length - offset), hash);
+		}
+		return hash & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Compute a digest of image data in a music file without reading it into
+	 * memory at once.
+	 *
+	 * @param path
+	 *            - the path to the music file.
+	 * @param start
+	 *            - the position of the image data.
+	 * @param length
+	 *            - the size of the image data.
+	 * @return the unsigned MurmurHash3 of the image data.
+	 * @throws IOException
+	 *             if the file could not be read or ends before the image data.
+	 */
+	public static long artworkDigest(Path path, long start, long length) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+			int hash = SEED;
+			for (long position = start; position < start + length; position += BLOCK_SIZE) {
+				final int blockSize = (int) Math.min(BLOCK_SIZE, start + length - position);
+				if (!readFully(channel, buffer, position, blockSize)) {
+					throw new IOException(path + " ends within its artwork.");
+				}
+				hash = MurmurHash3.murmurhash3_x86_32(buffer.array(), 0, blockSize, hash);
+			}
+			return hash & 0xFFFFFFFFL;
+		}
+	}
+
+	/**
+	 * Compute a digest of the first cover art of an MP4/M4A file, found in
+	 * moov.udta.meta.ilst.covr, without reading it into memory at once.
+	 *
+	 * @param path
+	 *            - the path to the music file.
+	 * @return the unsigned MurmurHash3 of the image data, or
+	 *         {@link DestinationSnapshot#NO_ARTWORK} if there is no cover art.
+	 * @throws IOException
+	 *             if the file could not be read.
+	 */
+	public static long mp4ArtworkDigest(Path path) throws IOException {
+		long[] atom = { 0, 0 };
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final ByteBuffer buffer = ByteBuffer.allocate(16);
+			atom[1] = channel.size();
+			final String[] atomPath = { "moov", "udta", "meta", "ilst", "covr", "data" };
+			for (String atomType : atomPath) {
+				atom = findChildAtom(channel, buffer, atom[0], atom[1], atomType);
+				if (atom == null) {
+					return DestinationSnapshot.NO_ARTWORK;
+				}
+				if (atomType.equals("meta")) {
+					atom[0] += 4; // The meta atom has a version and flags in front of its children.
+				}
+			}
+		}
+		// The data atom starts with the type of the data and a locale.
+		return artworkDigest(path, atom[0] + 8, Math.max(0, atom[1] - atom[0] - 8));
+	}
+
+	/**
+	 * Find a child atom in [start, end) of the channel.
+	 *
+	 * @return the start and end of the contents of the atom (i.e. after its
+	 *         header), or null if there is no such atom.
+	 */
+	private static long[] findChildAtom(FileChannel channel, ByteBuffer buffer, long start, long end,
+			String atomType) throws IOException {
+		long position = start;
+		while (position + 8 <= end && readFully(channel, buffer, position, 8)) {
+			long atomSize = buffer.getInt(0) & 0xFFFFFFFFL;
+			final String type = new String(new char[] { (char) buffer.get(4), (char) buffer.get(5),
+					(char) buffer.get(6), (char) buffer.get(7) });
+			int headerSize = 8;
+			if (atomSize == 1 && readFully(channel, buffer, position + 8, 8)) {
+				atomSize = buffer.getLong(0); // 64-bit size follows the type.
+				headerSize = 16;
+			} else if (atomSize == 0) {
+				atomSize = end - position; // The atom extends to the end of its parent.
+			}
+			if (atomSize < headerSize) {
+				return null;
+			}
+			final long atomEnd = Math.min(position + atomSize, end);
+			if (type.equals(atomType)) {
+				return new long[] { position + headerSize, atomEnd };
+			}
+			position = atomEnd;
+		}
+		return null;
+	}
+
+	/**
+	 * MP3: the tags are the ID3v2 tag at the start of the file and the ID3v1 tag
+	 * at the end, if any. Everything in between is audio.
+	 */
+	private static Fingerprint fingerprintMP3(FileChannel channel, ByteBuffer buffer) throws IOException {
+		final long fileSize = channel.size();
+		long audioStart = 0;
+		long audioEnd = fileSize;
+		if (readFully(channel, buffer, 0, ID3V2_HEADER_SIZE) && buffer.get(0) == 'I' && buffer.get(1) == 'D'
+				&& buffer.get(2) == '3') {
+			final boolean hasFooter = (buffer.get(5) & 0x10) != 0;
+			audioStart = ID3V2_HEADER_SIZE + syncsafeInt(buffer, 6) + (hasFooter ? ID3V2_HEADER_SIZE : 0);
+			audioStart = Math.min(audioStart, fileSize);
+		}
+		if (fileSize - audioStart >= ID3V1_SIZE && readFully(channel, buffer, fileSize - ID3V1_SIZE, 3)
+				&& buffer.get(0) == 'T' && buffer.get(1) == 'A' && buffer.get(2) == 'G') {
+			audioEnd = fileSize - ID3V1_SIZE;
+		}
+		int tagHash = hashRegion(channel, buffer, 0, audioStart, SEED);
+		tagHash = hashRegion(channel, buffer, audioEnd, fileSize, tagHash);
+		final int audioHash = hashRegion(channel, buffer, audioStart, audioEnd, SEED);
+		return new Fingerprint(tagHash, audioHash);
+	}
+
+	/**
+	 * MP4/M4A: the tags live in the "moov" atom and the audio in the "mdat" atom.
+	 * Other top-level atoms (ftyp, free etc.) do not describe the music and are
+	 * skipped.
+	 */
+	private static Fingerprint fingerprintMP4(FileChannel channel, ByteBuffer buffer) throws IOException {
+		final long fileSize = channel.size();
+		int tagHash = SEED;
+		int audioHash = SEED;
+		long position = 0;
+		while (position + 8 <= fileSize && readFully(channel, buffer, position, 8)) {
+			long atomSize = buffer.getInt(0) & 0xFFFFFFFFL;
+			final String atomType = new String(new char[] { (char) buffer.get(4), (char) buffer.get(5),
+					(char) buffer.get(6), (char) buffer.get(7) });
+			if (atomSize == 1 && readFully(channel, buffer, position + 8, 8)) {
+				atomSize = buffer.getLong(0); // 64-bit size follows the type.
+			} else if (atomSize == 0) {
+				atomSize = fileSize - position; // The atom extends to the end of the file.
+			}
+			if (atomSize < 8) {
+				// Not a valid atom. Treat the rest of the file as audio.
+				audioHash = hashRegion(channel, buffer, position, fileSize, audioHash);
+				break;
+			}
+			final long atomEnd = Math.min(position + atomSize, fileSize);
+			if (atomType.equals("moov")) {
+				tagHash = hashRegion(channel, buffer, position, atomEnd, tagHash);
+			} else if (atomType.equals("mdat")) {
+				audioHash = hashRegion(channel, buffer, position, atomEnd, audioHash);
+			}
+			position = atomEnd;
+		}
+		return new Fingerprint(tagHash, audioHash);
+	}
+
+	/**
+	 * FLAC: the tags are the metadata blocks (and an ID3v2 tag in front of them,
+	 * if any). Everything after the last metadata block is audio.
+	 */
+	private static Fingerprint fingerprintFLAC(Path path, FileChannel channel, ByteBuffer buffer) throws IOException {
+		final VorbisCommentReader.Tag tag = VorbisCommentReader.readFlac(path);
+		final long fileSize = channel.size();
+		final long audioStart = tag == null ? 0 : Math.min(tag.getAudioStart(), fileSize);
+		return new Fingerprint(hashRegion(channel, buffer, 0, audioStart, SEED),
+				hashRegion(channel, buffer, audioStart, fileSize, SEED));
+	}
+
+	/**
+	 * Ogg Vorbis/Opus: the tags are the header packets at the start of the
+	 * stream and the audio is in the pages after them. Only the bodies of the
+	 * pages are hashed, since the page headers hold a sequence number and a
+	 * checksum, which change for every page once the tags take up more or fewer
+	 * pages.
+	 */
+	private static Fingerprint fingerprintOgg(Path path, FileChannel channel, ByteBuffer buffer) throws IOException {
+		final VorbisCommentReader.Tag tag = VorbisCommentReader.readOgg(path);
+		final long audioStart = tag == null ? 0 : tag.getAudioStart();
+		final VorbisCommentReader.OggPacketReader pages = new VorbisCommentReader.OggPacketReader(channel);
+		int tagHash = SEED;
+		int audioHash = SEED;
+		long position = 0;
+		while (pages.nextPage()) {
+			if (pages.getPageBody() < audioStart) {
+				tagHash = hashRegion(channel, buffer, pages.getPageBody(), pages.getPageEnd(), tagHash);
+			} else {
+				audioHash = hashRegion(channel, buffer, pages.getPageBody(), pages.getPageEnd(), audioHash);
+			}
+			position = pages.getPageEnd();
+		}
+		// Whatever follows the last page of the stream is hashed as audio.
+		audioHash = hashRegion(channel, buffer, position, channel.size(), audioHash);
+		return new Fingerprint(tagHash, audioHash);
+	}
+
+	/**
+	 * Hash the bytes in [start, end) of the channel block by block.
+	 *
+	 * @return the chained hash, or the seed if the region is empty.
+	 */
+	private static int hashRegion(FileChannel channel, ByteBuffer buffer, long start, long end, int seed)
+			throws IOException {
+		int hash = seed;
+		long position = start;
+		while (position < end) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - position));
+			final int read = channel.read(buffer, position);
+			if (read <= 0) {
+				break;
+			}
+			hash = MurmurHash3.murmurhash3_x86_32(buffer.array(), 0, read, hash);
+			position += read;
+		}
+		return hash;
+	}
+
+	/**
+	 * Read exactly the given amount of bytes into the start of the buffer.
+	 *
+	 * @return false if the end of the file was reached first.
+	 */
+	static boolean readFully(FileChannel channel, ByteBuffer buffer, long position, int length)
+			throws IOException {
+		buffer.clear();
+		buffer.limit(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * ID3v2 sizes are "syncsafe"; only the lower 7 bits of each byte are used.
+	 */
+	static int syncsafeInt(ByteBuffer buffer, int index) {
+		return (buffer.get(index) & 0x7F) << 21 | (buffer.get(index + 1) & 0x7F) << 14
+				| (buffer.get(index + 2) & 0x7F) << 7 | (buffer.get(index + 3) & 0x7F);
+	}
+}
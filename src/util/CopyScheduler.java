@@ -0,0 +1,228 @@
+package util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies files between folders on the PC with several threads at once. The
+ * largest files are started first so that no large file is left to be copied
+ * on its own at the end.
+ * <p>
+ * Each file is copied to a ".part" file next to its target, which replaces the
+ * target once it is complete. If the copying is stopped, the partial files are
+ * deleted, so the target folder never contains half-copied music.
+ * <p>
+ * All calls to the {@link Listener} are made on the calling thread.
+ *
+ * @author Aram
+ */
+public class CopyScheduler {
+	private static final String PART_SUFFIX = ".part";
+	private static final long CHUNK_SIZE = 8 * 1024 * 1024;
+	private static final long PROGRESS_INTERVAL_MILLIS = 250;
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+	private final int parallelism;
+
+	/**
+	 * A file to be copied.
+	 */
+	public static class CopyJob<T> {
+		private final T item;
+		private final Path source;
+		private final Path target;
+		private final long size;
+
+		/**
+		 * @param item
+		 *            - whatever the caller wants to get back in the listener.
+		 * @param source
+		 *            - the file to copy.
+		 * @param target
+		 *            - the path of the copy. Its folder is created if necessary.
+		 * @param size
+		 *            - the size of the source file in bytes.
+		 */
+		public CopyJob(T item, Path source, Path target, long size) {
+			this.item = item;
+			this.source = source;
+			this.target = target;
+			this.size = Math.max(0, size);
+		}
+
+		public T getItem() {
+			return item;
+		}
+
+		public Path getTarget() {
+			return target;
+		}
+
+		public long getSize() {
+			return size;
+		}
+	}
+
+	/**
+	 * Is told about the progress of the copying.
+	 */
+	public interface Listener<T> {
+		void copied(CopyJob<T> job) throws InterruptedException;
+
+		void failed(CopyJob<T> job, IOException e) throws InterruptedException;
+
+		void progress(long copiedBytes, long totalBytes) throws InterruptedException;
+	}
+
+	/**
+	 * @param parallelism
+	 *            - the amount of files that are copied at once.
+	 */
+	public CopyScheduler(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Copy every file and wait until all of them are done.
+	 *
+	 * @param jobs
+	 *            - the files to copy.
+	 * @param listener
+	 *            - the listener to tell about the progress.
+	 * @throws InterruptedException
+	 *             if the calling thread was interrupted. Files that were being
+	 *             copied at the time are left as they were before.
+	 */
+	public <T> void copy(List<CopyJob<T>> jobs, Listener<T> listener) throws InterruptedException {
+		final List<CopyJob<T>> sortedJobs = new ArrayList<>(jobs);
+		Collections.sort(sortedJobs, new Comparator<CopyJob<T>>() {
+			@Override
+			public int compare(CopyJob<T> job1, CopyJob<T> job2) {
+				return Long.compare(job2.size, job1.size); // Largest first.
+			}
+		});
+		long totalBytes = 0;
+		for (CopyJob<T> job : sortedJobs) {
+			totalBytes += job.size;
+		}
+		final AtomicLong copiedBytes = new AtomicLong();
+		final ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+		final CompletionService<CopyResult<T>> completionService = new ExecutorCompletionService<>(pool);
+		try {
+			for (final CopyJob<T> job : sortedJobs) {
+				completionService.submit(new Callable<CopyResult<T>>() {
+					@Override
+					public CopyResult<T> call() {
+						try {
+							copyFile(job, copiedBytes);
+							return new CopyResult<T>(job, null);
+						} catch (IOException e) {
+							return new CopyResult<T>(job, e);
+						}
+					}
+				});
+			}
+			int remainingJobs = sortedJobs.size();
+			while (remainingJobs > 0) {
+				if (Thread.currentThread().isInterrupted()) {
+					throw new InterruptedException();
+				}
+				final Future<CopyResult<T>> done = completionService.poll(PROGRESS_INTERVAL_MILLIS,
+						TimeUnit.MILLISECONDS);
+				listener.progress(copiedBytes.get(), totalBytes);
+				if (done == null) {
+					continue;
+				}
+				remainingJobs--;
+				final CopyResult<T> result = getResult(done);
+				if (result.error == null) {
+					listener.copied(result.job);
+				} else {
+					listener.failed(result.job, result.error);
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+			final boolean wasInterrupted = Thread.interrupted();
+			try {
+				pool.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			} finally {
+				if (wasInterrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copy a single file through a partial file, counting the copied bytes as
+	 * it goes. The last modified date is kept, just like a copy with
+	 * {@link StandardCopyOption#COPY_ATTRIBUTES}.
+	 */
+	private static void copyFile(CopyJob<?> job, AtomicLong copiedBytes) throws IOException {
+		final Path partPath = job.target.resolveSibling(job.target.getFileName() + PART_SUFFIX);
+		try {
+			Files.createDirectories(job.target.getParent());
+			try (FileChannel in = FileChannel.open(job.source, StandardOpenOption.READ);
+					FileChannel out = FileChannel.open(partPath, StandardOpenOption.CREATE,
+							StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				final long size = in.size();
+				long position = 0;
+				while (position < size) {
+					final long transferred = in.transferTo(position, Math.min(CHUNK_SIZE, size - position), out);
+					if (transferred <= 0) {
+						break;
+					}
+					position += transferred;
+					copiedBytes.addAndGet(transferred);
+				}
+			}
+			Files.setLastModifiedTime(partPath, Files.getLastModifiedTime(job.source));
+			Files.move(partPath, job.target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(partPath);
+			throw e;
+		}
+	}
+
+	/**
+	 * Copy jobs catch their own {@link IOException}s, so anything else is a bug
+	 * which is passed on as is.
+	 */
+	private static <T> CopyResult<T> getResult(Future<CopyResult<T>> done) throws InterruptedException {
+		try {
+			return done.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw (RuntimeException) e.getCause();
+		}
+	}
+
+	private static class CopyResult<T> {
+		final CopyJob<T> job;
+		final IOException error;
+
+		CopyResult(CopyJob<T> job, IOException error) {
+			this.job = job;
+			this.error = error;
+		}
+	}
+}
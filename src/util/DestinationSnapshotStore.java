@@ -0,0 +1,190 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jaudiotagger.tag.FieldKey;
+
+import data.DataClass;
+import data.DestinationSnapshot;
+
+/**
+ * Keeps a {@link DestinationSnapshot} of every music file in dst whose tags we
+ * have read or written, keyed by the absolute path of the file in dst. The
+ * store is saved between sync sessions so that dst only has to be read again
+ * when a file was changed outside of the program.
+ * <p>
+ * The file starts with the compared field keys. If they differ from the keys
+ * the program compares now, then the stored snapshots are discarded.
+ * <p>
+ * The store may be read and changed by several threads at once.
+ *
+ * @author Aram
+ */
+public class DestinationSnapshotStore {
+	private static final int MAGIC = 0x4D4C4453; // "MLDS"
+	private static final int VERSION = 3;
+	private final List<FieldKey> fieldKeys;
+	private final Map<String, DestinationSnapshot> snapshots = new ConcurrentHashMap<>();
+
+	/**
+	 * Create an empty store.
+	 *
+	 * @param fieldKeys
+	 *            - the compared field keys. The tag values of every snapshot are
+	 *            in this order.
+	 */
+	public DestinationSnapshotStore(List<FieldKey> fieldKeys) {
+		this.fieldKeys = fieldKeys;
+	}
+
+	/**
+	 * Load the store saved at the given path.
+	 *
+	 * @param path
+	 *            - the file of the store.
+	 * @param fieldKeys
+	 *            - the compared field keys.
+	 * @return the loaded store. If there is no store, or it was saved with
+	 *         other field keys, then an empty store is returned.
+	 * @throws IOException
+	 *             if the file could not be read.
+	 */
+	public static DestinationSnapshotStore load(Path path, List<FieldKey> fieldKeys) throws IOException {
+		final DestinationSnapshotStore store = new DestinationSnapshotStore(fieldKeys);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != fieldKeys.size()) {
+				return store;
+			}
+			for (FieldKey fieldKey : fieldKeys) {
+				if (!in.readUTF().equals(fieldKey.name())) {
+					return store;
+				}
+			}
+			final int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				final String pathInDst = in.readUTF();
+				final long fileSize = in.readLong();
+				final long lastModified = in.readLong();
+				final String duration = readValue(in);
+				final String[] tagValues = new String[fieldKeys.size()];
+				for (int j = 0; j < tagValues.length; j++) {
+					tagValues[j] = readValue(in);
+				}
+				final long artworkDigest = in.readLong();
+				store.snapshots.put(pathInDst,
+						new DestinationSnapshot(fileSize, lastModified, duration, tagValues, artworkDigest));
+			}
+		} catch (NoSuchFileException | EOFException e) {
+			// No store yet, or it was cut short. Whatever was read is still valid.
+		}
+		return store;
+	}
+
+	/**
+	 * @return the snapshot of the file in dst, or null if there is none.
+	 */
+	public DestinationSnapshot get(String pathInDst) {
+		return snapshots.get(pathInDst);
+	}
+
+	public void put(String pathInDst, DestinationSnapshot snapshot) {
+		snapshots.put(pathInDst, snapshot);
+	}
+
+	public void remove(String pathInDst) {
+		snapshots.remove(pathInDst);
+	}
+
+	/**
+	 * Remove the snapshots of the music which is no longer in a folder of dst,
+	 * so that the store does not keep growing. Snapshots of music in other
+	 * folders are kept, as the store is shared by all of dst.
+	 *
+	 * @param folder
+	 *            - the absolute path of the listed folder.
+	 * @param isRecursive
+	 *            - true if the music in its subfolders was listed as well.
+	 * @param listedPaths
+	 *            - the absolute paths of the music found in the folder.
+	 */
+	public void removeMissing(String folder, boolean isRecursive, Set<String> listedPaths) {
+		final String prefix = folder.endsWith(File.separator) ? folder : folder + File.separatorChar;
+		final Iterator<String> paths = snapshots.keySet().iterator();
+		while (paths.hasNext()) {
+			final String path = paths.next();
+			if (path.startsWith(prefix) && (isRecursive || path.indexOf(File.separatorChar, prefix.length()) < 0)
+					&& !listedPaths.contains(path)) {
+				paths.remove();
+			}
+		}
+	}
+
+	public int size() {
+		return snapshots.size();
+	}
+
+	/**
+	 * Save the store to the given path. Like the session file, it is written to
+	 * a temporary file first which then replaces the old one.
+	 *
+	 * @param path
+	 *            - the file of the store.
+	 * @throws IOException
+	 *             if the store could not be written.
+	 */
+	public void save(Path path) throws IOException {
+		final Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(fieldKeys.size());
+			for (FieldKey fieldKey : fieldKeys) {
+				out.writeUTF(fieldKey.name());
+			}
+			out.writeInt(snapshots.size());
+			for (Map.Entry<String, DestinationSnapshot> entry : snapshots.entrySet()) {
+				final DestinationSnapshot snapshot = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeLong(snapshot.getSize());
+				out.writeLong(snapshot.getLastModified());
+				writeValue(out, snapshot.getDuration());
+				for (int i = 0; i < snapshot.getTagCount(); i++) {
+					writeValue(out, snapshot.getTagValue(i));
+				}
+				out.writeLong(snapshot.getArtworkDigest());
+			}
+		}
+		Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * {@link DataClass#ERROR_STRING} changes every time the program starts, so
+	 * unreadable values are stored as a flag instead.
+	 */
+	static void writeValue(DataOutputStream out, String value) throws IOException {
+		final boolean isReadable = !value.equals(DataClass.ERROR_STRING);
+		out.writeBoolean(isReadable);
+		if (isReadable) {
+			out.writeUTF(value);
+		}
+	}
+
+	static String readValue(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : DataClass.ERROR_STRING;
+	}
+}
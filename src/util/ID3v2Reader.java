@@ -0,0 +1,311 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the text frames of an ID3v2.3 or ID3v2.4 tag straight from the file.
+ * Only the frame headers and the text frames are read; every other frame is
+ * skipped without being read. Of the artwork, only the position of the image
+ * data is noted so it can be hashed without holding it in memory. This is all a
+ * comparison of tags needs, whereas jaudiotagger parses the whole tag and is
+ * therefore only used for writing.
+ * <p>
+ * Tags this reader does not understand (ID3v2.2, unsynchronisation, compressed
+ * or encrypted frames etc.) are not read at all, so the caller can fall back
+ * to jaudiotagger.
+ *
+ * @author Aram
+ */
+public class ID3v2Reader {
+	private static final int HEADER_SIZE = 10;
+	private static final int WINDOW_SIZE = 8 * 1024;
+	/** Text frames larger than this are not something we compare. */
+	private static final int MAX_TEXT_FRAME_SIZE = 1024 * 1024;
+	/** The MIME type and description in front of the image data should be far less than this. */
+	private static final int MAX_PICTURE_HEADER_SIZE = 1024;
+	private static final int FLAG_UNSYNCHRONISATION = 0x80;
+	private static final int FLAG_EXTENDED_HEADER = 0x40;
+	private static final int FLAG_FOOTER = 0x10;
+	private static final int V3_FRAME_FLAGS_UNSUPPORTED = 0x00E0; // Compression, encryption, grouping.
+	private static final int V4_FRAME_FLAGS_UNSUPPORTED = 0x004F; // Grouping, compr., encr., unsync., data length.
+	private static final Charset[] ENCODINGS = { StandardCharsets.ISO_8859_1, StandardCharsets.UTF_16,
+			StandardCharsets.UTF_16BE, StandardCharsets.UTF_8 };
+
+	/**
+	 * The text frames of a tag.
+	 */
+	public static class Tag {
+		/** A file without an ID3v2 tag has no text frames and its audio starts right away. */
+		public static final Tag NONE = new Tag(0, 0, new HashMap<String, String>(), -1, -1);
+		private final int majorVersion;
+		private final long audioStart;
+		private final Map<String, String> textFrames;
+		private final long artworkStart;
+		private final long artworkLength;
+
+		private Tag(int majorVersion, long audioStart, Map<String, String> textFrames, long artworkStart,
+				long artworkLength) {
+			this.majorVersion = majorVersion;
+			this.audioStart = audioStart;
+			this.textFrames = textFrames;
+			this.artworkStart = artworkStart;
+			this.artworkLength = artworkLength;
+		}
+
+		/**
+		 * @return 3 or 4 for ID3v2.3 or ID3v2.4 respectively; 0 if there is no tag.
+		 */
+		public int getMajorVersion() {
+			return majorVersion;
+		}
+
+		/**
+		 * @return the position of the first byte after the tag.
+		 */
+		public long getAudioStart() {
+			return audioStart;
+		}
+
+		/**
+		 * @return true if the tag has an artwork (APIC) frame.
+		 */
+		public boolean hasArtwork() {
+			return artworkLength >= 0;
+		}
+
+		/**
+		 * @return the position of the image data of the first artwork, or -1 if
+		 *         there is no artwork or its image data could not be located (e.g.
+		 *         it is compressed).
+		 */
+		public long getArtworkStart() {
+			return artworkStart;
+		}
+
+		/**
+		 * @return the size of the image data of the first artwork, or -1 if there
+		 *         is no artwork. Only meaningful if {@link #getArtworkStart()} is
+		 *         not -1.
+		 */
+		public long getArtworkLength() {
+			return artworkLength;
+		}
+
+		/**
+		 * Get the first value of a text frame, just like jaudiotagger's
+		 * {@code Tag.getFirst(String)} does.
+		 *
+		 * @param frameId
+		 *            - the frame ID, e.g. "TIT2".
+		 * @return the first value, or the empty string if there is no such frame.
+		 */
+		public String getFirst(String frameId) {
+			final String value = textFrames.get(frameId);
+			return value == null ? "" : value;
+		}
+	}
+
+	/**
+	 * Read the text frames of the ID3v2 tag at the start of the given file.
+	 *
+	 * @param path
+	 *            - the path to the MP3 file.
+	 * @return the tag, {@link Tag#NONE} if the file has no ID3v2 tag or null if
+	 *         the tag cannot be read by this reader.
+	 * @throws IOException
+	 *             if the file could not be read.
+	 */
+	public static Tag read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			if (!ContentFingerprinter.readFully(channel, header, 0, HEADER_SIZE) || header.get(0) != 'I'
+					|| header.get(1) != 'D' || header.get(2) != '3') {
+				return Tag.NONE;
+			}
+			final int majorVersion = header.get(3);
+			final int flags = header.get(5) & 0xFF;
+			if (majorVersion != 3 && majorVersion != 4
+					|| (flags & (FLAG_UNSYNCHRONISATION | FLAG_EXTENDED_HEADER)) != 0) {
+				return null;
+			}
+			final long tagEnd = Math.min(HEADER_SIZE + ContentFingerprinter.syncsafeInt(header, 6), channel.size());
+			final long audioStart = tagEnd + ((flags & FLAG_FOOTER) != 0 ? HEADER_SIZE : 0);
+			final Map<String, String> textFrames = new HashMap<>();
+			long artworkStart = -1;
+			long artworkLength = -1;
+			final Window window = new Window(channel, tagEnd);
+			long position = HEADER_SIZE;
+			while (position + HEADER_SIZE <= tagEnd) {
+				final ByteBuffer frameHeader = window.get(position, HEADER_SIZE);
+				final int offset = window.offsetOf(position);
+				if (frameHeader.get(offset) == 0) {
+					break; // Padding.
+				}
+				final String frameId = new String(new char[] { (char) frameHeader.get(offset),
+						(char) frameHeader.get(offset + 1), (char) frameHeader.get(offset + 2),
+						(char) frameHeader.get(offset + 3) });
+				final int frameSize = majorVersion == 4 ? ContentFingerprinter.syncsafeInt(frameHeader, offset + 4)
+						: frameHeader.getInt(offset + 4);
+				final int frameFlags = frameHeader.getShort(offset + 8) & 0xFFFF;
+				final long frameStart = position + HEADER_SIZE;
+				if (frameSize < 0 || frameStart + frameSize > tagEnd) {
+					return null; // Broken tag. Let jaudiotagger decide what to make of it.
+				}
+				if (frameId.charAt(0) == 'T' && !frameId.equals("TXXX") && !textFrames.containsKey(frameId)) {
+					final int unsupportedFlags = majorVersion == 4 ? V4_FRAME_FLAGS_UNSUPPORTED
+							: V3_FRAME_FLAGS_UNSUPPORTED;
+					if ((frameFlags & unsupportedFlags) != 0 || frameSize > MAX_TEXT_FRAME_SIZE) {
+						return null;
+					}
+					if (frameSize > 0) {
+						final ByteBuffer frameBody = window.get(frameStart, frameSize);
+						final String text = decodeText(frameBody, window.offsetOf(frameStart), frameSize);
+						textFrames.put(frameId, isNumberFrame(frameId) ? numberOf(text) : text);
+					}
+				}
+				if (frameId.equals("APIC") && artworkLength < 0) {
+					artworkLength = 0;
+					final int unsupportedFlags = majorVersion == 4 ? V4_FRAME_FLAGS_UNSUPPORTED
+							: V3_FRAME_FLAGS_UNSUPPORTED;
+					if ((frameFlags & unsupportedFlags) == 0) {
+						final int headerSize = Math.min(frameSize, MAX_PICTURE_HEADER_SIZE);
+						final ByteBuffer frameBody = window.get(frameStart, headerSize);
+						final int pictureHeaderSize = pictureHeaderSize(frameBody, window.offsetOf(frameStart),
+								headerSize);
+						if (pictureHeaderSize >= 0) {
+							artworkStart = frameStart + pictureHeaderSize;
+							artworkLength = frameSize - pictureHeaderSize;
+						}
+					}
+				}
+				position = frameStart + frameSize;
+			}
+			return new Tag(majorVersion, audioStart, textFrames, artworkStart, artworkLength);
+		}
+	}
+
+	/**
+	 * Decode a text frame the way jaudiotagger does. The first byte is the
+	 * encoding; several values are separated by a null character, which is kept
+	 * between them. Trailing null characters are dropped.
+	 */
+	private static String decodeText(ByteBuffer buffer, int offset, int length) {
+		final int encoding = buffer.get(offset);
+		if (encoding < 0 || encoding >= ENCODINGS.length) {
+			return "";
+		}
+		final int charSize = encoding == 1 || encoding == 2 ? 2 : 1;
+		final int end = offset + length;
+		final StringBuilder text = new StringBuilder();
+		int valueStart = offset + 1;
+		int index = valueStart;
+		while (index + charSize <= end) {
+			if (buffer.get(index) == 0 && buffer.get(index + charSize - 1) == 0) {
+				text.append(new String(buffer.array(), valueStart, index - valueStart, ENCODINGS[encoding]))
+						.append('\0');
+				valueStart = index + charSize;
+			}
+			index += charSize;
+		}
+		text.append(new String(buffer.array(), valueStart, end - valueStart, ENCODINGS[encoding]));
+		int textEnd = text.length();
+		while (textEnd > 0 && text.charAt(textEnd - 1) == '\0') {
+			textEnd--;
+		}
+		return text.substring(0, textEnd);
+	}
+
+	/**
+	 * An APIC frame starts with the text encoding, the MIME type, the picture
+	 * type and the description before the image data follows.
+	 *
+	 * @return the amount of bytes before the image data, or -1 if the image data
+	 *         does not start within the given bytes.
+	 */
+	private static int pictureHeaderSize(ByteBuffer buffer, int offset, int length) {
+		final int end = offset + length;
+		if (length < 1) {
+			return -1;
+		}
+		final int encoding = buffer.get(offset);
+		final int charSize = encoding == 1 || encoding == 2 ? 2 : 1;
+		int index = offset + 1;
+		while (index < end && buffer.get(index) != 0) {
+			index++; // The MIME type is always ISO-8859-1.
+		}
+		index += 2; // The null character and the picture type.
+		while (index + charSize <= end && (buffer.get(index) != 0 || buffer.get(index + charSize - 1) != 0)) {
+			index += charSize;
+		}
+		index += charSize;
+		return index <= end ? index - offset : -1;
+	}
+
+	/**
+	 * The track and disc number frames may hold the total as well, e.g. "3/12".
+	 */
+	private static boolean isNumberFrame(String frameId) {
+		return frameId.equals("TRCK") || frameId.equals("TPOS");
+	}
+
+	/**
+	 * jaudiotagger gives only the number of "3/12" and drops leading zeros. It
+	 * gives null if there is no number, which we turn into the empty string.
+	 */
+	private static String numberOf(String text) {
+		final int index = text.indexOf('/');
+		try {
+			return Integer.valueOf(index < 0 ? text : text.substring(0, index)).toString();
+		} catch (NumberFormatException e) {
+			return "";
+		}
+	}
+
+	/**
+	 * A part of the tag held in memory. Frames are read through it, so that a
+	 * tag of small frames is read with a single call.
+	 */
+	private static class Window {
+		private final FileChannel channel;
+		private final long tagEnd;
+		private ByteBuffer buffer = ByteBuffer.allocate(WINDOW_SIZE);
+		private long start = 0;
+		private long end = 0;
+
+		Window(FileChannel channel, long tagEnd) {
+			this.channel = channel;
+			this.tagEnd = tagEnd;
+		}
+
+		/**
+		 * Make sure that the bytes in [position, position + length) are in the
+		 * buffer, which is returned. They start at {@link #offsetOf(long)}.
+		 */
+		ByteBuffer get(long position, int length) throws IOException {
+			if (position < start || position + length > end) {
+				if (length > buffer.capacity()) {
+					buffer = ByteBuffer.allocate(length);
+				}
+				final int size = (int) Math.min(buffer.capacity(), tagEnd - position);
+				if (!ContentFingerprinter.readFully(channel, buffer, position, size)) {
+					throw new IOException("The file ended within its ID3v2 tag.");
+				}
+				start = position;
+				end = position + size;
+			}
+			return buffer;
+		}
+
+		int offsetOf(long position) {
+			return (int) (position - start);
+		}
+	}
+}
@@ -0,0 +1,278 @@
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Changes the text frames of an ID3v2.3 or ID3v2.4 tag without touching
+ * anything else in the file. If the changed tag fits in the space of the old
+ * tag and its padding, it is written over the old tag with a single write and
+ * the audio is left where it is. Only if the tag has grown past that space is
+ * the whole file written anew, and then the tag is given plenty of padding so
+ * that the next changes fit.
+ * <p>
+ * Tags which {@link ID3v2Reader} does not read are not written either, so the
+ * caller can fall back to jaudiotagger.
+ *
+ * @author Aram
+ */
+public class ID3v2Writer {
+	/**
+	 * The padding of a tag which had to grow. This leaves room for many
+	 * changes of the text frames before the file has to be written anew again.
+	 */
+	public static final int GROWTH_PADDING = 16 * 1024;
+	private static final int HEADER_SIZE = 10;
+	private static final int FLAG_UNSYNCHRONISATION = 0x80;
+	private static final int FLAG_EXTENDED_HEADER = 0x40;
+	private static final int FLAG_FOOTER = 0x10;
+	private static final int V3_FRAME_FLAGS_UNSUPPORTED = 0x00C0; // Compression and encryption.
+	private static final int V4_FRAME_FLAGS_UNSUPPORTED = 0x000F; // Compression, encryption, unsync., data length.
+	private static final int ENCODING_ISO_8859_1 = 0;
+	private static final int ENCODING_UTF_16 = 1;
+	private static final int ENCODING_UTF_8 = 3;
+	private static final int MAX_ISO_8859_1_CHAR = 0xFF;
+
+	/**
+	 * Set the values of some text frames of the ID3v2 tag of the given file.
+	 * Frames which are not given are kept as they are.
+	 *
+	 * @param path
+	 *            - the path to the MP3 file.
+	 * @param textFrames
+	 *            - the new values by frame ID, e.g. "TIT2". Several values are
+	 *            separated by a null character. An empty value removes the
+	 *            frame. The track and disc number frames keep their total, if
+	 *            any.
+	 * @return true if the tag was written; false if the file has no tag this
+	 *         writer can change, in which case the file is untouched.
+	 * @throws IOException
+	 *             if the file could not be read or written.
+	 */
+	public static boolean write(Path path, Map<String, String> textFrames) throws IOException {
+		final byte[] frames;
+		final int majorVersion;
+		final long tagEnd;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			if (!ContentFingerprinter.readFully(channel, header, 0, HEADER_SIZE) || header.get(0) != 'I'
+					|| header.get(1) != 'D' || header.get(2) != '3') {
+				return false;
+			}
+			majorVersion = header.get(3);
+			final int flags = header.get(5) & 0xFF;
+			if (majorVersion != 3 && majorVersion != 4
+					|| (flags & (FLAG_UNSYNCHRONISATION | FLAG_EXTENDED_HEADER | FLAG_FOOTER)) != 0) {
+				return false;
+			}
+			final int tagSize = ContentFingerprinter.syncsafeInt(header, 6);
+			tagEnd = HEADER_SIZE + tagSize;
+			if (tagEnd > channel.size()) {
+				return false;
+			}
+			final ByteBuffer tag = ByteBuffer.allocate(tagSize);
+			if (!ContentFingerprinter.readFully(channel, tag, HEADER_SIZE, tagSize)) {
+				return false;
+			}
+			frames = changeFrames(tag, majorVersion, textFrames);
+			if (frames == null) {
+				return false;
+			}
+			if (frames.length <= tagSize) {
+				// It fits: overwrite the frames and turn the rest into padding.
+				final ByteBuffer body = ByteBuffer.allocate(tagSize);
+				body.put(frames);
+				body.rewind();
+				while (body.hasRemaining()) {
+					channel.write(body, HEADER_SIZE + body.position());
+				}
+				return true;
+			}
+		}
+		rewrite(path, majorVersion, frames, tagEnd);
+		return true;
+	}
+
+	/**
+	 * @return the frames of the tag with the text frames changed, without
+	 *         padding; or null if a frame to be changed cannot be.
+	 */
+	private static byte[] changeFrames(ByteBuffer tag, int majorVersion, Map<String, String> textFrames)
+			throws IOException {
+		final Map<String, String> remainingFrames = new LinkedHashMap<>(textFrames);
+		final Set<String> writtenFrames = new HashSet<>();
+		final ByteArrayOutputStream frames = new ByteArrayOutputStream(tag.capacity());
+		int position = 0;
+		while (position + HEADER_SIZE <= tag.capacity() && tag.get(position) != 0) {
+			final String frameId = new String(tag.array(), position, 4, StandardCharsets.ISO_8859_1);
+			final int frameSize = majorVersion == 4 ? ContentFingerprinter.syncsafeInt(tag, position + 4)
+					: tag.getInt(position + 4);
+			final int frameFlags = tag.getShort(position + 8) & 0xFFFF;
+			final int frameEnd = position + HEADER_SIZE + frameSize;
+			if (frameSize < 0 || frameEnd > tag.capacity()) {
+				return null; // Broken tag. Let jaudiotagger decide what to make of it.
+			}
+			if (textFrames.containsKey(frameId)) {
+				final int unsupportedFlags = majorVersion == 4 ? V4_FRAME_FLAGS_UNSUPPORTED
+						: V3_FRAME_FLAGS_UNSUPPORTED;
+				if ((frameFlags & unsupportedFlags) != 0) {
+					return null;
+				}
+				// The first frame of the ID is replaced in place; any other is dropped.
+				if (writtenFrames.add(frameId)) {
+					String value = remainingFrames.remove(frameId);
+					if (isNumberFrame(frameId)) {
+						value = withTotal(value, decodeText(tag, position + HEADER_SIZE, frameSize));
+					}
+					writeFrame(frames, majorVersion, frameId, value);
+				}
+			} else {
+				frames.write(tag.array(), position, frameEnd - position);
+			}
+			position = frameEnd;
+		}
+		for (Map.Entry<String, String> frame : remainingFrames.entrySet()) {
+			writeFrame(frames, majorVersion, frame.getKey(), frame.getValue());
+		}
+		return frames.toByteArray();
+	}
+
+	/**
+	 * Write the tag with the given frames and {@link #GROWTH_PADDING} to a
+	 * temporary file, followed by the audio, and replace the file with it.
+	 */
+	private static void rewrite(Path path, int majorVersion, byte[] frames, long tagEnd) throws IOException {
+		final Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+		try {
+			try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+					FileChannel out = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+							StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				final int tagSize = frames.length + GROWTH_PADDING;
+				final ByteBuffer tag = ByteBuffer.allocate(HEADER_SIZE + tagSize);
+				tag.put(new byte[] { 'I', 'D', '3', (byte) majorVersion, 0, 0 });
+				putSyncsafeInt(tag, tagSize);
+				tag.put(frames);
+				tag.rewind();
+				while (tag.hasRemaining()) {
+					out.write(tag);
+				}
+				final long audioEnd = in.size();
+				long position = tagEnd;
+				while (position < audioEnd) {
+					position += in.transferTo(position, audioEnd - position, out);
+				}
+			}
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	/**
+	 * Write a text frame, unless the value is empty. The text is written as
+	 * ISO-8859-1 if possible, otherwise as UTF-16 (ID3v2.3) or UTF-8 (ID3v2.4),
+	 * just like jaudiotagger does.
+	 */
+	private static void writeFrame(ByteArrayOutputStream frames, int majorVersion, String frameId, String value)
+			throws IOException {
+		if (value.isEmpty()) {
+			return;
+		}
+		final int encoding;
+		final Charset charset;
+		if (isISO88591(value)) {
+			encoding = ENCODING_ISO_8859_1;
+			charset = StandardCharsets.ISO_8859_1;
+		} else if (majorVersion == 4) {
+			encoding = ENCODING_UTF_8;
+			charset = StandardCharsets.UTF_8;
+		} else {
+			encoding = ENCODING_UTF_16;
+			charset = StandardCharsets.UTF_16; // With a byte order mark.
+		}
+		final byte[] text = value.getBytes(charset);
+		final int frameSize = 1 + text.length;
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.put(frameId.getBytes(StandardCharsets.ISO_8859_1), 0, 4);
+		if (majorVersion == 4) {
+			putSyncsafeInt(header, frameSize);
+		} else {
+			header.putInt(frameSize);
+		}
+		frames.write(header.array());
+		frames.write(encoding);
+		frames.write(text);
+	}
+
+	private static boolean isISO88591(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) > MAX_ISO_8859_1_CHAR) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The track and disc number frames may hold the total as well, e.g. "3/12".
+	 */
+	private static boolean isNumberFrame(String frameId) {
+		return frameId.equals("TRCK") || frameId.equals("TPOS");
+	}
+
+	/**
+	 * @return the new number with the total of the old value, if the new value
+	 *         has no total of its own.
+	 */
+	private static String withTotal(String value, String oldValue) {
+		final int index = oldValue.indexOf('/');
+		if (value.isEmpty() || value.indexOf('/') >= 0 || index < 0) {
+			return value;
+		}
+		return value + oldValue.substring(index);
+	}
+
+	/**
+	 * @return the text of a text frame, ignoring anything after the first value.
+	 */
+	private static String decodeText(ByteBuffer tag, int offset, int length) {
+		if (length < 1) {
+			return "";
+		}
+		final int encoding = tag.get(offset);
+		final Charset charset;
+		switch (encoding) {
+		case ENCODING_ISO_8859_1:
+			charset = StandardCharsets.ISO_8859_1;
+			break;
+		case ENCODING_UTF_16:
+			charset = StandardCharsets.UTF_16;
+			break;
+		case ENCODING_UTF_8:
+			charset = StandardCharsets.UTF_8;
+			break;
+		default:
+			charset = StandardCharsets.UTF_16BE;
+		}
+		final String text = new String(tag.array(), offset + 1, length - 1, charset);
+		final int index = text.indexOf('\0');
+		return index < 0 ? text : text.substring(0, index);
+	}
+
+	private static void putSyncsafeInt(ByteBuffer buffer, int value) {
+		buffer.put((byte) ((value >>> 21) & 0x7F)).put((byte) ((value >>> 14) & 0x7F))
+				.put((byte) ((value >>> 7) & 0x7F)).put((byte) (value & 0x7F));
+	}
+}
@@ -0,0 +1,180 @@
+package util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import framework.FileWrapper;
+
+/**
+ * Walks a music library and collects every file in it, optionally descending
+ * into subdirectories. Subdirectories are visited on a fork/join pool since
+ * listing folders one at a time is what dominates the walk on a cold disk.
+ * Folders on the PC do not list links to other folders, so a link to a parent
+ * folder cannot make the walk go round in circles.
+ *
+ * @author Aram
+ */
+public class LibraryWalker {
+	/**
+	 * Orders files by their path so that the result of a walk is deterministic,
+	 * regardless of how the threads happened to finish.
+	 */
+	public static final Comparator<FileWrapper> PATH_ORDER = new Comparator<FileWrapper>() {
+		@Override
+		public int compare(FileWrapper file1, FileWrapper file2) {
+			return file1.getAbsolutePath().compareTo(file2.getAbsolutePath());
+		}
+	};
+	private final int parallelism;
+	private final AtomicBoolean isCancelled = new AtomicBoolean(false);
+
+	/**
+	 * @param parallelism
+	 *            - the amount of threads used for walking subdirectories. If it
+	 *            is 1 or less, then the walk is done on the calling thread. This
+	 *            is necessary for MTP devices as jmtp does not like being called
+	 *            from several threads.
+	 */
+	public LibraryWalker(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Collect all files in the given folder.
+	 *
+	 * @param root
+	 *            - the folder to walk.
+	 * @param recurse
+	 *            - whether subdirectories should be walked as well.
+	 * @return a list of all files (never folders) sorted by {@link #PATH_ORDER}.
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted during the walk.
+	 */
+	public List<FileWrapper> walk(FileWrapper root, boolean recurse) throws InterruptedException {
+		isCancelled.set(false);
+		final List<FileWrapper> listOfFiles;
+		if (!recurse || parallelism <= 1) {
+			listOfFiles = walkSequentially(root, recurse);
+		} else {
+			final ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				Future<List<FileWrapper>> result = pool.submit(new WalkTask(root));
+				listOfFiles = result.get();
+			} catch (InterruptedException e) {
+				// Let the workers finish their current folder and stop.
+				isCancelled.set(true);
+				throw e;
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Could not walk " + root.getAbsolutePath(), e.getCause());
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+		Collections.sort(listOfFiles, PATH_ORDER);
+		return listOfFiles;
+	}
+
+	/**
+	 * Get the path of a file relative to the given root folder, e.g.
+	 * "Artist\Album\Song.mp3" for a song two folders below the root.
+	 *
+	 * @param root
+	 *            - the root folder the file was found in.
+	 * @param file
+	 *            - the file.
+	 * @return the relative path of the file. If the file is not located in the
+	 *         root folder, then its name is returned.
+	 */
+	public static String relativePath(FileWrapper root, FileWrapper file) {
+		String rootPath = root.getAbsolutePath();
+		final String filePath = file.getAbsolutePath();
+		if (!rootPath.endsWith(File.separator)) {
+			rootPath += File.separator;
+		}
+		if (filePath.startsWith(rootPath)) {
+			return filePath.substring(rootPath.length());
+		}
+		return file.getName();
+	}
+
+	/**
+	 * Get the folder part of a relative path.
+	 *
+	 * @param relativePath
+	 *            - a path such as the one given by
+	 *            {@link #relativePath(FileWrapper, FileWrapper)}.
+	 * @return the folders of the path, e.g. "Artist\Album". If the file is
+	 *         located directly in the root, then the empty string is returned.
+	 */
+	public static String relativeFolder(String relativePath) {
+		final int index = relativePath.lastIndexOf(File.separatorChar);
+		return index < 0 ? "" : relativePath.substring(0, index);
+	}
+
+	private List<FileWrapper> walkSequentially(FileWrapper folder, boolean recurse) throws InterruptedException {
+		final List<FileWrapper> listOfFiles = new ArrayList<>();
+		final FileWrapper[] children = folder.listFiles();
+		if (children == null) {
+			return listOfFiles;
+		}
+		for (FileWrapper child : children) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new InterruptedException();
+			}
+			if (child.isDirectory()) {
+				if (recurse) {
+					listOfFiles.addAll(walkSequentially(child, true));
+				}
+			} else {
+				listOfFiles.add(child);
+			}
+		}
+		return listOfFiles;
+	}
+
+	/**
+	 * Lists a single folder and forks a new task for each of its subdirectories.
+	 */
+	private class WalkTask extends RecursiveTask<List<FileWrapper>> {
+		private static final long serialVersionUID = -2412437358213519870L;
+		private final FileWrapper folder;
+
+		WalkTask(FileWrapper folder) {
+			this.folder = folder;
+		}
+
+		@Override
+		protected List<FileWrapper> compute() {
+			final List<FileWrapper> listOfFiles = new ArrayList<>();
+			if (isCancelled.get()) {
+				return listOfFiles;
+			}
+			final FileWrapper[] children = folder.listFiles();
+			if (children == null) {
+				return listOfFiles;
+			}
+			final List<WalkTask> subTasks = new ArrayList<>();
+			for (FileWrapper child : children) {
+				if (child.isDirectory()) {
+					WalkTask subTask = new WalkTask(child);
+					subTask.fork();
+					subTasks.add(subTask);
+				} else {
+					listOfFiles.add(child);
+				}
+			}
+			for (WalkTask subTask : subTasks) {
+				listOfFiles.addAll(subTask.join());
+			}
+			return listOfFiles;
+		}
+	}
+}
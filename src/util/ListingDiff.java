@@ -0,0 +1,164 @@
+package util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import framework.FileWrapper;
+
+/**
+ * Compares the listing of src with the listing of dst. Both listings are
+ * sorted by their paths relative to their root folder and then walked side by
+ * side, so finding the music which is new, orphaned or on both sides takes a
+ * single pass instead of looking up every file on the other side. This
+ * matters on MTP devices, where looking up a single file walks the folders
+ * from the root of the storage.
+ *
+ * @author Aram
+ */
+public class ListingDiff {
+	/**
+	 * Whether paths which only differ in case are the same file, as they are on
+	 * Windows.
+	 */
+	static final boolean IGNORE_CASE = File.separatorChar == '\\';
+
+	/**
+	 * Orders relative paths. Both listings must be sorted by the same order for
+	 * the merge to work. Paths which only differ in case are next to each other,
+	 * so that they can be matched where case does not matter.
+	 */
+	public static final Comparator<String> PATH_COLLATION = new Comparator<String>() {
+		@Override
+		public int compare(String path1, String path2) {
+			final int order = String.CASE_INSENSITIVE_ORDER.compare(path1, path2);
+			return order != 0 ? order : path1.compareTo(path2);
+		}
+	};
+
+	/**
+	 * @return true if both paths are the same file, i.e. they are equal or,
+	 *         where case does not matter, only differ in case.
+	 */
+	public static boolean isSamePath(String path1, String path2) {
+		return IGNORE_CASE ? path1.equalsIgnoreCase(path2) : path1.equals(path2);
+	}
+
+	/**
+	 * Receives the result of a diff, one file at a time and in the order of
+	 * {@link ListingDiff#PATH_COLLATION}.
+	 */
+	public interface Visitor {
+		/**
+		 * @param relativePath
+		 *            - the path of the file relative to the src folder.
+		 * @param fileSrc
+		 *            - a file which is only in src.
+		 */
+		void added(String relativePath, FileWrapper fileSrc) throws InterruptedException;
+
+		/**
+		 * @param relativePath
+		 *            - the path of the file relative to the dst folder.
+		 * @param fileDst
+		 *            - a file which is only in dst.
+		 */
+		void orphaned(String relativePath, FileWrapper fileDst) throws InterruptedException;
+
+		/**
+		 * @param relativePath
+		 *            - the path of the file relative to both folders.
+		 * @param fileSrc
+		 *            - the file in src.
+		 * @param fileDst
+		 *            - the same file in dst.
+		 */
+		void common(String relativePath, FileWrapper fileSrc, FileWrapper fileDst) throws InterruptedException;
+	}
+
+	/**
+	 * Diff the given listings. Neither listing needs to be sorted beforehand.
+	 *
+	 * @param srcRoot
+	 *            - the src folder.
+	 * @param listOfSrc
+	 *            - the files in src, e.g. as given by {@link LibraryWalker}.
+	 * @param dstRoot
+	 *            - the dst folder.
+	 * @param listOfDst
+	 *            - the files in dst.
+	 * @param visitor
+	 *            - the visitor to report every file to.
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted or the visitor throws it.
+	 */
+	public static void diff(FileWrapper srcRoot, List<FileWrapper> listOfSrc, FileWrapper dstRoot,
+			List<FileWrapper> listOfDst, Visitor visitor) throws InterruptedException {
+		diff(srcRoot, listOfSrc, dstRoot, listOfDst, visitor, IGNORE_CASE);
+	}
+
+	/**
+	 * @param ignoreCase
+	 *            - whether paths which only differ in case are the same file.
+	 * @see #diff(FileWrapper, List, FileWrapper, List, Visitor)
+	 */
+	static void diff(FileWrapper srcRoot, List<FileWrapper> listOfSrc, FileWrapper dstRoot,
+			List<FileWrapper> listOfDst, Visitor visitor, boolean ignoreCase) throws InterruptedException {
+		final List<Entry> entriesSrc = sortedEntries(srcRoot, listOfSrc);
+		final List<Entry> entriesDst = sortedEntries(dstRoot, listOfDst);
+		int indexSrc = 0;
+		int indexDst = 0;
+		while (indexSrc < entriesSrc.size() || indexDst < entriesDst.size()) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new InterruptedException();
+			}
+			final int order;
+			if (indexSrc == entriesSrc.size()) {
+				order = 1;
+			} else if (indexDst == entriesDst.size()) {
+				order = -1;
+			} else {
+				final String pathSrc = entriesSrc.get(indexSrc).relativePath;
+				final String pathDst = entriesDst.get(indexDst).relativePath;
+				order = ignoreCase && pathSrc.equalsIgnoreCase(pathDst) ? 0
+						: PATH_COLLATION.compare(pathSrc, pathDst);
+			}
+			if (order < 0) {
+				final Entry entrySrc = entriesSrc.get(indexSrc++);
+				visitor.added(entrySrc.relativePath, entrySrc.file);
+			} else if (order > 0) {
+				final Entry entryDst = entriesDst.get(indexDst++);
+				visitor.orphaned(entryDst.relativePath, entryDst.file);
+			} else {
+				final Entry entrySrc = entriesSrc.get(indexSrc++);
+				visitor.common(entrySrc.relativePath, entrySrc.file, entriesDst.get(indexDst++).file);
+			}
+		}
+	}
+
+	private static List<Entry> sortedEntries(FileWrapper root, List<FileWrapper> listOfFiles) {
+		final List<Entry> entries = new ArrayList<>(listOfFiles.size());
+		for (FileWrapper file : listOfFiles) {
+			entries.add(new Entry(LibraryWalker.relativePath(root, file), file));
+		}
+		Collections.sort(entries, new Comparator<Entry>() {
+			@Override
+			public int compare(Entry entry1, Entry entry2) {
+				return PATH_COLLATION.compare(entry1.relativePath, entry2.relativePath);
+			}
+		});
+		return entries;
+	}
+
+	private static class Entry {
+		private final String relativePath;
+		private final FileWrapper file;
+
+		Entry(String relativePath, FileWrapper file) {
+			this.relativePath = relativePath;
+			this.file = file;
+		}
+	}
+}
@@ -0,0 +1,243 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Finds the duration of an MP3 file from its first frames instead of parsing
+ * the whole audio header. A VBR file has the frame count in a Xing/Info (also
+ * written by LAME) or VBRI header in its first frame; for a CBR file, the
+ * duration follows from the size of the audio and the bitrate of the first
+ * frame.
+ * <p>
+ * Durations are in milliseconds. Encoders and devices do not always agree on
+ * the last few frames, so durations should be compared with
+ * {@link #isSameDuration(String, String)} rather than for equality.
+ *
+ * @author Aram
+ */
+public class MP3DurationProbe {
+	/**
+	 * Durations that differ by no more than this many milliseconds are
+	 * considered the same.
+	 */
+	public static final int TOLERANCE_MILLIS = 1000;
+	/** How far past the tag we look for the first frame. */
+	private static final int SEARCH_SIZE = 64 * 1024;
+	private static final int FRAME_HEADER_SIZE = 4;
+	private static final int ID3V1_SIZE = 128;
+	private static final int VBRI_OFFSET = FRAME_HEADER_SIZE + 32;
+	private static final int XING_FLAG_FRAMES = 0x1;
+	private static final int MPEG_1 = 3;
+	private static final int MPEG_2 = 2;
+	private static final int LAYER_1 = 3;
+	private static final int LAYER_3 = 1;
+	private static final int CHANNEL_MODE_MONO = 3;
+	/** In kbit/s, indexed by [MPEG 1 ? 0 : 1][layer index - 1][bitrate index]. */
+	private static final int[][][] BITRATES = {
+			{ { 0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 },
+					{ 0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384 },
+					{ 0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448 } },
+			{ { 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 },
+					{ 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 },
+					{ 0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256 } } };
+	private static final int[] MPEG_1_SAMPLE_RATES = { 44100, 48000, 32000 };
+
+	/**
+	 * The duration of an MP3 file.
+	 */
+	public static class Duration {
+		private final long frameCount;
+		private final long millis;
+
+		private Duration(long frameCount, long millis) {
+			this.frameCount = frameCount;
+			this.millis = millis;
+		}
+
+		/**
+		 * @return the number of audio frames. For a CBR file, this is computed
+		 *         from the size of the audio.
+		 */
+		public long getFrameCount() {
+			return frameCount;
+		}
+
+		public long getMillis() {
+			return millis;
+		}
+	}
+
+	/**
+	 * Probe the duration of the MP3 file at the given path.
+	 *
+	 * @param path
+	 *            - the path to the MP3 file.
+	 * @param audioStart
+	 *            - the position of the first byte after the ID3v2 tag, if any.
+	 * @return the duration, or null if no frame was found close to the given
+	 *         position.
+	 * @throws IOException
+	 *             if the file could not be read.
+	 */
+	public static Duration probe(Path path, long audioStart) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final long fileSize = channel.size();
+			final int size = (int) Math.max(0, Math.min(SEARCH_SIZE, fileSize - audioStart));
+			final ByteBuffer buffer = ByteBuffer.allocate(size);
+			if (!ContentFingerprinter.readFully(channel, buffer, audioStart, size)) {
+				return null;
+			}
+			final int offset = findFirstFrame(buffer, size);
+			if (offset < 0) {
+				return null;
+			}
+			final Frame frame = new Frame(buffer.getInt(offset));
+			final long frameCount = vbrFrameCount(buffer, offset, size, frame);
+			if (frameCount >= 0) {
+				return new Duration(frameCount, frameCount * frame.samplesPerFrame() * 1000 / frame.sampleRate);
+			}
+			// CBR: every frame has the bitrate of the first frame.
+			long audioEnd = fileSize;
+			final ByteBuffer id3v1 = ByteBuffer.allocate(3);
+			if (fileSize - ID3V1_SIZE >= audioStart + offset
+					&& ContentFingerprinter.readFully(channel, id3v1, fileSize - ID3V1_SIZE, 3)
+					&& id3v1.get(0) == 'T' && id3v1.get(1) == 'A' && id3v1.get(2) == 'G') {
+				audioEnd -= ID3V1_SIZE;
+			}
+			final long audioSize = audioEnd - (audioStart + offset);
+			final long millis = audioSize * 8 / frame.bitrate; // A bitrate in kbit/s is in bits per millisecond.
+			return new Duration(millis * frame.sampleRate / frame.samplesPerFrame() / 1000, millis);
+		}
+	}
+
+	/**
+	 * Compare two durations given in milliseconds, allowing for
+	 * {@link #TOLERANCE_MILLIS}. Durations that are not numbers (e.g. because
+	 * they could not be read) are only the same if they are equal.
+	 */
+	public static boolean isSameDuration(String duration1, String duration2) {
+		try {
+			return Math.abs(Long.parseLong(duration1) - Long.parseLong(duration2)) <= TOLERANCE_MILLIS;
+		} catch (NumberFormatException e) {
+			return duration1.equals(duration2);
+		}
+	}
+
+	/**
+	 * Look for a frame header which is followed by another frame header of the
+	 * same kind, so that some stray bytes are not taken for a frame.
+	 *
+	 * @return the position of the first frame in the buffer, or -1 if there is
+	 *         none.
+	 */
+	private static int findFirstFrame(ByteBuffer buffer, int size) {
+		for (int offset = 0; offset + FRAME_HEADER_SIZE <= size; offset++) {
+			if ((buffer.get(offset) & 0xFF) != 0xFF) {
+				continue;
+			}
+			final Frame frame = new Frame(buffer.getInt(offset));
+			if (!frame.isValid()) {
+				continue;
+			}
+			final int next = offset + frame.size();
+			if (next + FRAME_HEADER_SIZE > size) {
+				return offset; // The file (or what we read of it) ends with this frame.
+			}
+			final Frame nextFrame = new Frame(buffer.getInt(next));
+			if (nextFrame.isValid() && nextFrame.version == frame.version && nextFrame.layer == frame.layer
+					&& nextFrame.sampleRate == frame.sampleRate) {
+				return offset;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the frame count in the Xing/Info or VBRI header of the first
+	 *         frame, or -1 if it has neither or they do not have the count.
+	 */
+	private static long vbrFrameCount(ByteBuffer buffer, int offset, int size, Frame frame) {
+		final int xingOffset = offset + FRAME_HEADER_SIZE + frame.sideInfoSize();
+		if (frame.layer == LAYER_3 && xingOffset + 12 <= size
+				&& (isTag(buffer, xingOffset, "Xing") || isTag(buffer, xingOffset, "Info"))) {
+			return (buffer.getInt(xingOffset + 4) & XING_FLAG_FRAMES) != 0 ? buffer.getInt(xingOffset + 8) & 0xFFFFFFFFL
+					: -1;
+		}
+		final int vbriOffset = offset + VBRI_OFFSET;
+		if (vbriOffset + 18 <= size && isTag(buffer, vbriOffset, "VBRI")) {
+			return buffer.getInt(vbriOffset + 14) & 0xFFFFFFFFL;
+		}
+		return -1;
+	}
+
+	private static boolean isTag(ByteBuffer buffer, int offset, String tag) {
+		for (int i = 0; i < tag.length(); i++) {
+			if (buffer.get(offset + i) != tag.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The fields of an MPEG audio frame header.
+	 */
+	private static class Frame {
+		private final int version;
+		private final int layer;
+		private final int bitrate;
+		private final int sampleRate;
+		private final int padding;
+		private final boolean isMono;
+
+		Frame(int header) {
+			version = (header >>> 19) & 0x3;
+			layer = (header >>> 17) & 0x3;
+			final int bitrateIndex = (header >>> 12) & 0xF;
+			final int sampleRateIndex = (header >>> 10) & 0x3;
+			final boolean isHeader = (header & 0xFFE00000) == 0xFFE00000 && version != 1 && layer != 0
+					&& bitrateIndex != 0 && bitrateIndex != 0xF && sampleRateIndex != 3;
+			bitrate = isHeader ? BITRATES[version == MPEG_1 ? 0 : 1][layer - 1][bitrateIndex] : 0;
+			sampleRate = isHeader ? MPEG_1_SAMPLE_RATES[sampleRateIndex] / (version == MPEG_1 ? 1
+					: version == MPEG_2 ? 2 : 4) : 0;
+			padding = (header >>> 9) & 0x1;
+			isMono = ((header >>> 6) & 0x3) == CHANNEL_MODE_MONO;
+		}
+
+		boolean isValid() {
+			return bitrate > 0;
+		}
+
+		int samplesPerFrame() {
+			if (layer == LAYER_1) {
+				return 384;
+			}
+			return layer == LAYER_3 && version != MPEG_1 ? 576 : 1152;
+		}
+
+		/**
+		 * @return the size of the frame in bytes, including the header.
+		 */
+		int size() {
+			if (layer == LAYER_1) {
+				return (12000 * bitrate / sampleRate + padding) * 4;
+			}
+			return (layer == LAYER_3 && version != MPEG_1 ? 72000 : 144000) * bitrate / sampleRate + padding;
+		}
+
+		/**
+		 * @return the size of the layer III side information, after which the
+		 *         Xing/Info header is.
+		 */
+		int sideInfoSize() {
+			if (version == MPEG_1) {
+				return isMono ? 17 : 32;
+			}
+			return isMono ? 9 : 17;
+		}
+	}
+}
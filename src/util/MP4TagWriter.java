@@ -0,0 +1,334 @@
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.jaudiotagger.tag.FieldKey;
+
+/**
+ * Changes the text items of an MP4/M4A file without moving its audio. Only the
+ * moov/udta/meta/ilst atom is written anew; the room it needs is taken from
+ * "free" atoms, which are also used to fill the room it leaves. The audio in
+ * the "mdat" atom therefore never moves, so the chunk offsets in the "moov"
+ * atom stay valid and nothing but the metadata is written.
+ * <p>
+ * If there is not enough room and the "moov" atom cannot grow without moving
+ * the "mdat" atom, the file is not written at all, so the caller can fall back
+ * to jaudiotagger.
+ *
+ * @author Aram
+ */
+public class MP4TagWriter {
+	/**
+	 * The room which is left after the items if the "moov" atom has to grow at
+	 * the end of the file anyway, so that the next changes fit.
+	 */
+	public static final int GROWTH_PADDING = 4 * 1024;
+	private static final int HEADER_SIZE = 8;
+	private static final int FULL_ATOM_HEADER_SIZE = 12;
+	/** An item consists of its own header and a data atom with a type and a locale. */
+	private static final int ITEM_PAYLOAD_OFFSET = HEADER_SIZE + HEADER_SIZE + 8;
+	private static final int TYPE_IMPLICIT = 0;
+	private static final int TYPE_UTF_8 = 1;
+	private static final String TRACK = "trkn";
+	private static final String DISC = "disk";
+	private static final String GENRE = "\u00A9gen";
+	/** The genre may also be given as the index of an ID3v1 genre. */
+	private static final String GENRE_INDEX = "gnre";
+	private static final Map<FieldKey, String> ITEMS = new EnumMap<>(FieldKey.class);
+
+	static {
+		ITEMS.put(FieldKey.TITLE, "\u00A9nam");
+		ITEMS.put(FieldKey.ARTIST, "\u00A9ART");
+		ITEMS.put(FieldKey.ALBUM_ARTIST, "aART");
+		ITEMS.put(FieldKey.ALBUM, "\u00A9alb");
+		ITEMS.put(FieldKey.YEAR, "\u00A9day");
+		ITEMS.put(FieldKey.TRACK, TRACK);
+		ITEMS.put(FieldKey.DISC_NO, DISC);
+		ITEMS.put(FieldKey.GENRE, GENRE);
+		ITEMS.put(FieldKey.COMPOSER, "\u00A9wrt");
+		ITEMS.put(FieldKey.COMMENT, "\u00A9cmt");
+	}
+
+	/**
+	 * Set the values of some tags of the MP4 file at the given path. Tags which
+	 * are not given are kept as they are.
+	 *
+	 * @param path
+	 *            - the path to the MP4 file.
+	 * @param tagValues
+	 *            - the new values. An empty value removes the item. The track
+	 *            and disc numbers keep their total, if any.
+	 * @return true if the tags were written; false if the file is not written,
+	 *         e.g. because there is not enough room or a tag is not supported.
+	 * @throws IOException
+	 *             if the file could not be read or written.
+	 */
+	public static boolean write(Path path, Map<FieldKey, String> tagValues) throws IOException {
+		final Map<String, String> items = new LinkedHashMap<>();
+		for (Map.Entry<FieldKey, String> tagValue : tagValues.entrySet()) {
+			final String item = ITEMS.get(tagValue.getKey());
+			if (item == null) {
+				return false;
+			}
+			items.put(item, tagValue.getValue());
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			final long fileSize = channel.size();
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			// Find the moov atom and what follows it.
+			long moovStart = -1;
+			long moovEnd = -1;
+			long freeAfterMoov = 0;
+			long position = 0;
+			while (position + HEADER_SIZE <= fileSize
+					&& ContentFingerprinter.readFully(channel, header, position, HEADER_SIZE)) {
+				long atomSize = header.getInt(0) & 0xFFFFFFFFL;
+				final String type = typeOf(header.array(), 4);
+				if (atomSize == 1) {
+					final ByteBuffer largeSize = ByteBuffer.allocate(8);
+					if (!ContentFingerprinter.readFully(channel, largeSize, position + HEADER_SIZE, 8)) {
+						return false;
+					}
+					atomSize = largeSize.getLong(0);
+				} else if (atomSize == 0) {
+					atomSize = fileSize - position; // The atom extends to the end of the file.
+				}
+				if (atomSize < HEADER_SIZE || position + atomSize > fileSize) {
+					return false; // Broken file. Let jaudiotagger decide what to make of it.
+				}
+				if (moovStart >= 0) {
+					if (isFree(type) && header.getInt(0) != 1) {
+						freeAfterMoov = atomSize;
+					}
+					break;
+				}
+				if (type.equals("moov")) {
+					// The size written back must be the size field of the atom, so neither a
+					// 64-bit size nor a size of 0 (up to the end of the file) is supported.
+					if (header.getInt(0) == 1 || header.getInt(0) == 0 || atomSize > Integer.MAX_VALUE) {
+						return false;
+					}
+					moovStart = position;
+					moovEnd = position + atomSize;
+				}
+				position += atomSize;
+			}
+			if (moovStart < 0) {
+				return false;
+			}
+			final ByteBuffer moov = ByteBuffer.allocate((int) (moovEnd - moovStart));
+			if (!ContentFingerprinter.readFully(channel, moov, moovStart, moov.capacity())) {
+				return false;
+			}
+			final int udta = findChild(moov, 0, HEADER_SIZE, "udta");
+			final int meta = udta < 0 ? -1 : findChild(moov, udta, HEADER_SIZE, "meta");
+			final int ilst = meta < 0 ? -1 : findChild(moov, meta, FULL_ATOM_HEADER_SIZE, "ilst");
+			if (ilst < 0) {
+				return false;
+			}
+			final int metaEnd = meta + moov.getInt(meta);
+			final int ilstEnd = ilst + moov.getInt(ilst);
+			// The free atoms right after the items are room the items may take.
+			int slackEnd = ilstEnd;
+			while (slackEnd + HEADER_SIZE <= metaEnd && isFree(typeOf(moov.array(), slackEnd + 4))
+					&& moov.getInt(slackEnd) >= HEADER_SIZE && slackEnd + moov.getInt(slackEnd) <= metaEnd) {
+				slackEnd += moov.getInt(slackEnd);
+			}
+			final byte[] newIlst = changeItems(moov, ilst, ilstEnd, items);
+			if (newIlst == null) {
+				return false;
+			}
+			final int room = slackEnd - ilst;
+			if (fits(newIlst.length, room)) {
+				// The items fit where they were; nothing else changes.
+				final ByteBuffer region = ByteBuffer.allocate(room);
+				region.put(newIlst);
+				putFree(region, room - newIlst.length);
+				write(channel, region, moovStart + ilst);
+				return true;
+			}
+			final int newRoom;
+			if (moovEnd == fileSize) {
+				newRoom = newIlst.length + GROWTH_PADDING; // The moov atom may grow at will.
+			} else if (freeAfterMoov > 0 && fits(newIlst.length, room + freeAfterMoov)) {
+				newRoom = (int) (room + freeAfterMoov); // The moov atom takes the free atom after it.
+			} else {
+				return false; // The mdat atom would have to move.
+			}
+			final int growth = newRoom - room;
+			final ByteBuffer newMoov = ByteBuffer.allocate(moov.capacity() + growth);
+			newMoov.put(moov.array(), 0, ilst);
+			newMoov.put(newIlst);
+			putFree(newMoov, newRoom - newIlst.length);
+			newMoov.put(moov.array(), slackEnd, moov.capacity() - slackEnd);
+			for (int atom : new int[] { 0, udta, meta }) {
+				newMoov.putInt(atom, moov.getInt(atom) + growth);
+			}
+			write(channel, newMoov, moovStart);
+			return true;
+		}
+	}
+
+	/**
+	 * @return the items of the ilst atom, including its header, with the given
+	 *         items changed; or null if an item cannot be written.
+	 */
+	private static byte[] changeItems(ByteBuffer moov, int ilst, int ilstEnd, Map<String, String> items)
+			throws IOException {
+		final Map<String, String> remainingItems = new LinkedHashMap<>(items);
+		final Set<String> writtenItems = new HashSet<>();
+		final ByteArrayOutputStream newItems = new ByteArrayOutputStream();
+		newItems.write(new byte[HEADER_SIZE]); // The header is filled in once the size is known.
+		int position = ilst + HEADER_SIZE;
+		while (position + HEADER_SIZE <= ilstEnd) {
+			final int itemSize = moov.getInt(position);
+			if (itemSize < HEADER_SIZE || position + itemSize > ilstEnd) {
+				return null;
+			}
+			String item = typeOf(moov.array(), position + 4);
+			if (item.equals(GENRE_INDEX) && items.containsKey(GENRE)) {
+				item = GENRE; // The genre is written as text, which replaces the index.
+			}
+			if (items.containsKey(item)) {
+				if (writtenItems.add(item)) {
+					final String value = remainingItems.remove(item);
+					final int[] oldNumbers = item.equals(TRACK) || item.equals(DISC)
+							? numbersOf(moov, position, itemSize) : null;
+					if (!writeItem(newItems, item, value, oldNumbers)) {
+						return null;
+					}
+				}
+			} else {
+				newItems.write(moov.array(), position, itemSize);
+			}
+			position += itemSize;
+		}
+		for (Map.Entry<String, String> item : remainingItems.entrySet()) {
+			if (!writeItem(newItems, item.getKey(), item.getValue(), null)) {
+				return null;
+			}
+		}
+		final byte[] newIlst = newItems.toByteArray();
+		ByteBuffer.wrap(newIlst).putInt(newIlst.length).put(moov.array(), ilst + 4, 4);
+		return newIlst;
+	}
+
+	/**
+	 * Write an item with a single data atom, unless the value is empty. The
+	 * track and disc numbers are written as numbers which keep the total of the
+	 * old numbers; every other item is written as text.
+	 *
+	 * @return false if a number is not a number.
+	 */
+	private static boolean writeItem(ByteArrayOutputStream items, String item, String value, int[] oldNumbers)
+			throws IOException {
+		if (value.isEmpty()) {
+			return true;
+		}
+		final byte[] payload;
+		final int type;
+		if (item.equals(TRACK) || item.equals(DISC)) {
+			final int number;
+			try {
+				number = Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				return false;
+			}
+			final int total = oldNumbers == null ? 0 : oldNumbers[1];
+			payload = (item.equals(TRACK) ? ByteBuffer.allocate(8) : ByteBuffer.allocate(6)).putShort(2,
+					(short) number).putShort(4, (short) total).array();
+			type = TYPE_IMPLICIT;
+		} else {
+			payload = value.getBytes(StandardCharsets.UTF_8);
+			type = TYPE_UTF_8;
+		}
+		final ByteBuffer header = ByteBuffer.allocate(ITEM_PAYLOAD_OFFSET);
+		header.putInt(ITEM_PAYLOAD_OFFSET + payload.length).put(item.getBytes(StandardCharsets.ISO_8859_1));
+		header.putInt(ITEM_PAYLOAD_OFFSET - HEADER_SIZE + payload.length).put(
+				"data".getBytes(StandardCharsets.ISO_8859_1));
+		header.putInt(type).putInt(0); // The locale.
+		items.write(header.array());
+		items.write(payload);
+		return true;
+	}
+
+	/**
+	 * @return the number and the total of a track or disc number item; zeros if
+	 *         it has no numbers.
+	 */
+	private static int[] numbersOf(ByteBuffer moov, int item, int itemSize) {
+		if (itemSize < ITEM_PAYLOAD_OFFSET + 6) {
+			return new int[] { 0, 0 };
+		}
+		final int payload = item + ITEM_PAYLOAD_OFFSET;
+		return new int[] { moov.getShort(payload + 2) & 0xFFFF, moov.getShort(payload + 4) & 0xFFFF };
+	}
+
+	/**
+	 * @return the position of the child atom of the given type within the atom
+	 *         at the given position, or -1 if it has none.
+	 */
+	private static int findChild(ByteBuffer moov, int atom, int headerSize, String type) {
+		final int atomEnd = atom + moov.getInt(atom);
+		int position = atom + headerSize;
+		while (position + HEADER_SIZE <= atomEnd) {
+			final int childSize = moov.getInt(position);
+			if (childSize < HEADER_SIZE || position + childSize > atomEnd) {
+				return -1; // Also 64-bit sizes, which the atoms of the metadata never need.
+			}
+			if (typeOf(moov.array(), position + 4).equals(type)) {
+				return position;
+			}
+			position += childSize;
+		}
+		return -1;
+	}
+
+	/**
+	 * A free atom cannot be smaller than its header, so the items either fill
+	 * the room exactly or leave room for at least a header.
+	 */
+	private static boolean fits(long size, long room) {
+		return size == room || size + HEADER_SIZE <= room;
+	}
+
+	/**
+	 * Put a free atom of the given size, if it is not 0.
+	 */
+	private static void putFree(ByteBuffer buffer, int size) {
+		if (size == 0) {
+			return;
+		}
+		final int start = buffer.position();
+		buffer.putInt(size).put("free".getBytes(StandardCharsets.ISO_8859_1));
+		Arrays.fill(buffer.array(), buffer.position(), start + size, (byte) 0);
+		buffer.position(start + size);
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		buffer.rewind();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+	}
+
+	private static boolean isFree(String type) {
+		return type.equals("free") || type.equals("skip");
+	}
+
+	private static String typeOf(byte[] bytes, int offset) {
+		return new String(bytes, offset, 4, StandardCharsets.ISO_8859_1);
+	}
+}
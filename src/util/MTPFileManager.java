@@ -5,7 +5,10 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 import be.derycke.pieter.com.COMException;
 import jmtp.PortableDevice;
@@ -23,11 +26,22 @@ import jmtp.PortableDeviceToHostImpl32;
 public class MTPFileManager {
     //boolean debug = false;
     private PortableDevice device;
+    private MTPObjectIndex index;
     
     public MTPFileManager(PortableDevice portableDevice) {
     	device = portableDevice;
     }
     
+    /**
+     * Constructs a file manager for a single storage of the device. Paths are
+     * resolved through the given index, which is kept up to date with the files
+     * and folders created and deleted by this manager.
+     */
+    public MTPFileManager(PortableDevice portableDevice, MTPObjectIndex index) {
+    	device = portableDevice;
+    	this.index = index;
+    }
+    
     //public synchronized void openDevice(PortableDevice portableDevice) {
     public void openDevice() {
         device.open();
@@ -52,48 +66,89 @@ public class MTPFileManager {
         return device;
     }
 
+    /**
+     * Uploads files into a single folder of the storage. The folder is resolved
+     * (and created if necessary) and listed once when the session is opened, so
+     * adding a file costs a single upload plus a delete if it replaces an
+     * existing file, instead of walking the path again for every file.
+     */
+    public class UploadSession {
+        private final String mtpPath;
+        private final PortableDeviceFolderObject folder;
+
+        private UploadSession(String mtpPath) throws IOException {
+            this.mtpPath = mtpPath;
+            folder = getIndex().getOrCreateFolder(mtpPath);
+            if (folder == null) {
+                throw new IOException("Could not create the folder " + mtpPath + " on the device.");
+            }
+            // List the folder now, so that existing files are found in the index from here on.
+            getIndex().getChildren(mtpPath);
+        }
+
+        /**
+         * Upload a file into the folder, replacing any file of the same name.
+         */
+        public void add(File file) throws FileNotFoundException, IOException, COMException {
+            final String path = mtpPath + File.separatorChar + file.getName();
+            final PortableDeviceObject existing = getIndex().get(path);
+            if (existing != null && existing.canDelete()) {
+                existing.delete();
+                getIndex().remove(path);
+            }
+            // PortableDeviceAudioObject object = folder.addAudioObject(file, "--",
+            // "--", new BigInteger("0"));
+            PortableDeviceObject object = folder.addAudioObject(file, "--", "--", BigInteger.ZERO);
+            getIndex().put(path, object);
+            // LogUtil.debugPrint(LogUtil.LOG_LEVEL_LESS,
+            // this.getClass().getSimpleName(), "Copied " + file.getAbsolutePath() +
+            // " to " + mtpPath
+            // + " on " + getDevice().getModel());
+        }
+    }
+
+    /**
+     * Open a session for uploading several files into the same folder.
+     *
+     * @param mtpPath
+     *            - the path of the folder, which is created if it does not
+     *            exist.
+     * @throws IOException
+     *             if the folder could not be created.
+     */
+    public UploadSession openUploadSession(String mtpPath) throws IOException {
+        return new UploadSession(mtpPath);
+    }
+
     public void addFile(File file, String mtpPath)
             throws FileNotFoundException, IOException, COMException {
-        deleteFile(file.getName(), mtpPath);
-        String lastpartofpath = mtpPath
-                .substring(mtpPath.lastIndexOf(File.separatorChar) + 1);
-        PortableDeviceStorageObject storage = getStorage();
-        PortableDeviceFolderObject folder = MTPUtil.createFolder(mtpPath,
-                storage, null, lastpartofpath);
-
-        // PortableDeviceAudioObject object = folder.addAudioObject(file, "--",
-        // "--", new BigInteger("0"));
-        folder.addAudioObject(file, "--", "--", BigInteger.ZERO);
-        // LogUtil.debugPrint(LogUtil.LOG_LEVEL_LESS,
-        // this.getClass().getSimpleName(), "Copied " + file.getAbsolutePath() +
-        // " to " + mtpPath
-        // + " on " + getDevice().getModel());
+        addFiles(Collections.singletonList(file), mtpPath);
+    }
+
+    /**
+     * Upload files into the same folder, replacing any files of the same name.
+     * The folder is only resolved and listed once.
+     */
+    public void addFiles(List<File> files, String mtpPath)
+            throws FileNotFoundException, IOException, COMException {
+        final UploadSession session = openUploadSession(mtpPath);
+        for (File file : files) {
+            session.add(file);
+        }
     }
 
     public ArrayList<PortableDeviceObject> getFiles(String path)
             throws COMException {
-        String lastpartofpath = path.substring(path.lastIndexOf(File.separatorChar) + 1);
-        PortableDeviceStorageObject storage = getStorage();
-        PortableDeviceFolderObject folder = MTPUtil.createFolder(path, storage,
-                null, lastpartofpath);
-
-        ArrayList<PortableDeviceObject> newFiles = new ArrayList<PortableDeviceObject>();
-        for (PortableDeviceObject object : folder.getChildObjects()) {
-            newFiles.add(object);
-        }
-        return newFiles;
+        getIndex().getOrCreateFolder(path);
+        return new ArrayList<PortableDeviceObject>(getIndex().getChildren(path).values());
 
     }
 
     public ArrayList<PortableDeviceObject> getNewFiles(Date lastChecked,
             String path) throws COMException {
-        String lastpartofpath = path.substring(path.lastIndexOf(File.separatorChar) + 1);
-        PortableDeviceStorageObject storage = getStorage();
-        PortableDeviceFolderObject folder = MTPUtil.createFolder(path, storage,
-                null, lastpartofpath);
-
+        getIndex().getOrCreateFolder(path);
         ArrayList<PortableDeviceObject> newFiles = new ArrayList<PortableDeviceObject>();
-        for (PortableDeviceObject object : folder.getChildObjects()) {
+        for (PortableDeviceObject object : getIndex().getChildren(path).values()) {
             if (object.getDateModified() != null
                     && object.getDateModified().after(lastChecked)) {
                 newFiles.add(object);
@@ -105,30 +160,10 @@ public class MTPFileManager {
 
     public PortableDeviceObject findFile(String name, String path)
             throws COMException {
-        PortableDeviceStorageObject storage = getStorage();
-        if (storage == null) {
+        if (getIndex().getStorage() == null) {
             return null; // this is not a storage device
         }
-        PortableDeviceFolderObject folder;
-        String lastpartofpath = path.substring(path.lastIndexOf(File.separatorChar) + 1);
-        if (!lastpartofpath.equals("")) {
-        	// TODO Why THE FUCK is createFolder called just to find a file?!
-            folder = MTPUtil.createFolder(path, storage, null, lastpartofpath);
-            //System.out.println("Trying to find file " + name + " in path " + path + ". Last part of path is " + lastpartofpath);
-
-            for (PortableDeviceObject object : folder.getChildObjects()) {
-                if (object.getOriginalFileName().equals(name)) {
-                    return object;
-                }
-            }
-        } else {
-            for (PortableDeviceObject object : storage.getChildObjects()) {
-                if (object.getOriginalFileName().equals(name)) {
-                    return object;
-                }
-            }
-        }
-        return null;
+        return getIndex().get(path + File.separatorChar + name);
     }
 
     public void getFile(String objectId, String destPath) throws COMException {
@@ -140,38 +175,31 @@ public class MTPFileManager {
         PortableDeviceObject fileObject = findFile(name, path);
         if (fileObject != null && fileObject.canDelete()) {
             fileObject.delete();
+            getIndex().remove(path + File.separatorChar + name);
             return true;
         }
         return false;
     }
 
     public void deleteAllFiles(String path) throws COMException {
-        String lastpartofpath = path.substring(path.lastIndexOf(File.separatorChar) + 1);
-        PortableDeviceStorageObject storage = getStorage();
-
-        PortableDeviceFolderObject folder = MTPUtil.createFolder(path, storage,
-                null, lastpartofpath);
-        for (PortableDeviceObject fileObject : folder.getChildObjects()) {
+        getIndex().getOrCreateFolder(path);
+        for (Map.Entry<String, PortableDeviceObject> child : getIndex().getChildren(path).entrySet()) {
+            final PortableDeviceObject fileObject = child.getValue();
             if (fileObject != null && fileObject.canDelete()) {
                 fileObject.delete();
+                getIndex().remove(child.getKey());
             }
         }
     }
 
     public void createFolder(String path) throws COMException {
-        String lastpartofpath = path.substring(path.lastIndexOf(File.separatorChar) + 1);
-        PortableDeviceStorageObject storage = getStorage();
-        MTPUtil.createFolder(path, storage, null, lastpartofpath);
+        getIndex().getOrCreateFolder(path);
     }
 
     public ArrayList<String> getAllFilesByName(String path) {
         ArrayList<String> fileNames = new ArrayList<String>();
-        String lastpartofpath = path.substring(path.lastIndexOf(File.separatorChar) + 1);
-        PortableDeviceStorageObject storage = getStorage();
-
-        PortableDeviceFolderObject folder = MTPUtil.createFolder(path, storage,
-                null, lastpartofpath);
-        for (PortableDeviceObject fileObject : folder.getChildObjects()) {
+        getIndex().getOrCreateFolder(path);
+        for (PortableDeviceObject fileObject : getIndex().getChildren(path).values()) {
             if (fileObject != null) {
                 fileNames.add(fileObject.getOriginalFileName());
             }
@@ -185,6 +213,17 @@ public class MTPFileManager {
         return manager.getDevices();
     }
 
+    /**
+     * @return the index of the storage this manager works on. If none was
+     *         given, the first storage of the device is indexed.
+     */
+    private MTPObjectIndex getIndex() {
+        if (index == null) {
+            index = new MTPObjectIndex(getStorage());
+        }
+        return index;
+    }
+
     private PortableDeviceStorageObject getStorage() {
         if (device.getRootObjects() != null) {
             for (PortableDeviceObject object : device.getRootObjects()) {
@@ -0,0 +1,293 @@
+package util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import be.derycke.pieter.com.COMException;
+import jmtp.AudioPropertyReader;
+import jmtp.PortableDeviceAudioObject;
+import jmtp.PortableDeviceFolderObject;
+import jmtp.PortableDeviceObject;
+import jmtp.PortableDeviceStorageObject;
+
+/**
+ * Maps the paths of a storage of an MTP device to its objects, so that a path
+ * is resolved with a single lookup instead of a walk from the root of the
+ * storage which asks for the name of every child of every folder along the way.
+ * Each of those is a round trip to the device.
+ * <p>
+ * The index is filled lazily: a folder is listed the first time a path in it
+ * is looked up, and all of its children are remembered. It is meant to live
+ * for a session, during which the objects are created and deleted through it
+ * (see {@link MTPFileManager}); changes made by anyone else are not noticed.
+ * <p>
+ * The properties of the music in a folder are read in the same way: all of
+ * them at once, the first time the properties of any music in it are asked for.
+ * <p>
+ * Paths are relative to the storage, e.g. "Music\Artist\Song.mp3".
+ *
+ * @author Aram
+ */
+public class MTPObjectIndex {
+	private final PortableDeviceStorageObject storage;
+	/** The objects by their path. */
+	private final Map<String, PortableDeviceObject> objects = new HashMap<>();
+	/** The paths of the children of every folder listed so far, by the path of the folder. */
+	private final Map<String, Map<String, PortableDeviceObject>> childrenByFolder = new HashMap<>();
+	private final AudioPropertyReader propertyReader;
+	/** The properties of the music read so far, by its path. */
+	private final Map<String, AudioPropertyReader.Properties> properties = new HashMap<>();
+	/** The paths of the folders whose music has had its properties read. */
+	private final Set<String> prefetchedFolders = new HashSet<>();
+
+	/**
+	 * @param storage
+	 *            - the storage whose objects are indexed.
+	 */
+	public MTPObjectIndex(PortableDeviceStorageObject storage) {
+		this(storage, new AudioPropertyReader());
+	}
+
+	/**
+	 * @param storage
+	 *            - the storage whose objects are indexed.
+	 * @param propertyReader
+	 *            - reads the properties of the music on the storage.
+	 */
+	public MTPObjectIndex(PortableDeviceStorageObject storage, AudioPropertyReader propertyReader) {
+		this.storage = storage;
+		this.propertyReader = propertyReader;
+	}
+
+	public PortableDeviceStorageObject getStorage() {
+		return storage;
+	}
+
+	/**
+	 * Find the object at the given path.
+	 *
+	 * @param path
+	 *            - the path relative to the storage.
+	 * @return the object, or null if there is none (or the path is the storage
+	 *         itself).
+	 */
+	public synchronized PortableDeviceObject get(String path) {
+		path = normalize(path);
+		if (path.isEmpty()) {
+			return null;
+		}
+		final PortableDeviceObject object = objects.get(path);
+		if (object != null) {
+			return object;
+		}
+		// Unless the folder of the path has been listed, the object may still exist.
+		final String folderPath = parentOf(path);
+		if (childrenByFolder.containsKey(folderPath) || listFolder(folderPath) == null) {
+			return null;
+		}
+		return objects.get(path);
+	}
+
+	/**
+	 * Get the children of the folder at the given path. The folder is only
+	 * listed on the device the first time.
+	 *
+	 * @param folderPath
+	 *            - the path of the folder relative to the storage, or the empty
+	 *            string for the root of the storage.
+	 * @return the children by their path relative to the storage, or null if
+	 *         there is no such folder.
+	 */
+	public synchronized Map<String, PortableDeviceObject> getChildren(String folderPath) {
+		folderPath = normalize(folderPath);
+		Map<String, PortableDeviceObject> children = childrenByFolder.get(folderPath);
+		if (children == null) {
+			children = listFolder(folderPath);
+		}
+		return children == null ? null : new LinkedHashMap<>(children);
+	}
+
+	/**
+	 * Get the properties of the music at the given path. The first time, the
+	 * properties of all the music in its folder are read along with it, so that
+	 * comparing a folder of music costs a single read per piece of music.
+	 *
+	 * @param path
+	 *            - the path relative to the storage.
+	 * @return the properties, or null if there is no music at the path or its
+	 *         properties could not be read.
+	 */
+	public synchronized AudioPropertyReader.Properties getProperties(String path) {
+		path = normalize(path);
+		AudioPropertyReader.Properties musicProperties = properties.get(path);
+		if (musicProperties != null) {
+			return musicProperties;
+		}
+		final String folderPath = parentOf(path);
+		if (prefetchedFolders.add(folderPath)) {
+			final Map<String, PortableDeviceObject> children = getChildren(folderPath);
+			if (children != null) {
+				for (Map.Entry<String, PortableDeviceObject> child : children.entrySet()) {
+					readProperties(child.getKey(), child.getValue());
+				}
+			}
+			musicProperties = properties.get(path);
+		}
+		// Music created since its folder was read, or whose properties were forgotten.
+		return musicProperties != null ? musicProperties : readProperties(path, get(path));
+	}
+
+	/**
+	 * Forget the properties of the music at the given path, e.g. because they
+	 * were changed. They are read again the next time they are asked for.
+	 */
+	public synchronized void forgetProperties(String path) {
+		properties.remove(normalize(path));
+	}
+
+	/**
+	 * Find the folder at the given path, creating it and any missing folders
+	 * along the way.
+	 *
+	 * @param folderPath
+	 *            - the path of the folder relative to the storage.
+	 * @return the folder, or null if it could not be created (e.g. because a
+	 *         file is in the way) or the path is the storage itself.
+	 */
+	public synchronized PortableDeviceFolderObject getOrCreateFolder(String folderPath) {
+		folderPath = normalize(folderPath);
+		if (folderPath.isEmpty()) {
+			return null;
+		}
+		final PortableDeviceObject object = get(folderPath);
+		if (object != null) {
+			return object instanceof PortableDeviceFolderObject ? (PortableDeviceFolderObject) object : null;
+		}
+		final String parentPath = parentOf(folderPath);
+		final String name = folderPath.substring(folderPath.lastIndexOf(File.separatorChar) + 1);
+		final PortableDeviceFolderObject folder;
+		if (parentPath.isEmpty()) {
+			folder = storage.createFolderObject(name);
+		} else {
+			final PortableDeviceFolderObject parent = getOrCreateFolder(parentPath);
+			folder = parent == null ? null : parent.createFolderObject(name);
+		}
+		if (folder != null) {
+			put(folderPath, folder);
+			// A new folder is empty, so there is no need to list it.
+			childrenByFolder.put(folderPath, new LinkedHashMap<String, PortableDeviceObject>());
+		}
+		return folder;
+	}
+
+	/**
+	 * Note an object which was just created at the given path.
+	 */
+	public synchronized void put(String path, PortableDeviceObject object) {
+		path = normalize(path);
+		objects.put(path, object);
+		properties.remove(path);
+		final Map<String, PortableDeviceObject> siblings = childrenByFolder.get(parentOf(path));
+		if (siblings != null) {
+			siblings.put(path, object);
+		}
+	}
+
+	/**
+	 * Forget the object at the given path, which was just deleted, along with
+	 * everything in it if it is a folder.
+	 */
+	public synchronized void remove(String path) {
+		path = normalize(path);
+		objects.remove(path);
+		properties.remove(path);
+		prefetchedFolders.remove(path);
+		final Map<String, PortableDeviceObject> siblings = childrenByFolder.get(parentOf(path));
+		if (siblings != null) {
+			siblings.remove(path);
+		}
+		final Map<String, PortableDeviceObject> children = childrenByFolder.remove(path);
+		if (children != null) {
+			for (String childPath : new ArrayList<>(children.keySet())) {
+				remove(childPath);
+			}
+		}
+	}
+
+	/**
+	 * List a folder on the device and remember all of its children.
+	 *
+	 * @return the children by their path, or null if there is no such folder.
+	 */
+	private Map<String, PortableDeviceObject> listFolder(String folderPath) {
+		final PortableDeviceObject[] childObjects;
+		if (folderPath.isEmpty()) {
+			childObjects = storage.getChildObjects();
+		} else {
+			final PortableDeviceObject folder = get(folderPath);
+			if (!(folder instanceof PortableDeviceFolderObject)) {
+				return null;
+			}
+			childObjects = ((PortableDeviceFolderObject) folder).getChildObjects();
+		}
+		final Map<String, PortableDeviceObject> children = new LinkedHashMap<>();
+		for (PortableDeviceObject child : childObjects) {
+			final String childPath = folderPath.isEmpty() ? child.getOriginalFileName()
+					: folderPath + File.separatorChar + child.getOriginalFileName();
+			children.put(childPath, child);
+			objects.put(childPath, child);
+		}
+		childrenByFolder.put(folderPath, children);
+		return children;
+	}
+
+	/**
+	 * Read and remember the properties of an object if it is music.
+	 *
+	 * @return the properties, or null if the object is not music or its
+	 *         properties could not be read.
+	 */
+	private AudioPropertyReader.Properties readProperties(String path, PortableDeviceObject object) {
+		if (!(object instanceof PortableDeviceAudioObject)) {
+			return null;
+		}
+		try {
+			final AudioPropertyReader.Properties musicProperties = propertyReader
+					.read((PortableDeviceAudioObject) object);
+			properties.put(path, musicProperties);
+			return musicProperties;
+		} catch (COMException e) {
+			System.err.println("FATAL: Could not read the properties of " + path + " from the device.");
+			return null;
+		}
+	}
+
+	/**
+	 * @return the path without leading or trailing separators.
+	 */
+	private static String normalize(String path) {
+		int start = 0;
+		int end = path.length();
+		while (start < end && path.charAt(start) == File.separatorChar) {
+			start++;
+		}
+		while (end > start && path.charAt(end - 1) == File.separatorChar) {
+			end--;
+		}
+		return path.substring(start, end);
+	}
+
+	/**
+	 * @return the path of the folder of the given path, or the empty string if
+	 *         it is in the root of the storage.
+	 */
+	private static String parentOf(String path) {
+		final int index = path.lastIndexOf(File.separatorChar);
+		return index < 0 ? "" : path.substring(0, index);
+	}
+}
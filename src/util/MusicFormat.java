@@ -0,0 +1,63 @@
+package util;
+
+import java.util.Locale;
+
+/**
+ * The formats of music that are synced, by their file extension. Any other
+ * file is not music and is left alone. Each format tells how far its music can
+ * be compared and patched; what cannot be patched is copied again instead.
+ *
+ * @author Aram
+ */
+public enum MusicFormat {
+	MP3(true, true),
+	// TODO jmtp does not seem to support m4a files even though they have WPD information.
+	M4A(false, true),
+	FLAC(false, true),
+	OGG(false, true),
+	/** jaudiotagger reads Ogg Vorbis, but not Opus, so the tags of Opus music cannot be written. */
+	OPUS(false, false);
+
+	private final boolean isComparedOnDevices;
+	private final boolean isTagWritable;
+
+	private MusicFormat(boolean isComparedOnDevices, boolean isTagWritable) {
+		this.isComparedOnDevices = isComparedOnDevices;
+		this.isTagWritable = isTagWritable;
+	}
+
+	/**
+	 * @return true if the tags of the music can be compared when it is on an
+	 *         MTP device. Otherwise, they are only compared between folders on
+	 *         the PC.
+	 */
+	public boolean isComparedOnDevices() {
+		return isComparedOnDevices;
+	}
+
+	/**
+	 * @return true if changed tags can be written to the music; false if it has
+	 *         to be copied again instead.
+	 */
+	public boolean isTagWritable() {
+		return isTagWritable;
+	}
+
+	/**
+	 * Find the format of a file by its extension, regardless of its case.
+	 *
+	 * @param fileName
+	 *            - the name of the file.
+	 * @return the format, or null if the file is not music.
+	 */
+	public static MusicFormat of(String fileName) {
+		// If there is no extension, lastIndexOf defaults to -1.
+		final String strExt = fileName.substring(fileName.lastIndexOf(".") + 1).toUpperCase(Locale.ROOT);
+		for (MusicFormat format : values()) {
+			if (format.name().equals(strExt)) {
+				return format;
+			}
+		}
+		return null;
+	}
+}
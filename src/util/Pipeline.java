@@ -0,0 +1,145 @@
+package util;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A two-stage pipeline: a pool of workers processes the inputs in parallel and
+ * hands the outputs through a bounded queue to a single sink, which runs on the
+ * calling thread. This way, the slow reading can be done in parallel while
+ * everything that changes files (or the UI) is still done by one thread.
+ * <p>
+ * Outputs reach the sink in the order they were completed, not in the order of
+ * the inputs.
+ *
+ * @author Aram
+ */
+public class Pipeline<I, O> {
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+	private final int workers;
+	private final int queueCapacity;
+	private volatile boolean isStopped;
+
+	/**
+	 * The first stage, which is run by the workers.
+	 */
+	public interface Stage<I, O> {
+		O process(I input) throws InterruptedException;
+	}
+
+	/**
+	 * The second stage, which is run on the calling thread.
+	 */
+	public interface Sink<O> {
+		void accept(O output) throws InterruptedException;
+	}
+
+	/**
+	 * @param workers
+	 *            - the amount of workers. If it is 1 or less, then both stages
+	 *            are run one input at a time on the calling thread. This is
+	 *            needed for MTP devices which can only be used by one thread.
+	 * @param queueCapacity
+	 *            - how many outputs may wait for the sink before the workers
+	 *            have to wait as well.
+	 */
+	public Pipeline(int workers, int queueCapacity) {
+		this.workers = workers;
+		this.queueCapacity = Math.max(1, queueCapacity);
+	}
+
+	/**
+	 * Run every input through the pipeline.
+	 *
+	 * @throws InterruptedException
+	 *             if the calling thread was interrupted or a worker was
+	 *             interrupted while processing an input. Any other exception or
+	 *             error thrown by a worker is thrown on the calling thread as
+	 *             well.
+	 */
+	public void run(final List<I> inputs, final Stage<I, O> stage, Sink<O> sink) throws InterruptedException {
+		if (workers <= 1) {
+			for (I input : inputs) {
+				if (Thread.currentThread().isInterrupted()) {
+					throw new InterruptedException();
+				}
+				sink.accept(stage.process(input));
+			}
+			return;
+		}
+		final BlockingQueue<Result<O>> queue = new ArrayBlockingQueue<>(queueCapacity);
+		final AtomicInteger nextInput = new AtomicInteger();
+		final ExecutorService pool = Executors.newFixedThreadPool(workers);
+		isStopped = false;
+		try {
+			for (int i = 0; i < workers; i++) {
+				pool.execute(new Runnable() {
+					@Override
+					public void run() {
+						int index;
+						while (!isStopped && (index = nextInput.getAndIncrement()) < inputs.size()) {
+							Result<O> result;
+							try {
+								result = new Result<O>(stage.process(inputs.get(index)), null);
+							} catch (Throwable e) {
+								// Even an Error has to reach the sink, which would otherwise wait for
+								// this result forever.
+								result = new Result<O>(null, e);
+							}
+							if (isStopped) {
+								return;
+							}
+							try {
+								queue.put(result);
+							} catch (InterruptedException e) {
+								return; // The pipeline was stopped.
+							}
+							if (result.error != null) {
+								return;
+							}
+						}
+					}
+				});
+			}
+			for (int i = 0; i < inputs.size(); i++) {
+				final Result<O> result = queue.take();
+				if (result.error instanceof InterruptedException) {
+					throw (InterruptedException) result.error;
+				} else if (result.error instanceof Error) {
+					throw (Error) result.error;
+				} else if (result.error != null) {
+					throw (RuntimeException) result.error;
+				}
+				sink.accept(result.output);
+			}
+		} finally {
+			// Stop the workers before they are interrupted so that none of them
+			// blocks on the queue after the sink has stopped taking from it.
+			isStopped = true;
+			pool.shutdownNow();
+			final boolean wasInterrupted = Thread.interrupted();
+			try {
+				pool.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			} finally {
+				if (wasInterrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	private static class Result<O> {
+		final O output;
+		final Throwable error;
+
+		Result(O output, Throwable error) {
+			this.output = output;
+			this.error = error;
+		}
+	}
+}
@@ -0,0 +1,302 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import data.FileState;
+import data.Fingerprint;
+
+/**
+ * A read-only view of the last session file. The file is memory-mapped and
+ * never parsed as a whole; a lookup is a binary search directly on the mapped
+ * bytes.
+ * <p>
+ * Layout (big endian):
+ * <ul>
+ * <li>Header: magic "MLSI", version and the amount of entries (3 ints).</li>
+ * <li>Entries sorted by name: offset and length of the name in the string
+ * pool, size, last modified date, tag hash, audio hash and flags.</li>
+ * <li>String pool: every name encoded as UTF-8.</li>
+ * </ul>
+ * Names are sorted by their unsigned UTF-8 bytes so that a lookup can compare
+ * bytes without decoding any strings.
+ *
+ * @author Aram
+ */
+public class SessionIndex implements Closeable {
+	public static final int HEADER_SIZE = 12;
+	private static final int MAGIC = 0x4D4C5349; // "MLSI"
+	private static final int VERSION = 1;
+	private static final int ENTRY_SIZE = 36;
+	private static final int FLAG_FINGERPRINT_KNOWN = 1;
+	public static final SessionIndex EMPTY = new SessionIndex(null, 0);
+	private MappedByteBuffer buffer;
+	private final int size;
+	private final int stringPoolOffset;
+
+	private SessionIndex(MappedByteBuffer buffer, int size) {
+		this.buffer = buffer;
+		this.size = size;
+		this.stringPoolOffset = HEADER_SIZE + size * ENTRY_SIZE;
+	}
+
+	/**
+	 * Map the session file at the given path.
+	 *
+	 * @param path
+	 *            - the session file.
+	 * @return the index. If the file is empty, corrupt or not a session file
+	 *         (e.g. one from an older version), then an empty index is
+	 *         returned.
+	 * @throws IOException
+	 *             if the file could not be mapped.
+	 */
+	public static SessionIndex load(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				return EMPTY;
+			}
+			// The mapping stays valid after the channel is closed.
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			final int size = buffer.getInt(8);
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || size < 0
+					|| HEADER_SIZE + (long) size * ENTRY_SIZE > channel.size() || !areNamesInside(buffer, size)) {
+				unmap(buffer);
+				return EMPTY;
+			}
+			return new SessionIndex(buffer, size);
+		}
+	}
+
+	/**
+	 * Check that the name of every entry lies within the string pool, so that a
+	 * truncated or otherwise corrupt file is never read beyond its end.
+	 */
+	private static boolean areNamesInside(MappedByteBuffer buffer, int size) {
+		final long stringPoolOffset = HEADER_SIZE + (long) size * ENTRY_SIZE;
+		for (int entry = 0; entry < size; entry++) {
+			final int entryOffset = HEADER_SIZE + entry * ENTRY_SIZE;
+			final int nameOffset = buffer.getInt(entryOffset);
+			final int nameLength = buffer.getInt(entryOffset + 4);
+			if (nameOffset < 0 || nameLength < 0 || stringPoolOffset + nameOffset + nameLength > buffer.capacity()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the amount of files in the session.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Look up the state a file had in the session.
+	 *
+	 * @param name
+	 *            - the name (or relative path) of the file.
+	 * @return the state of the file, or null if the file was not part of the
+	 *         session.
+	 */
+	public FileState find(String name) {
+		final byte[] key = name.getBytes(StandardCharsets.UTF_8);
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final int comparison = compareName(middle, key);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return readState(middle);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Release the mapping. The index cannot be used afterwards. On Windows, a
+	 * mapped file cannot be replaced, so this has to be done before the session
+	 * file is written again.
+	 */
+	@Override
+	public void close() {
+		if (buffer != null) {
+			unmap(buffer);
+			buffer = null;
+		}
+	}
+
+	private int compareName(int entry, byte[] key) {
+		final int entryOffset = HEADER_SIZE + entry * ENTRY_SIZE;
+		final int nameOffset = stringPoolOffset + buffer.getInt(entryOffset);
+		final int nameLength = buffer.getInt(entryOffset + 4);
+		final int length = Math.min(nameLength, key.length);
+		for (int i = 0; i < length; i++) {
+			final int comparison = (buffer.get(nameOffset + i) & 0xFF) - (key[i] & 0xFF);
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+		return nameLength - key.length;
+	}
+
+	private FileState readState(int entry) {
+		final int entryOffset = HEADER_SIZE + entry * ENTRY_SIZE;
+		final Fingerprint fingerprint = (buffer.getInt(entryOffset + 32) & FLAG_FINGERPRINT_KNOWN) != 0
+				? new Fingerprint(buffer.getInt(entryOffset + 24), buffer.getInt(entryOffset + 28))
+				: Fingerprint.UNKNOWN;
+		return new FileState(buffer.getLong(entryOffset + 8), buffer.getLong(entryOffset + 16), fingerprint);
+	}
+
+	/**
+	 * Unmap a buffer right away instead of waiting for the garbage collector.
+	 * Java offers no public API for this, so we have to use the internal cleaner.
+	 * If that fails, the mapping is simply released later.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		try {
+			// Java 9 and later
+			final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+		} catch (NoSuchMethodException e) {
+			// Java 8
+			try {
+				final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				final Object cleaner = cleanerMethod.invoke(buffer);
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			} catch (ReflectiveOperationException | RuntimeException ignore) {
+			}
+		} catch (ReflectiveOperationException | RuntimeException ignore) {
+		}
+	}
+
+	/**
+	 * Collects the entries of a new session and writes them as a session file.
+	 */
+	public static class Writer {
+		private final List<Entry> entries = new ArrayList<>();
+
+		/**
+		 * Add a file to the session.
+		 *
+		 * @param name
+		 *            - the name (or relative path) of the file.
+		 * @param fileState
+		 *            - the current state of the file.
+		 */
+		public void add(String name, FileState fileState) {
+			entries.add(new Entry(name.getBytes(StandardCharsets.UTF_8), fileState));
+		}
+
+		/**
+		 * Remove files from the session.
+		 *
+		 * @param names
+		 *            - the names (or relative paths) of the files.
+		 */
+		public void removeAll(Collection<String> names) {
+			final Set<String> removedNames = new HashSet<>(names);
+			for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext();) {
+				if (removedNames.contains(new String(iterator.next().name, StandardCharsets.UTF_8))) {
+					iterator.remove();
+				}
+			}
+		}
+
+		/**
+		 * Write the session to the given path. The session is written to a
+		 * temporary file first which then replaces the old session file, so a sync
+		 * that is stopped midway never leaves a half-written session behind.
+		 *
+		 * @param path
+		 *            - the session file.
+		 * @throws IOException
+		 *             if the session could not be written.
+		 */
+		public void write(Path path) throws IOException {
+			Collections.sort(entries, Entry.NAME_ORDER);
+			int stringPoolSize = 0;
+			for (Entry entry : entries) {
+				stringPoolSize += entry.name.length;
+			}
+			final ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + entries.size() * ENTRY_SIZE + stringPoolSize);
+			out.putInt(MAGIC).putInt(VERSION).putInt(entries.size());
+			int nameOffset = 0;
+			for (Entry entry : entries) {
+				final Fingerprint fingerprint = entry.fileState.getFingerprint();
+				out.putInt(nameOffset).putInt(entry.name.length);
+				out.putLong(entry.fileState.getSize()).putLong(entry.fileState.getLastModified());
+				out.putInt(fingerprint.getTagHash()).putInt(fingerprint.getAudioHash());
+				out.putInt(fingerprint.isKnown() ? FLAG_FINGERPRINT_KNOWN : 0);
+				nameOffset += entry.name.length;
+			}
+			for (Entry entry : entries) {
+				out.put(entry.name);
+			}
+			out.flip();
+			final Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+			try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				while (out.hasRemaining()) {
+					channel.write(out);
+				}
+				channel.force(true);
+			}
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+
+		private static class Entry {
+			static final Comparator<Entry> NAME_ORDER = new Comparator<Entry>() {
+				@Override
+				public int compare(Entry entry1, Entry entry2) {
+					final int length = Math.min(entry1.name.length, entry2.name.length);
+					for (int i = 0; i < length; i++) {
+						final int comparison = (entry1.name[i] & 0xFF) - (entry2.name[i] & 0xFF);
+						if (comparison != 0) {
+							return comparison;
+						}
+					}
+					return entry1.name.length - entry2.name.length;
+				}
+			};
+			final byte[] name;
+			final FileState fileState;
+
+			Entry(byte[] name, FileState fileState) {
+				this.name = name;
+				this.fileState = fileState;
+			}
+		}
+	}
+}
@@ -0,0 +1,377 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.jaudiotagger.tag.FieldKey;
+
+import data.DataClass;
+import data.DestinationSnapshot;
+import data.Fingerprint;
+
+/**
+ * Remembers the metadata of the music in src between sync sessions: the
+ * compared tags, the duration, the artwork digest and the fingerprint, keyed
+ * by the absolute path of the music. An entry is only valid as long as the
+ * size and last modified date of the music are the same as when it was
+ * stored, so the music only has to be read again once it has changed.
+ * <p>
+ * Tag values repeat a lot (the same artist, album and genre on every song of
+ * an album), so every value is stored once in a dictionary and the entries
+ * refer to it by index. This keeps the store small in memory and on disk even
+ * for very large libraries.
+ * <p>
+ * Values are filled in one at a time as they are read from the music, so an
+ * entry may know some values and not others. The store is shared by every src
+ * folder, so entries which were neither used nor kept (see
+ * {@link #keep(String)}) during a session are only dropped when the store is
+ * saved if their music no longer exists.
+ * <p>
+ * The store may be read and changed by several threads at once.
+ *
+ * @author Aram
+ */
+public class SourceMetadataStore {
+	private static final int MAGIC = 0x4D4C534D; // "MLSM"
+	private static final int VERSION = 2;
+	private static final int UNKNOWN = -1;
+	/** writeUTF cannot write more than 65535 bytes, which a value of this length never exceeds. */
+	private static final int MAX_VALUE_LENGTH = 65535 / 3;
+	private final List<FieldKey> fieldKeys;
+	private final Map<String, Entry> entries = new HashMap<>();
+	private final List<String> dictionary = new ArrayList<>();
+	private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+
+	/**
+	 * Create an empty store.
+	 *
+	 * @param fieldKeys
+	 *            - the compared field keys. Only these tags are stored.
+	 */
+	public SourceMetadataStore(List<FieldKey> fieldKeys) {
+		this.fieldKeys = fieldKeys;
+	}
+
+	/**
+	 * Replace the contents of the store with the store saved at the given path.
+	 * If there is no store, or it was saved with other field keys, then the
+	 * store is left empty.
+	 *
+	 * @param path
+	 *            - the file of the store.
+	 * @throws IOException
+	 *             if the file could not be read.
+	 */
+	public synchronized void load(Path path) throws IOException {
+		entries.clear();
+		dictionary.clear();
+		dictionaryIndex.clear();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != fieldKeys.size()) {
+				return;
+			}
+			for (FieldKey fieldKey : fieldKeys) {
+				if (!in.readUTF().equals(fieldKey.name())) {
+					return;
+				}
+			}
+			final int dictionarySize = in.readInt();
+			for (int i = 0; i < dictionarySize; i++) {
+				indexOf(in.readUTF());
+			}
+			final int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				final String pathInSrc = in.readUTF();
+				final Entry entry = new Entry(in.readLong(), in.readLong(), fieldKeys.size());
+				entry.duration = readIndex(in, dictionarySize);
+				for (int j = 0; j < entry.tagValues.length; j++) {
+					entry.tagValues[j] = readIndex(in, dictionarySize);
+				}
+				entry.artworkDigest = in.readLong();
+				entry.fingerprint = in.readBoolean() ? new Fingerprint(in.readInt(), in.readInt()) : Fingerprint.UNKNOWN;
+				entries.put(pathInSrc, entry);
+			}
+		} catch (NoSuchFileException | EOFException e) {
+			// No store yet, or it was cut short. Whatever was read is still valid.
+		}
+	}
+
+	/**
+	 * @return the stored value of the tag, or null if it is not known.
+	 */
+	public synchronized String getTagData(String pathInSrc, long size, long lastModified, FieldKey fieldKey) {
+		final Entry entry = getEntry(pathInSrc, size, lastModified);
+		final int index = fieldKeys.indexOf(fieldKey);
+		return entry == null || index < 0 ? null : valueOf(entry.tagValues[index]);
+	}
+
+	public synchronized void putTagData(String pathInSrc, long size, long lastModified, FieldKey fieldKey,
+			String value) {
+		final int index = fieldKeys.indexOf(fieldKey);
+		if (index >= 0) {
+			putEntry(pathInSrc, size, lastModified).tagValues[index] = indexOf(value);
+		}
+	}
+
+	/**
+	 * Look up all the given tags at once.
+	 * 
+	 * @return the stored values of the tags in the order of the field keys, or
+	 *         null if any of them is not known.
+	 */
+	public synchronized String[] getTagValues(String pathInSrc, long size, long lastModified,
+			List<FieldKey> fieldKeysToGet) {
+		final Entry entry = getEntry(pathInSrc, size, lastModified);
+		if (entry == null) {
+			return null;
+		}
+		final String[] values = new String[fieldKeysToGet.size()];
+		for (int i = 0; i < values.length; i++) {
+			final int index = fieldKeys.indexOf(fieldKeysToGet.get(i));
+			values[i] = index < 0 ? null : valueOf(entry.tagValues[index]);
+			if (values[i] == null) {
+				return null;
+			}
+		}
+		return values;
+	}
+
+	public synchronized void putTagValues(String pathInSrc, long size, long lastModified,
+			List<FieldKey> fieldKeysToPut, String[] values) {
+		final Entry entry = putEntry(pathInSrc, size, lastModified);
+		for (int i = 0; i < values.length; i++) {
+			final int index = fieldKeys.indexOf(fieldKeysToPut.get(i));
+			if (index >= 0) {
+				entry.tagValues[index] = indexOf(values[i]);
+			}
+		}
+	}
+
+	/**
+	 * @return the stored duration, or null if it is not known.
+	 */
+	public synchronized String getDuration(String pathInSrc, long size, long lastModified) {
+		final Entry entry = getEntry(pathInSrc, size, lastModified);
+		return entry == null ? null : valueOf(entry.duration);
+	}
+
+	public synchronized void putDuration(String pathInSrc, long size, long lastModified, String duration) {
+		putEntry(pathInSrc, size, lastModified).duration = indexOf(duration);
+	}
+
+	/**
+	 * @return the stored artwork digest, or
+	 *         {@link DestinationSnapshot#UNKNOWN_ARTWORK} if it is not known.
+	 */
+	public synchronized long getArtworkDigest(String pathInSrc, long size, long lastModified) {
+		final Entry entry = getEntry(pathInSrc, size, lastModified);
+		return entry == null ? DestinationSnapshot.UNKNOWN_ARTWORK : entry.artworkDigest;
+	}
+
+	public synchronized void putArtworkDigest(String pathInSrc, long size, long lastModified, long artworkDigest) {
+		putEntry(pathInSrc, size, lastModified).artworkDigest = artworkDigest;
+	}
+
+	/**
+	 * @return the stored fingerprint, or {@link Fingerprint#UNKNOWN} if it is
+	 *         not known.
+	 */
+	public synchronized Fingerprint getFingerprint(String pathInSrc, long size, long lastModified) {
+		final Entry entry = getEntry(pathInSrc, size, lastModified);
+		return entry == null ? Fingerprint.UNKNOWN : entry.fingerprint;
+	}
+
+	public synchronized void putFingerprint(String pathInSrc, long size, long lastModified, Fingerprint fingerprint) {
+		putEntry(pathInSrc, size, lastModified).fingerprint = fingerprint;
+	}
+
+	/**
+	 * Keep the entry of music which is still in src when the store is saved,
+	 * even if none of its values were needed during this session.
+	 *
+	 * @param pathInSrc
+	 *            - the absolute path of the music.
+	 */
+	public synchronized void keep(String pathInSrc) {
+		final Entry entry = entries.get(pathInSrc);
+		if (entry != null) {
+			entry.isUsed = true;
+		}
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Save the store to the given path. It is written to a temporary file first
+	 * which then replaces the old one. Entries which were neither used nor kept
+	 * since the store was loaded are dropped if their music no longer exists,
+	 * and so are the values no entry refers to.
+	 *
+	 * @param path
+	 *            - the file of the store.
+	 * @throws IOException
+	 *             if the store could not be written.
+	 */
+	public synchronized void save(Path path) throws IOException {
+		// Only the music of other src folders is looked for, since the music of
+		// this one was used or kept.
+		final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			final Map.Entry<String, Entry> mapEntry = iterator.next();
+			if (!mapEntry.getValue().isUsed && !Files.exists(Paths.get(mapEntry.getKey()))) {
+				iterator.remove();
+			}
+		}
+		// Number the values in use anew, so that unused values are not written.
+		final int[] newIndex = new int[dictionary.size()];
+		Arrays.fill(newIndex, UNKNOWN);
+		final List<String> usedValues = new ArrayList<>();
+		for (Entry entry : entries.values()) {
+			entry.duration = renumber(entry.duration, newIndex, usedValues);
+			for (int i = 0; i < entry.tagValues.length; i++) {
+				entry.tagValues[i] = renumber(entry.tagValues[i], newIndex, usedValues);
+			}
+		}
+		dictionary.clear();
+		dictionaryIndex.clear();
+		for (String value : usedValues) {
+			indexOf(value);
+		}
+		final Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(fieldKeys.size());
+			for (FieldKey fieldKey : fieldKeys) {
+				out.writeUTF(fieldKey.name());
+			}
+			out.writeInt(dictionary.size());
+			for (String value : dictionary) {
+				out.writeUTF(value);
+			}
+			out.writeInt(entries.size());
+			for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+				final Entry entry = mapEntry.getValue();
+				out.writeUTF(mapEntry.getKey());
+				out.writeLong(entry.size);
+				out.writeLong(entry.lastModified);
+				out.writeInt(entry.duration);
+				for (int tagValue : entry.tagValues) {
+					out.writeInt(tagValue);
+				}
+				out.writeLong(entry.artworkDigest);
+				out.writeBoolean(entry.fingerprint.isKnown());
+				if (entry.fingerprint.isKnown()) {
+					out.writeInt(entry.fingerprint.getTagHash());
+					out.writeInt(entry.fingerprint.getAudioHash());
+				}
+			}
+		}
+		Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return the entry of the music if it has not changed since it was stored;
+	 *         null otherwise.
+	 */
+	private Entry getEntry(String pathInSrc, long size, long lastModified) {
+		final Entry entry = entries.get(pathInSrc);
+		if (entry == null || entry.size != size || entry.lastModified != lastModified) {
+			return null;
+		}
+		entry.isUsed = true;
+		return entry;
+	}
+
+	/**
+	 * @return the entry of the music. If there is none, or the music has changed
+	 *         since it was stored, then a new entry is created.
+	 */
+	private Entry putEntry(String pathInSrc, long size, long lastModified) {
+		Entry entry = getEntry(pathInSrc, size, lastModified);
+		if (entry == null) {
+			entry = new Entry(size, lastModified, fieldKeys.size());
+			entry.isUsed = true;
+			entries.put(pathInSrc, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * @return the index of the value in the dictionary, which it is added to if
+	 *         necessary. Values which cannot be stored are unknown.
+	 */
+	private int indexOf(String value) {
+		if (value == null || value.equals(DataClass.ERROR_STRING) || value.length() > MAX_VALUE_LENGTH) {
+			return UNKNOWN;
+		}
+		Integer index = dictionaryIndex.get(value);
+		if (index == null) {
+			index = dictionary.size();
+			dictionary.add(value);
+			dictionaryIndex.put(value, index);
+		}
+		return index;
+	}
+
+	private String valueOf(int index) {
+		return index == UNKNOWN ? null : dictionary.get(index);
+	}
+
+	private int renumber(int index, int[] newIndex, List<String> usedValues) {
+		if (index == UNKNOWN) {
+			return UNKNOWN;
+		}
+		if (newIndex[index] == UNKNOWN) {
+			newIndex[index] = usedValues.size();
+			usedValues.add(dictionary.get(index));
+		}
+		return newIndex[index];
+	}
+
+	private static int readIndex(DataInputStream in, int dictionarySize) throws IOException {
+		final int index = in.readInt();
+		if (index < UNKNOWN || index >= dictionarySize) {
+			throw new IOException("The metadata store refers to a value which it does not have.");
+		}
+		return index;
+	}
+
+	/**
+	 * What is known about a single music file. Tag values and the duration are
+	 * indices into the dictionary.
+	 */
+	private static class Entry {
+		private final long size;
+		private final long lastModified;
+		private int duration = UNKNOWN;
+		private final int[] tagValues;
+		private long artworkDigest = DestinationSnapshot.UNKNOWN_ARTWORK;
+		private Fingerprint fingerprint = Fingerprint.UNKNOWN;
+		private boolean isUsed = false;
+
+		Entry(long size, long lastModified, int tagCount) {
+			this.size = size;
+			this.lastModified = lastModified;
+			tagValues = new int[tagCount];
+			Arrays.fill(tagValues, UNKNOWN);
+		}
+	}
+}
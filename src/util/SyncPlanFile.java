@@ -0,0 +1,174 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jaudiotagger.tag.FieldKey;
+
+import data.DestinationSnapshot;
+import data.FileState;
+import data.Fingerprint;
+import data.SyncPlan;
+import data.TagPatch;
+
+/**
+ * Saves and loads a {@link SyncPlan}, so that a plan can be applied in another
+ * session than the one it was made in.
+ * <p>
+ * Layout: magic "MLSP", version, the src and dst folders, the compared field
+ * keys, then the deletes, the adds, the patches and the session, each as a
+ * count followed by the entries. A patch is its relative path, its tag changes
+ * (field key and value), its artwork action and the snapshot of the music once
+ * the patch is applied. A session entry is a relative path, the size and last
+ * modified date and, if known, the fingerprint.
+ *
+ * @author Aram
+ */
+public class SyncPlanFile {
+	private static final int MAGIC = 0x4D4C5350; // "MLSP"
+	private static final int VERSION = 5;
+
+	/**
+	 * Save the plan to the given path. The plan is written to a temporary file
+	 * first which then replaces the old plan, if any.
+	 *
+	 * @param plan
+	 *            - the plan to save.
+	 * @param path
+	 *            - the file to save the plan in.
+	 * @param fieldKeys
+	 *            - the compared field keys. The tag values of every snapshot are
+	 *            in this order.
+	 * @throws IOException
+	 *             if the plan could not be written.
+	 */
+	public static void save(SyncPlan plan, Path path, List<FieldKey> fieldKeys) throws IOException {
+		final Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(plan.getSrcRoot());
+			out.writeUTF(plan.getDstRoot());
+			out.writeInt(fieldKeys.size());
+			for (FieldKey fieldKey : fieldKeys) {
+				out.writeUTF(fieldKey.name());
+			}
+			writePaths(out, plan.getDeletes());
+			writePaths(out, plan.getAdds());
+			out.writeInt(plan.getPatches().size());
+			for (SyncPlan.FilePatch filePatch : plan.getPatches()) {
+				final TagPatch patch = filePatch.getPatch();
+				out.writeUTF(filePatch.getRelativePath());
+				out.writeInt(patch.getTagChanges().size());
+				for (Map.Entry<FieldKey, String> tagChange : patch.getTagChanges().entrySet()) {
+					out.writeUTF(tagChange.getKey().name());
+					out.writeUTF(tagChange.getValue());
+				}
+				out.writeUTF(patch.getArtworkAction().name());
+				final DestinationSnapshot result = filePatch.getResult();
+				DestinationSnapshotStore.writeValue(out, result.getDuration());
+				for (int i = 0; i < result.getTagCount(); i++) {
+					DestinationSnapshotStore.writeValue(out, result.getTagValue(i));
+				}
+				out.writeLong(result.getArtworkDigest());
+			}
+			out.writeInt(plan.getSession().size());
+			for (Map.Entry<String, FileState> sessionEntry : plan.getSession().entrySet()) {
+				final FileState fileState = sessionEntry.getValue();
+				out.writeUTF(sessionEntry.getKey());
+				out.writeLong(fileState.getSize());
+				out.writeLong(fileState.getLastModified());
+				out.writeBoolean(fileState.getFingerprint().isKnown());
+				if (fileState.getFingerprint().isKnown()) {
+					out.writeInt(fileState.getFingerprint().getTagHash());
+					out.writeInt(fileState.getFingerprint().getAudioHash());
+				}
+			}
+		}
+		Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Load a plan saved by {@link #save}.
+	 *
+	 * @param path
+	 *            - the file the plan was saved in.
+	 * @param fieldKeys
+	 *            - the field keys compared now.
+	 * @return the plan.
+	 * @throws IOException
+	 *             if the file could not be read, is not a plan or the plan was
+	 *             made with other field keys.
+	 */
+	public static SyncPlan load(Path path, List<FieldKey> fieldKeys) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException(path + " is not a sync plan of this version.");
+			}
+			final String srcRoot = in.readUTF();
+			final String dstRoot = in.readUTF();
+			boolean hasSameFieldKeys = in.readInt() == fieldKeys.size();
+			for (int i = 0; hasSameFieldKeys && i < fieldKeys.size(); i++) {
+				hasSameFieldKeys = in.readUTF().equals(fieldKeys.get(i).name());
+			}
+			if (!hasSameFieldKeys) {
+				throw new IOException(path + " was planned with other tags than the ones compared now.");
+			}
+			final SyncPlan plan = new SyncPlan(srcRoot, dstRoot);
+			final int deletes = in.readInt();
+			for (int i = 0; i < deletes; i++) {
+				plan.addDelete(in.readUTF());
+			}
+			final int adds = in.readInt();
+			for (int i = 0; i < adds; i++) {
+				plan.addAdd(in.readUTF());
+			}
+			final int patches = in.readInt();
+			for (int i = 0; i < patches; i++) {
+				final String relativePath = in.readUTF();
+				final EnumMap<FieldKey, String> tagChanges = new EnumMap<>(FieldKey.class);
+				final int changes = in.readInt();
+				for (int j = 0; j < changes; j++) {
+					tagChanges.put(FieldKey.valueOf(in.readUTF()), in.readUTF());
+				}
+				final TagPatch.ArtworkAction artworkAction = TagPatch.ArtworkAction.valueOf(in.readUTF());
+				final String duration = DestinationSnapshotStore.readValue(in);
+				final String[] tagValues = new String[fieldKeys.size()];
+				for (int j = 0; j < tagValues.length; j++) {
+					tagValues[j] = DestinationSnapshotStore.readValue(in);
+				}
+				final long artworkDigest = in.readLong();
+				plan.addPatch(new SyncPlan.FilePatch(relativePath, TagPatch.tagChanges(tagChanges, artworkAction),
+						new DestinationSnapshot(-1, 0, duration, tagValues, artworkDigest)));
+			}
+			final int sessionEntries = in.readInt();
+			for (int i = 0; i < sessionEntries; i++) {
+				final String relativePath = in.readUTF();
+				final long size = in.readLong();
+				final long lastModified = in.readLong();
+				final Fingerprint fingerprint = in.readBoolean() ? new Fingerprint(in.readInt(), in.readInt())
+						: Fingerprint.UNKNOWN;
+				plan.addSessionEntry(relativePath, new FileState(size, lastModified, fingerprint));
+			}
+			return plan;
+		} catch (IllegalArgumentException e) {
+			throw new IOException(path + " contains an unknown tag or artwork action.", e);
+		}
+	}
+
+	private static void writePaths(DataOutputStream out, List<String> relativePaths) throws IOException {
+		out.writeInt(relativePaths.size());
+		for (String relativePath : relativePaths) {
+			out.writeUTF(relativePath);
+		}
+	}
+}
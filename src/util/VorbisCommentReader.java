@@ -0,0 +1,578 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jaudiotagger.tag.FieldKey;
+
+import data.DestinationSnapshot;
+
+/**
+ * Reads the Vorbis comments of a FLAC, Ogg Vorbis or Opus file straight from
+ * the metadata at its start: the metadata blocks of a FLAC file and the header
+ * packets of an Ogg stream. The audio is never read; the duration follows from
+ * the STREAMINFO block of a FLAC file and from the granule position of the
+ * last page of an Ogg stream, which is found by reading only the end of the
+ * file.
+ * <p>
+ * Files this reader does not understand are not read at all, so the caller
+ * can fall back to jaudiotagger (which does not read Opus files though).
+ *
+ * @author Aram
+ */
+public class VorbisCommentReader {
+	/** The comment header of an Ogg stream holding more than this is left to jaudiotagger. */
+	private static final int MAX_COMMENT_SIZE = 16 * 1024 * 1024;
+	/** The MIME type and description in front of the image data should be far less than this. */
+	private static final int MAX_PICTURE_HEADER_SIZE = 1024;
+	/** The identification header of an Ogg stream is only a few dozen bytes. */
+	private static final int MAX_IDENTIFICATION_SIZE = 1024;
+	/** How much of the end of an Ogg stream is searched for its last page. */
+	private static final int LAST_PAGE_SEARCH_SIZE = 64 * 1024;
+	private static final int ID3V2_HEADER_SIZE = 10;
+	private static final int FLAC_BLOCK_HEADER_SIZE = 4;
+	private static final int FLAC_LAST_BLOCK = 0x80;
+	private static final int FLAC_STREAMINFO = 0;
+	private static final int FLAC_VORBIS_COMMENT = 4;
+	private static final int FLAC_PICTURE = 6;
+	private static final int OGG_PAGE_HEADER_SIZE = 27;
+	private static final int OPUS_SAMPLE_RATE = 48000;
+	private static final String PICTURE_FIELD = "METADATA_BLOCK_PICTURE";
+	/** The names of the comments jaudiotagger reads for the field keys. */
+	private static final Map<FieldKey, String> FIELD_NAMES = new EnumMap<>(FieldKey.class);
+
+	static {
+		FIELD_NAMES.put(FieldKey.TITLE, "TITLE");
+		FIELD_NAMES.put(FieldKey.ARTIST, "ARTIST");
+		FIELD_NAMES.put(FieldKey.ALBUM_ARTIST, "ALBUMARTIST");
+		FIELD_NAMES.put(FieldKey.ALBUM, "ALBUM");
+		FIELD_NAMES.put(FieldKey.YEAR, "DATE");
+		FIELD_NAMES.put(FieldKey.TRACK, "TRACKNUMBER");
+		FIELD_NAMES.put(FieldKey.DISC_NO, "DISCNUMBER");
+		FIELD_NAMES.put(FieldKey.GENRE, "GENRE");
+		FIELD_NAMES.put(FieldKey.COMPOSER, "COMPOSER");
+		FIELD_NAMES.put(FieldKey.COMMENT, "COMMENT");
+	}
+
+	/**
+	 * The comments of a file, along with what else was learned from its
+	 * metadata.
+	 */
+	public static class Tag {
+		private final Map<String, String> comments;
+		private final long durationMillis;
+		private final long audioStart;
+		private final long artworkStart;
+		private final long artworkLength;
+		private final long artworkDigest;
+
+		private Tag(Map<String, String> comments, long durationMillis, long audioStart, long artworkStart,
+				long artworkLength, long artworkDigest) {
+			this.comments = comments;
+			this.durationMillis = durationMillis;
+			this.audioStart = audioStart;
+			this.artworkStart = artworkStart;
+			this.artworkLength = artworkLength;
+			this.artworkDigest = artworkDigest;
+		}
+
+		/**
+		 * Get the first value of a comment, just like jaudiotagger's
+		 * {@code Tag.getFirst(FieldKey)} does for Vorbis comments.
+		 *
+		 * @param fieldKey
+		 *            - the field key.
+		 * @return the first value, the empty string if there is no such comment
+		 *         or null if the field key is not one this reader knows of.
+		 */
+		public String getFirst(FieldKey fieldKey) {
+			final String fieldName = FIELD_NAMES.get(fieldKey);
+			if (fieldName == null) {
+				return null;
+			}
+			final String value = comments.get(fieldName);
+			return value == null ? "" : value;
+		}
+
+		/**
+		 * @return the duration in milliseconds, or -1 if it is unknown.
+		 */
+		public long getDurationMillis() {
+			return durationMillis;
+		}
+
+		/**
+		 * @return the position of the audio, i.e. of the first byte after the
+		 *         metadata.
+		 */
+		public long getAudioStart() {
+			return audioStart;
+		}
+
+		/**
+		 * Compute a digest of the first artwork the way
+		 * {@link ContentFingerprinter#artworkDigest(org.jaudiotagger.tag.images.Artwork)}
+		 * does. The image data of a FLAC picture block is hashed straight from the
+		 * file; the one of a picture comment was already hashed while reading it.
+		 *
+		 * @param path
+		 *            - the path to the file the tag was read from.
+		 * @return the digest, {@link DestinationSnapshot#NO_ARTWORK} if there is
+		 *         no artwork or {@link DestinationSnapshot#UNKNOWN_ARTWORK} if it
+		 *         could not be located.
+		 * @throws IOException
+		 *             if the file could not be read.
+		 */
+		public long artworkDigest(Path path) throws IOException {
+			if (artworkStart >= 0) {
+				return ContentFingerprinter.artworkDigest(path, artworkStart, artworkLength);
+			}
+			return artworkDigest;
+		}
+	}
+
+	/**
+	 * Read the metadata of a FLAC file, skipping an ID3v2 tag in front of it.
+	 *
+	 * @param path
+	 *            - the path to the FLAC file.
+	 * @return the tag, or null if the file is not a FLAC file this reader
+	 *         understands.
+	 * @throws IOException
+	 *             if the file could not be read.
+	 */
+	public static Tag readFlac(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final long fileSize = channel.size();
+			ByteBuffer header = ByteBuffer.allocate(ID3V2_HEADER_SIZE);
+			long position = 0;
+			if (ContentFingerprinter.readFully(channel, header, 0, ID3V2_HEADER_SIZE) && header.get(0) == 'I'
+					&& header.get(1) == 'D' && header.get(2) == '3') {
+				position = ID3V2_HEADER_SIZE + ContentFingerprinter.syncsafeInt(header, 6);
+			}
+			if (!ContentFingerprinter.readFully(channel, header, position, 4) || header.get(0) != 'f'
+					|| header.get(1) != 'L' || header.get(2) != 'a' || header.get(3) != 'C') {
+				return null;
+			}
+			position += 4;
+			final Map<String, String> comments = new HashMap<>();
+			long durationMillis = -1;
+			long artworkStart = -1;
+			long artworkLength = -1;
+			long artworkDigest = DestinationSnapshot.NO_ARTWORK;
+			boolean isLastBlock = false;
+			while (!isLastBlock) {
+				if (!ContentFingerprinter.readFully(channel, header, position, FLAC_BLOCK_HEADER_SIZE)) {
+					return null; // The file ends within its metadata.
+				}
+				isLastBlock = (header.get(0) & FLAC_LAST_BLOCK) != 0;
+				final int blockType = header.get(0) & 0x7F;
+				final int blockSize = (header.get(1) & 0xFF) << 16 | (header.get(2) & 0xFF) << 8
+						| (header.get(3) & 0xFF);
+				final long blockStart = position + FLAC_BLOCK_HEADER_SIZE;
+				if (blockStart + blockSize > fileSize) {
+					return null;
+				}
+				if (blockType == FLAC_STREAMINFO && blockSize >= 18) {
+					final ByteBuffer block = readBlock(channel, blockStart, 18);
+					final int sampleRate = (block.get(10) & 0xFF) << 12 | (block.get(11) & 0xFF) << 4
+							| (block.get(12) & 0xFF) >>> 4;
+					final long totalSamples = (block.get(13) & 0x0FL) << 32 | (block.getInt(14) & 0xFFFFFFFFL);
+					if (sampleRate > 0 && totalSamples > 0) {
+						durationMillis = totalSamples * 1000 / sampleRate;
+					}
+				} else if (blockType == FLAC_VORBIS_COMMENT && comments.isEmpty()) {
+					final ByteBuffer block = readBlock(channel, blockStart, blockSize);
+					final Long digest = readComments(block, 0, comments);
+					if (digest == null) {
+						return null; // Leave the unreadable comments to jaudiotagger.
+					}
+					if (artworkLength < 0 && digest != DestinationSnapshot.NO_ARTWORK) {
+						artworkDigest = digest;
+					}
+				} else if (blockType == FLAC_PICTURE && artworkStart < 0) {
+					final ByteBuffer block = readBlock(channel, blockStart, Math.min(blockSize, MAX_PICTURE_HEADER_SIZE));
+					final int pictureHeaderSize = pictureHeaderSize(block, 0, block.limit());
+					if (pictureHeaderSize >= 0) {
+						// A picture block comes before any picture comment, just like in jaudiotagger.
+						artworkStart = blockStart + pictureHeaderSize;
+						artworkLength = Math.min(block.getInt(pictureHeaderSize - 4) & 0xFFFFFFFFL,
+								blockSize - pictureHeaderSize);
+					} else {
+						artworkDigest = DestinationSnapshot.UNKNOWN_ARTWORK;
+					}
+				}
+				position = blockStart + blockSize;
+			}
+			return new Tag(comments, durationMillis, position, artworkStart, artworkLength, artworkDigest);
+		}
+	}
+
+	/**
+	 * Read the header packets of an Ogg Vorbis or Opus stream.
+	 *
+	 * @param path
+	 *            - the path to the Ogg file.
+	 * @return the tag, or null if the file is not an Ogg Vorbis or Opus file
+	 *         this reader understands.
+	 * @throws IOException
+	 *             if the file could not be read.
+	 */
+	public static Tag readOgg(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final OggPacketReader packets = new OggPacketReader(channel);
+			final ByteBuffer identification = packets.next(MAX_IDENTIFICATION_SIZE);
+			if (identification == null) {
+				return null;
+			}
+			final int headerCount;
+			final String commentMagic;
+			final int sampleRate;
+			final int preSkip;
+			if (startsWith(identification, "\u0001vorbis") && identification.limit() >= 16) {
+				headerCount = 3;
+				commentMagic = "\u0003vorbis";
+				sampleRate = identification.getInt(12);
+				preSkip = 0;
+			} else if (startsWith(identification, "OpusHead") && identification.limit() >= 12) {
+				headerCount = 2;
+				commentMagic = "OpusTags";
+				sampleRate = OPUS_SAMPLE_RATE;
+				preSkip = identification.getShort(10) & 0xFFFF;
+			} else {
+				return null;
+			}
+			final ByteBuffer comment = packets.next(MAX_COMMENT_SIZE);
+			if (comment == null || !startsWith(comment, commentMagic)) {
+				return null;
+			}
+			final Map<String, String> comments = new HashMap<>();
+			final Long artworkDigest = readComments(comment, commentMagic.length(), comments);
+			if (artworkDigest == null) {
+				return null; // Leave the unreadable comments to jaudiotagger.
+			}
+			for (int i = 2; i < headerCount; i++) {
+				if (!packets.skip()) {
+					return null;
+				}
+			}
+			// The audio starts on the page after the last header packet.
+			final long audioStart = packets.getPageEnd();
+			long durationMillis = -1;
+			final long granulePosition = lastGranulePosition(channel, packets.getSerialNumber());
+			if (granulePosition > preSkip && sampleRate > 0) {
+				durationMillis = (granulePosition - preSkip) * 1000 / sampleRate;
+			}
+			return new Tag(comments, durationMillis, audioStart, -1, -1, artworkDigest);
+		}
+	}
+
+	/**
+	 * Read a Vorbis comment structure, whose numbers are little-endian.
+	 *
+	 * @param comments
+	 *            - the map to put the first value of each comment in, by its
+	 *            name in upper case.
+	 * @return the digest of the first picture comment, if any;
+	 *         {@link DestinationSnapshot#NO_ARTWORK} otherwise. Null if a length
+	 *         in the structure runs past the end of the buffer, i.e. if the
+	 *         comments are unreadable.
+	 */
+	private static Long readComments(ByteBuffer buffer, int offset, Map<String, String> comments) {
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		long artworkDigest = DestinationSnapshot.NO_ARTWORK;
+		final int end = buffer.limit();
+		// Lengths are compared with what is left of the buffer, as adding them to
+		// the position could overflow.
+		if (end - offset < 4) {
+			return null;
+		}
+		final int vendorLength = buffer.getInt(offset);
+		if (vendorLength < 0 || vendorLength > end - offset - 8) {
+			return null;
+		}
+		int position = offset + 4 + vendorLength; // Skip the vendor string.
+		final long commentCount = buffer.getInt(position) & 0xFFFFFFFFL;
+		position += 4;
+		for (long i = 0; i < commentCount; i++) {
+			if (end - position < 4) {
+				return null;
+			}
+			final int length = buffer.getInt(position);
+			position += 4;
+			if (length < 0 || length > end - position) {
+				return null;
+			}
+			int separator = position;
+			while (separator < position + length && buffer.get(separator) != '=') {
+				separator++;
+			}
+			if (separator < position + length) {
+				final String name = new String(buffer.array(), position, separator - position,
+						StandardCharsets.US_ASCII).toUpperCase();
+				if (name.equals(PICTURE_FIELD)) {
+					if (artworkDigest == DestinationSnapshot.NO_ARTWORK) {
+						artworkDigest = pictureDigest(buffer, separator + 1, position + length - separator - 1);
+					}
+				} else if (!comments.containsKey(name)) {
+					comments.put(name, new String(buffer.array(), separator + 1, position + length - separator - 1,
+							StandardCharsets.UTF_8));
+				}
+			}
+			position += length;
+		}
+		return artworkDigest;
+	}
+
+	/**
+	 * A picture comment is a FLAC picture block encoded in Base64.
+	 *
+	 * @return the digest of its image data, or
+	 *         {@link DestinationSnapshot#UNKNOWN_ARTWORK} if it could not be
+	 *         decoded.
+	 */
+	private static long pictureDigest(ByteBuffer buffer, int offset, int length) {
+		try {
+			final byte[] encoded = new byte[length];
+			System.arraycopy(buffer.array(), offset, encoded, 0, length);
+			final ByteBuffer picture = ByteBuffer.wrap(Base64.getMimeDecoder().decode(encoded));
+			final int pictureHeaderSize = pictureHeaderSize(picture, 0, picture.limit());
+			if (pictureHeaderSize < 0) {
+				return DestinationSnapshot.UNKNOWN_ARTWORK;
+			}
+			final int dataLength = (int) Math.min(picture.getInt(pictureHeaderSize - 4) & 0xFFFFFFFFL,
+					picture.limit() - pictureHeaderSize);
+			return ContentFingerprinter.artworkDigest(picture.array(), pictureHeaderSize, dataLength);
+		} catch (IllegalArgumentException e) {
+			return DestinationSnapshot.UNKNOWN_ARTWORK;
+		}
+	}
+
+	/**
+	 * A FLAC picture block starts with the picture type, the MIME type, the
+	 * description, four numbers describing the image and the size of the image
+	 * data, all of them big-endian.
+	 *
+	 * @return the amount of bytes before the image data, or -1 if the image data
+	 *         does not start within the given bytes.
+	 */
+	private static int pictureHeaderSize(ByteBuffer buffer, int offset, int length) {
+		final int end = offset + length;
+		int position = offset + 4; // The picture type.
+		for (int i = 0; i < 2; i++) {
+			if (position + 4 > end) {
+				return -1;
+			}
+			final int stringLength = buffer.getInt(position); // The MIME type, then the description.
+			if (stringLength < 0 || stringLength > end - position - 4) {
+				return -1;
+			}
+			position += 4 + stringLength;
+		}
+		position += 16 + 4; // Width, height, colour depth, number of colours and the size of the data.
+		return position <= end ? position - offset : -1;
+	}
+
+	/**
+	 * Find the granule position of the last page of the stream, which is the
+	 * number of samples in the stream (for Opus, including the pre-skip).
+	 *
+	 * @return the granule position, or -1 if no page was found at the end of the
+	 *         file.
+	 */
+	private static long lastGranulePosition(FileChannel channel, int serialNumber) throws IOException {
+		final long fileSize = channel.size();
+		final int size = (int) Math.min(LAST_PAGE_SEARCH_SIZE, fileSize);
+		final ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		if (!ContentFingerprinter.readFully(channel, buffer, fileSize - size, size)) {
+			return -1;
+		}
+		for (int offset = size - OGG_PAGE_HEADER_SIZE; offset >= 0; offset--) {
+			if (buffer.get(offset) == 'O' && buffer.get(offset + 1) == 'g' && buffer.get(offset + 2) == 'g'
+					&& buffer.get(offset + 3) == 'S' && buffer.get(offset + 4) == 0
+					&& buffer.getInt(offset + 14) == serialNumber) {
+				final long granulePosition = buffer.getLong(offset + 6);
+				if (granulePosition != -1) {
+					return granulePosition; // -1 means that no packet ends on the page.
+				}
+			}
+		}
+		return -1;
+	}
+
+	private static ByteBuffer readBlock(FileChannel channel, long position, int size) throws IOException {
+		final ByteBuffer block = ByteBuffer.allocate(size);
+		if (!ContentFingerprinter.readFully(channel, block, position, size)) {
+			throw new IOException("The file ended within its metadata.");
+		}
+		return block;
+	}
+
+	private static boolean startsWith(ByteBuffer buffer, String magic) {
+		if (buffer.limit() < magic.length()) {
+			return false;
+		}
+		for (int i = 0; i < magic.length(); i++) {
+			if (buffer.get(i) != magic.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the packets of the first logical stream of an Ogg file page by page.
+	 * A packet is made of the segments of one or more pages; it ends with a
+	 * segment of less than 255 bytes.
+	 */
+	static class OggPacketReader {
+		private final FileChannel channel;
+		private final ByteBuffer pageHeader = ByteBuffer.allocate(OGG_PAGE_HEADER_SIZE + 255)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		private boolean isSerialNumberKnown = false;
+		private int serialNumber;
+		/** The position of the body of the current page, after its header. */
+		private long pageBody;
+		/** The position of the next page. */
+		private long nextPage = 0;
+		/** The segments of the current page and the one to be read next. */
+		private int segmentCount = 0;
+		private int segment = 0;
+		/** The position of the next segment in the current page. */
+		private long segmentPosition;
+
+		OggPacketReader(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		int getSerialNumber() {
+			return serialNumber;
+		}
+
+		/**
+		 * @return the position of the body of the current page.
+		 */
+		long getPageBody() {
+			return pageBody;
+		}
+
+		/**
+		 * @return the end of the current page, e.g. of the one the last packet
+		 *         ended on.
+		 */
+		long getPageEnd() {
+			return nextPage;
+		}
+
+		/**
+		 * @param maxSize
+		 *            - the largest packet to be read.
+		 * @return the next packet, or null if the stream ended or the packet is
+		 *         larger than the given size.
+		 */
+		ByteBuffer next(int maxSize) throws IOException {
+			final ByteBuffer packet = ByteBuffer.allocate(Math.min(maxSize, 64 * 1024)).order(ByteOrder.LITTLE_ENDIAN);
+			return readPacket(packet, maxSize, true);
+		}
+
+		/**
+		 * Skip the next packet without keeping it.
+		 *
+		 * @return false if the stream ended.
+		 */
+		boolean skip() throws IOException {
+			return readPacket(null, Integer.MAX_VALUE, false) != null;
+		}
+
+		private ByteBuffer readPacket(ByteBuffer packet, int maxSize, boolean isKept) throws IOException {
+			ByteBuffer result = packet;
+			int packetSize = 0;
+			while (true) {
+				if (segment == segmentCount && !nextPage()) {
+					return null;
+				}
+				final int segmentSize = pageHeader.get(OGG_PAGE_HEADER_SIZE + segment) & 0xFF;
+				packetSize += segmentSize;
+				if (isKept) {
+					if (packetSize > maxSize) {
+						return null;
+					}
+					if (packetSize > result.capacity()) {
+						final ByteBuffer larger = ByteBuffer.allocate(Math.min(maxSize, 2 * packetSize))
+								.order(ByteOrder.LITTLE_ENDIAN);
+						result.flip();
+						larger.put(result);
+						result = larger;
+					}
+					result.limit(result.position() + segmentSize);
+					while (result.hasRemaining()) {
+						if (channel.read(result, segmentPosition + segmentSize - result.remaining()) < 0) {
+							return null;
+						}
+					}
+				}
+				segmentPosition += segmentSize;
+				segment++;
+				if (segmentSize < 255) {
+					if (!isKept) {
+						return ByteBuffer.allocate(0);
+					}
+					result.flip();
+					return result;
+				}
+			}
+		}
+
+		/**
+		 * Read the header of the next page of the stream, skipping pages of other
+		 * streams. The packets of the skipped part of the current page are lost.
+		 *
+		 * @return false if there is no further page.
+		 */
+		boolean nextPage() throws IOException {
+			while (true) {
+				if (!ContentFingerprinter.readFully(channel, pageHeader, nextPage, OGG_PAGE_HEADER_SIZE)
+						|| pageHeader.get(0) != 'O' || pageHeader.get(1) != 'g' || pageHeader.get(2) != 'g'
+						|| pageHeader.get(3) != 'S') {
+					return false;
+				}
+				final int pageSerialNumber = pageHeader.getInt(14);
+				final int pageSegmentCount = pageHeader.get(26) & 0xFF;
+				final ByteBuffer lacing = ByteBuffer.allocate(pageSegmentCount);
+				if (!ContentFingerprinter.readFully(channel, lacing, nextPage + OGG_PAGE_HEADER_SIZE,
+						pageSegmentCount)) {
+					return false;
+				}
+				int pageBodySize = 0;
+				for (int i = 0; i < pageSegmentCount; i++) {
+					pageBodySize += lacing.get(i) & 0xFF;
+				}
+				pageBody = nextPage + OGG_PAGE_HEADER_SIZE + pageSegmentCount;
+				nextPage = pageBody + pageBodySize;
+				if (!isSerialNumberKnown) {
+					serialNumber = pageSerialNumber;
+					isSerialNumberKnown = true;
+				}
+				if (pageSerialNumber == serialNumber) {
+					pageHeader.clear();
+					pageHeader.position(OGG_PAGE_HEADER_SIZE);
+					lacing.rewind();
+					pageHeader.put(lacing);
+					segmentCount = pageSegmentCount;
+					segment = 0;
+					segmentPosition = pageBody;
+					return true;
+				}
+			}
+		}
+	}
+}
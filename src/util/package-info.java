@@ -1,8 +1,8 @@
-/**
- * 
- */
-/**
- * @author Aram
- *
- */
+/**
+ * 
+ */
+/**
+ * @author Aram
+ *
+ */
 package util;
\ No newline at end of file
@@ -0,0 +1,156 @@
+package filesystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jaudiotagger.audio.mp3.MP3File;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.id3.ID3v23Tag;
+import org.jaudiotagger.tag.id3.ID3v24Tag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import data.DestinationSnapshot;
+import data.TagSnapshot;
+import framework.FileWrapper;
+import util.SourceMetadataStore;
+import util.SyntheticMusic;
+
+public class TestPCFile {
+    private Path musicFile;
+
+    @Before
+    public void setup() throws Exception {
+        musicFile = Files.createTempFile("mlms-pcfile", ".mp3");
+        SyntheticMusic.writeMp3(musicFile, 40);
+        MP3File mp3File = new MP3File(musicFile.toFile());
+        ID3v23Tag tag = new ID3v23Tag();
+        tag.setField(FieldKey.TITLE, "Title");
+        tag.setField(FieldKey.ALBUM, "Album");
+        mp3File.setID3v2Tag(tag);
+        mp3File.commit();
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(musicFile);
+    }
+
+    @Test
+    public void shouldNotRewriteTheFileWhenNoTagWasChanged() throws Exception {
+        byte[] before = Files.readAllBytes(musicFile);
+        PCFile file = new PCFile(musicFile.toString());
+        file.changeTag(FieldKey.TITLE, "Title");
+        file.changeAlbumArt(null); // There is no artwork to delete.
+        assertThat(file.hasTagChanges()).isFalse();
+        assertThat(file.applyTagChanges()).isFalse();
+        assertThat(Files.readAllBytes(musicFile)).isEqualTo(before);
+    }
+
+    @Test
+    public void shouldReadTagsFromTheMetadataStoreWhileTheFileIsUnchanged() throws Exception {
+        SourceMetadataStore store = new SourceMetadataStore(Arrays.asList(FieldKey.TITLE));
+        assertThat(new PCFile(musicFile.toString(), store).getTagData(FieldKey.TITLE)).isEqualTo("Title");
+        PCFile file = new PCFile(musicFile.toString(), store);
+        store.putTagData(file.getAbsolutePath(), file.length(), file.lastModified(), FieldKey.TITLE, "Stored");
+        assertThat(file.getTagData(FieldKey.TITLE)).isEqualTo("Stored"); // The file was not read.
+
+        Files.setLastModifiedTime(musicFile, FileTime.fromMillis(file.lastModified() + 1000));
+        assertThat(new PCFile(musicFile.toString(), store).getTagData(FieldKey.TITLE)).isEqualTo("Title");
+    }
+
+    @Test
+    public void shouldWriteChangedTags() throws Exception {
+        long size = Files.size(musicFile);
+        PCFile file = new PCFile(musicFile.toString());
+        file.changeTag(FieldKey.ALBUM, "Other Album");
+        assertThat(file.hasTagChanges()).isTrue();
+        assertThat(file.applyTagChanges()).isTrue();
+        assertThat(file.hasTagChanges()).isFalse();
+        assertThat(new PCFile(musicFile.toString()).getTagData(FieldKey.ALBUM)).isEqualTo("Other Album");
+        assertThat(Files.size(musicFile)).isEqualTo(size); // Written over the padding of the tag.
+    }
+
+    @Test
+    public void shouldReadTheYearBackFromAnID3v24Tag() throws Exception {
+        MP3File mp3File = new MP3File(musicFile.toFile());
+        ID3v24Tag tag = new ID3v24Tag();
+        tag.setField(FieldKey.TITLE, "Title");
+        tag.setField(FieldKey.YEAR, "1999");
+        mp3File.setID3v2Tag(tag);
+        mp3File.commit();
+        assertThat(new PCFile(musicFile.toString()).getTagData(FieldKey.YEAR)).isEqualTo("1999");
+
+        PCFile file = new PCFile(musicFile.toString());
+        file.changeTag(FieldKey.YEAR, "2001");
+        assertThat(file.applyTagChanges()).isTrue();
+        PCFile changedFile = new PCFile(musicFile.toString());
+        assertThat(changedFile.getTagData(FieldKey.YEAR)).isEqualTo("2001");
+        changedFile.changeTag(FieldKey.YEAR, "2001");
+        assertThat(changedFile.hasTagChanges()).isFalse(); // Synced, so the file is not written again.
+    }
+
+    @Test
+    public void shouldReadTheSameTagsInASnapshotAsOneByOne() throws Exception {
+        List<FieldKey> fieldKeys = Arrays.asList(FieldKey.TITLE, FieldKey.ARTIST, FieldKey.ALBUM);
+        SourceMetadataStore store = new SourceMetadataStore(fieldKeys);
+        TagSnapshot snapshot = new PCFile(musicFile.toString(), store).getTagSnapshot(fieldKeys);
+        assertThat(snapshot.getValues()).containsExactly("Title", "", "Album");
+        assertThat(snapshot.getDigest()).isEqualTo(DestinationSnapshot.digestOf(new String[] { "Title", "", "Album" }));
+        assertThat(store.size()).isEqualTo(1); // Read once and stored.
+        assertThat(new PCFile(musicFile.toString(), store).getTagSnapshot(fieldKeys)).isEqualTo(snapshot);
+
+        TagSnapshot dst = new TagSnapshot(fieldKeys, new String[] { "Title", "Artist", "Old Album" });
+        assertThat(snapshot.diff(dst)).containsOnlyKeys(FieldKey.ARTIST, FieldKey.ALBUM);
+        assertThat(dst.with(snapshot.diff(dst))).isEqualTo(snapshot);
+    }
+
+    @Test
+    public void shouldKeepUnappliedChangesWhenReleased() throws Exception {
+        PCFile file = new PCFile(musicFile.toString());
+        assertThat(file.getAlbumArt()).isNull(); // Read by jaudiotagger.
+        file.changeTag(FieldKey.ALBUM, "Other Album");
+        file.release();
+        assertThat(file.applyTagChanges()).isTrue();
+        file.release();
+        assertThat(file.getTagData(FieldKey.ALBUM)).isEqualTo("Other Album");
+        assertThat(file.getTagData(FieldKey.TITLE)).isEqualTo("Title");
+    }
+
+    @Test
+    public void shouldListFilesWithTheirAttributes() throws Exception {
+        Path folder = Files.createTempDirectory("mlms-listing");
+        try {
+            Files.createDirectory(folder.resolve("Album"));
+            Files.copy(musicFile, folder.resolve("Song.mp3"));
+            PCFile pcFolder = new PCFile(folder.toString());
+            try (DirectoryStream<PCFile> listing = pcFolder.openListing()) {
+                for (PCFile child : listing) {
+                    boolean isAlbum = child.getName().equals("Album");
+                    assertThat(child.isDirectory()).isEqualTo(isAlbum);
+                    assertThat(child.doesFileExist()).isTrue();
+                    if (!isAlbum) {
+                        assertThat(child.length()).isEqualTo(Files.size(musicFile));
+                        assertThat(child.lastModified())
+                                .isEqualTo(Files.getLastModifiedTime(folder.resolve("Song.mp3")).toMillis());
+                    }
+                }
+            }
+            FileWrapper[] children = pcFolder.listFiles();
+            assertThat(children).hasSize(2);
+            assertThat(new PCFile(musicFile.toString()).listFiles()).isNull();
+        } finally {
+            Files.deleteIfExists(folder.resolve("Song.mp3"));
+            Files.deleteIfExists(folder.resolve("Album"));
+            Files.deleteIfExists(folder);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Builds music files without any real audio, so tests do not depend on the
+ * music samples which are not part of the repository.
+ */
+public class SyntheticMusic {
+    /** MPEG-1 Layer III, 128 kbit/s, 44.1 kHz, no padding. */
+    public static final byte[] CBR_FRAME_HEADER = { (byte) 0xFF, (byte) 0xFB, (byte) 0x90, (byte) 0x44 };
+    public static final int CBR_FRAME_SIZE = 417;
+    /** Every Layer III frame holds 1152 samples. */
+    public static final double CBR_FRAME_MILLIS = 1152 * 1000.0 / 44100;
+
+    /**
+     * Write an MP3 without tags consisting of silent CBR frames.
+     *
+     * @param path
+     *            - the file to write.
+     * @param frames
+     *            - the amount of frames.
+     */
+    public static void writeMp3(Path path, int frames) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < frames; i++) {
+            byte[] frame = new byte[CBR_FRAME_SIZE];
+            System.arraycopy(CBR_FRAME_HEADER, 0, frame, 0, CBR_FRAME_HEADER.length);
+            out.write(frame);
+        }
+        Files.write(path, out.toByteArray());
+    }
+}
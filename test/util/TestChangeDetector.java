@@ -0,0 +1,35 @@
+package util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import data.FileState;
+import data.Fingerprint;
+import util.ChangeDetector.Action;
+
+public class TestChangeDetector {
+    private static final FileState PREVIOUS = new FileState(1000, 2000, new Fingerprint(1, 2));
+
+    @Test
+    public void shouldAddUnchangedMusicWhichIsMissingFromDst() {
+        // The size and last modified date are unchanged, so the fingerprint of the last session is reused.
+        assertThat(PREVIOUS.isUnchanged(1000, 2000)).isTrue();
+        FileState current = new FileState(1000, 2000, PREVIOUS.getFingerprint());
+        assertThat(ChangeDetector.decide(PREVIOUS, current, false, true)).isEqualTo(Action.ADD);
+        assertThat(ChangeDetector.decide(PREVIOUS, current, false, false)).isEqualTo(Action.IGNORE);
+        assertThat(ChangeDetector.decide(PREVIOUS, current, true, true)).isEqualTo(Action.SKIP);
+    }
+
+    @Test
+    public void shouldCompareTagsOrReplaceAudioOfChangedMusic() {
+        FileState retagged = new FileState(1010, 3000, new Fingerprint(7, 2));
+        FileState reencoded = new FileState(900, 3000, new Fingerprint(1, 8));
+        assertThat(ChangeDetector.decide(PREVIOUS, retagged, true, true)).isEqualTo(Action.COMPARE);
+        assertThat(ChangeDetector.decide(PREVIOUS, reencoded, true, true)).isEqualTo(Action.REPLACE);
+        // Without a last session, or with unknown fingerprints, the tags are always compared.
+        assertThat(ChangeDetector.decide(null, PREVIOUS, true, true)).isEqualTo(Action.COMPARE);
+        FileState unknown = new FileState(1000, 2000, Fingerprint.UNKNOWN);
+        assertThat(ChangeDetector.decide(unknown, unknown, true, true)).isEqualTo(Action.COMPARE);
+    }
+}
@@ -0,0 +1,142 @@
+package util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.audio.mp3.MP3File;
+import org.jaudiotagger.tag.id3.ID3v23Tag;
+import org.jaudiotagger.tag.images.Artwork;
+import org.jaudiotagger.tag.images.ArtworkFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import data.DestinationSnapshot;
+import data.Fingerprint;
+
+public class TestContentFingerprinter {
+    private Path musicFile;
+
+    @Before
+    public void setup() throws IOException {
+        musicFile = Files.createTempFile("mlms-fingerprint", ".mp3");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(musicFile);
+    }
+
+    @Test
+    public void shouldOnlyChangeTagHashWhenTagsChange() throws IOException {
+        Files.write(musicFile, mp3("Title A", "audio"));
+        Fingerprint before = ContentFingerprinter.fingerprint(musicFile, "MP3");
+        Files.write(musicFile, mp3("Title B", "audio"));
+        Fingerprint after = ContentFingerprinter.fingerprint(musicFile, "MP3");
+        assertThat(after.hasSameAudio(before)).isTrue();
+        assertThat(after.hasSameTags(before)).isFalse();
+    }
+
+    @Test
+    public void shouldOnlyChangeAudioHashWhenAudioChanges() throws IOException {
+        Files.write(musicFile, mp3("Title A", "audio"));
+        Fingerprint before = ContentFingerprinter.fingerprint(musicFile, "MP3");
+        Files.write(musicFile, mp3("Title A", "other audio"));
+        Fingerprint after = ContentFingerprinter.fingerprint(musicFile, "MP3");
+        assertThat(after.hasSameTags(before)).isTrue();
+        assertThat(after.hasSameAudio(before)).isFalse();
+    }
+
+    @Test
+    public void shouldNeverMatchUnknownFingerprints() {
+        assertThat(Fingerprint.UNKNOWN.matches(Fingerprint.UNKNOWN)).isFalse();
+        assertThat(new Fingerprint(1, 2).matches(new Fingerprint(1, 2))).isTrue();
+        // Equality is only about the values, so fingerprints can be kept in sets and maps.
+        assertThat(Fingerprint.UNKNOWN).isEqualTo(Fingerprint.UNKNOWN).isNotEqualTo(new Fingerprint(0, 0));
+        assertThat(new Fingerprint(1, 2)).isEqualTo(new Fingerprint(1, 2));
+        assertThat(new Fingerprint(1, 2).hashCode()).isEqualTo(new Fingerprint(1, 2).hashCode());
+    }
+
+    @Test
+    public void shouldDigestMP3ArtworkInTheFileLikeTheArtworkItself() throws Exception {
+        SyntheticMusic.writeMp3(musicFile, 40);
+        ID3v23Tag tag = new ID3v23Tag();
+        tag.setField(artwork(200000)); // Spans several blocks.
+        MP3File mp3File = new MP3File(musicFile.toFile());
+        mp3File.setID3v2Tag(tag);
+        mp3File.commit();
+
+        ID3v2Reader.Tag id3v2Tag = ID3v2Reader.read(musicFile);
+        assertThat(id3v2Tag.getArtworkLength()).isEqualTo(200000);
+        long expected = ContentFingerprinter.artworkDigest(
+                ((MP3File) AudioFileIO.read(musicFile.toFile())).getID3v2Tag().getFirstArtwork());
+        assertThat(ContentFingerprinter.artworkDigest(musicFile, id3v2Tag.getArtworkStart(),
+                id3v2Tag.getArtworkLength())).isEqualTo(expected).isNotEqualTo(DestinationSnapshot.NO_ARTWORK);
+    }
+
+    @Test
+    public void shouldDigestMP4CoverArtInTheFileLikeTheArtworkItself() throws IOException {
+        Artwork artwork = artwork(70000);
+        byte[] data = atom("data", new byte[8], artwork.getBinaryData());
+        byte[] meta = atom("meta", new byte[4], atom("hdlr", new byte[25]), atom("ilst", atom("covr", data)));
+        Files.write(musicFile, concat(atom("ftyp", "M4A ".getBytes(StandardCharsets.ISO_8859_1)),
+                atom("moov", atom("udta", meta)), atom("mdat", new byte[1000])));
+        assertThat(ContentFingerprinter.mp4ArtworkDigest(musicFile))
+                .isEqualTo(ContentFingerprinter.artworkDigest(artwork));
+
+        Files.write(musicFile, concat(atom("moov", atom("udta")), atom("mdat", new byte[1000])));
+        assertThat(ContentFingerprinter.mp4ArtworkDigest(musicFile)).isEqualTo(DestinationSnapshot.NO_ARTWORK);
+    }
+
+    private static Artwork artwork(int size) {
+        byte[] image = new byte[size];
+        new Random(14).nextBytes(image);
+        Artwork artwork = ArtworkFactory.getNew();
+        artwork.setBinaryData(image);
+        artwork.setMimeType("image/jpeg");
+        artwork.setDescription("Cover");
+        return artwork;
+    }
+
+    private static byte[] atom(String type, byte[]... children) throws IOException {
+        byte[] contents = concat(children);
+        ByteArrayOutputStream atom = new ByteArrayOutputStream();
+        int size = contents.length + 8;
+        atom.write(new byte[] { (byte) (size >>> 24), (byte) (size >>> 16), (byte) (size >>> 8), (byte) size });
+        atom.write(type.getBytes(StandardCharsets.ISO_8859_1));
+        atom.write(contents);
+        return atom.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A minimal "MP3": an ID3v2.3 tag with a single TIT2 frame followed by some
+     * bytes posing as audio.
+     */
+    private static byte[] mp3(String title, String audio) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        byte[] titleBytes = title.getBytes(StandardCharsets.ISO_8859_1);
+        frame.write("TIT2".getBytes(StandardCharsets.ISO_8859_1));
+        frame.write(new byte[] { 0, 0, 0, (byte) (titleBytes.length + 1), 0, 0, 0 });
+        frame.write(titleBytes);
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(new byte[] { 'I', 'D', '3', 3, 0, 0, 0, 0, 0, (byte) frame.size() });
+        file.write(frame.toByteArray());
+        file.write(audio.getBytes(StandardCharsets.ISO_8859_1));
+        return file.toByteArray();
+    }
+}
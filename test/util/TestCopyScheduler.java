@@ -0,0 +1,71 @@
+package util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCopyScheduler {
+    private Path src;
+    private Path dst;
+
+    @Before
+    public void setup() throws IOException {
+        src = Files.createTempDirectory("mlms-copy-src");
+        dst = Files.createTempDirectory("mlms-copy-dst");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        for (Path root : new Path[] { src, dst }) {
+            Files.walk(root).sorted((path1, path2) -> path2.compareTo(path1)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void shouldCopyEveryFileIntoNestedFolders() throws IOException, InterruptedException {
+        final List<CopyScheduler.CopyJob<String>> jobs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Path source = src.resolve("Song" + i + ".mp3");
+            Files.write(source, new byte[i * 1000]);
+            Files.setLastModifiedTime(source, FileTime.fromMillis(1000000000000L + i));
+            jobs.add(new CopyScheduler.CopyJob<>("Song" + i, source,
+                    dst.resolve("Artist").resolve("Song" + i + ".mp3"), Files.size(source)));
+        }
+        final List<String> copied = new ArrayList<>();
+        final long[] lastProgress = new long[2];
+        new CopyScheduler(3).copy(jobs, new CopyScheduler.Listener<String>() {
+            @Override
+            public void copied(CopyScheduler.CopyJob<String> job) {
+                copied.add(job.getItem());
+            }
+
+            @Override
+            public void failed(CopyScheduler.CopyJob<String> job, IOException e) {
+                throw new AssertionError(e);
+            }
+
+            @Override
+            public void progress(long copiedBytes, long totalBytes) {
+                lastProgress[0] = copiedBytes;
+                lastProgress[1] = totalBytes;
+            }
+        });
+        assertThat(copied).hasSize(10);
+        assertThat(lastProgress[0]).isEqualTo(lastProgress[1]).isEqualTo(45000);
+        for (int i = 0; i < 10; i++) {
+            Path target = dst.resolve("Artist").resolve("Song" + i + ".mp3");
+            assertThat(Files.size(target)).isEqualTo(i * 1000);
+            assertThat(Files.getLastModifiedTime(target).toMillis()).isEqualTo(1000000000000L + i);
+        }
+        assertThat(Files.list(dst.resolve("Artist")).count()).isEqualTo(10); // No partial files are left.
+    }
+}
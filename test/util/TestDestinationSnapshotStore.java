@@ -0,0 +1,83 @@
+package util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.jaudiotagger.tag.FieldKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import data.DataClass;
+import data.DestinationSnapshot;
+
+public class TestDestinationSnapshotStore {
+    private static final List<FieldKey> FIELD_KEYS = Arrays.asList(FieldKey.TITLE, FieldKey.ARTIST);
+    private Path storeFile;
+
+    @Before
+    public void setup() throws IOException {
+        storeFile = Files.createTempFile("mlms-snapshots", ".dat");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(storeFile);
+    }
+
+    @Test
+    public void shouldKeepSnapshotsBetweenSessions() throws IOException {
+        DestinationSnapshotStore store = new DestinationSnapshotStore(FIELD_KEYS);
+        store.put("dst\\Song.mp3", new DestinationSnapshot(100, 200, "180",
+                new String[] { "Title", DataClass.ERROR_STRING }, DestinationSnapshot.NO_ARTWORK));
+        store.save(storeFile);
+        DestinationSnapshot snapshot = DestinationSnapshotStore.load(storeFile, FIELD_KEYS).get("dst\\Song.mp3");
+        assertThat(snapshot.isUnchanged(100, 200)).isTrue();
+        assertThat(snapshot.isUnchanged(100, 201)).isFalse();
+        assertThat(snapshot.getDuration()).isEqualTo("180");
+        assertThat(snapshot.getTagValues()).containsExactly("Title", DataClass.ERROR_STRING);
+        assertThat(snapshot.getDigest())
+                .isEqualTo(DestinationSnapshot.digestOf(new String[] { "Title", DataClass.ERROR_STRING }));
+    }
+
+    @Test
+    public void shouldDiscardSnapshotsOfOtherFieldKeys() throws IOException {
+        DestinationSnapshotStore store = new DestinationSnapshotStore(FIELD_KEYS);
+        store.put("dst\\Song.mp3", new DestinationSnapshot(100, 200, "180",
+                new String[] { "Title", "Artist" }, DestinationSnapshot.NO_ARTWORK));
+        store.save(storeFile);
+        assertThat(DestinationSnapshotStore.load(storeFile, Arrays.asList(FieldKey.TITLE)).size()).isZero();
+    }
+
+    @Test
+    public void shouldRemoveTheSnapshotsOfMusicNoLongerInTheFolder() {
+        String dst = "dst" + File.separator;
+        DestinationSnapshotStore store = new DestinationSnapshotStore(FIELD_KEYS);
+        for (String path : Arrays.asList(dst + "Kept.mp3", dst + "Gone.mp3", dst + "Album" + File.separator
+                + "Song.mp3", "other" + File.separator + "Song.mp3")) {
+            store.put(path, new DestinationSnapshot(100, 200, "180", new String[] { "Title", "Artist" },
+                    DestinationSnapshot.NO_ARTWORK));
+        }
+        // The subfolders were not listed, so their music may still be there.
+        store.removeMissing("dst", false, new HashSet<>(Arrays.asList(dst + "Kept.mp3")));
+        assertThat(store.get(dst + "Gone.mp3")).isNull();
+        assertThat(store.size()).isEqualTo(3);
+        store.removeMissing("dst", true, new HashSet<>(Arrays.asList(dst + "Kept.mp3")));
+        assertThat(store.get(dst + "Album" + File.separator + "Song.mp3")).isNull();
+        assertThat(store.get(dst + "Kept.mp3")).isNotNull();
+        assertThat(store.get("other" + File.separator + "Song.mp3")).isNotNull();
+    }
+
+    @Test
+    public void shouldTellSplitValuesApart() {
+        assertThat(DestinationSnapshot.digestOf(new String[] { "ab", "c" }))
+                .isNotEqualTo(DestinationSnapshot.digestOf(new String[] { "a", "bc" }));
+    }
+}
@@ -0,0 +1,110 @@
+package util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.audio.mp3.MP3File;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.id3.AbstractID3v2Tag;
+import org.jaudiotagger.tag.id3.ID3v23Frames;
+import org.jaudiotagger.tag.id3.ID3v23Tag;
+import org.jaudiotagger.tag.id3.ID3v24Tag;
+import org.jaudiotagger.tag.images.Artwork;
+import org.jaudiotagger.tag.images.ArtworkFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestID3v2Reader {
+    private static final FieldKey[] FIELD_KEYS = { FieldKey.TITLE, FieldKey.ARTIST, FieldKey.ALBUM_ARTIST,
+            FieldKey.ALBUM, FieldKey.YEAR, FieldKey.TRACK, FieldKey.GENRE, FieldKey.COMPOSER };
+    private Path musicFile;
+
+    @Before
+    public void setup() throws IOException {
+        musicFile = Files.createTempFile("mlms-id3", ".mp3");
+        SyntheticMusic.writeMp3(musicFile, 40);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(musicFile);
+    }
+
+    @Test
+    public void shouldReadTheSameTextAsJaudiotaggerFromID3v23() throws Exception {
+        assertSameTextAsJaudiotagger(new ID3v23Tag());
+    }
+
+    @Test
+    public void shouldReadTheSameTextAsJaudiotaggerFromID3v24() throws Exception {
+        assertSameTextAsJaudiotagger(new ID3v24Tag());
+    }
+
+    @Test
+    public void shouldReadMusicWithoutTagsAsEmpty() throws IOException {
+        ID3v2Reader.Tag tag = ID3v2Reader.read(musicFile);
+        assertThat(tag.getFirst("TIT2")).isEmpty();
+        assertThat(tag.getAudioStart()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldLeaveUnsynchronisedTagsToJaudiotagger() throws IOException {
+        byte[] header = { 'I', 'D', '3', 3, 0, (byte) 0x80, 0, 0, 0, 0 };
+        Files.write(musicFile, header, StandardOpenOption.WRITE);
+        assertThat(ID3v2Reader.read(musicFile)).isNull();
+    }
+
+    @Test
+    public void shouldLeaveGroupedFramesToJaudiotagger() throws IOException {
+        // A grouped frame has a group identifier in front of its text.
+        byte[] v3Frame = { 'T', 'I', 'T', '2', 0, 0, 0, 7, 0, 0x20, 1, 0, 'T', 'i', 't', 'l', 'e' };
+        byte[] v4Frame = { 'T', 'I', 'T', '2', 0, 0, 0, 7, 0, 0x40, 1, 0, 'T', 'i', 't', 'l', 'e' };
+        Files.write(musicFile, tag(3, v3Frame), StandardOpenOption.WRITE);
+        assertThat(ID3v2Reader.read(musicFile)).isNull();
+        Files.write(musicFile, tag(4, v4Frame), StandardOpenOption.WRITE);
+        assertThat(ID3v2Reader.read(musicFile)).isNull();
+    }
+
+    /** An ID3v2 tag of the given version holding a single frame. */
+    private static byte[] tag(int majorVersion, byte[] frame) {
+        byte[] tag = new byte[10 + frame.length];
+        byte[] header = { 'I', 'D', '3', (byte) majorVersion, 0, 0, 0, 0, 0, (byte) frame.length };
+        System.arraycopy(header, 0, tag, 0, header.length);
+        System.arraycopy(frame, 0, tag, header.length, frame.length);
+        return tag;
+    }
+
+    private void assertSameTextAsJaudiotagger(AbstractID3v2Tag tag) throws Exception {
+        tag.setField(FieldKey.TITLE, "Ti\u00E9tle \u4E2D");
+        tag.setField(FieldKey.ARTIST, "Artist");
+        tag.addField(FieldKey.ARTIST, "Featured Artist");
+        tag.setField(FieldKey.ALBUM, "Album");
+        tag.setField(FieldKey.YEAR, "1999");
+        tag.setField(FieldKey.TRACK, "03");
+        tag.setField(FieldKey.TRACK_TOTAL, "12");
+        tag.setField(FieldKey.GENRE, "Rock");
+        Artwork artwork = ArtworkFactory.getNew();
+        artwork.setBinaryData(new byte[100000]); // Larger than the read-ahead of the reader.
+        artwork.setMimeType("image/jpeg");
+        tag.setField(artwork);
+        tag.setField(FieldKey.COMPOSER, "Composer"); // Written after the artwork.
+        MP3File mp3File = new MP3File(musicFile.toFile());
+        mp3File.setID3v2Tag(tag);
+        mp3File.commit();
+
+        AbstractID3v2Tag expected = ((MP3File) AudioFileIO.read(musicFile.toFile())).getID3v2Tag();
+        ID3v2Reader.Tag actual = ID3v2Reader.read(musicFile);
+        for (FieldKey fieldKey : FIELD_KEYS) {
+            String frameId = ID3v23Frames.getInstanceOf().getId3KeyFromGenericKey(fieldKey).getFieldName();
+            assertThat(actual.getFirst(frameId)).as(frameId).isEqualTo(expected.getFirst(frameId));
+        }
+        assertThat(actual.getFirst("TRCK")).isEqualTo("3");
+        assertThat(actual.getAudioStart()).isEqualTo(mp3File.getMP3StartByte(musicFile.toFile()));
+    }
+}
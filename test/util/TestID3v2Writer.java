@@ -0,0 +1,96 @@
+package util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jaudiotagger.audio.mp3.MP3File;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.id3.AbstractID3v2Tag;
+import org.jaudiotagger.tag.id3.ID3v23Tag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestID3v2Writer {
+    private Path musicFile;
+    private byte[] audio;
+
+    @Before
+    public void setup() throws Exception {
+        musicFile = Files.createTempFile("mlms-writer", ".mp3");
+        SyntheticMusic.writeMp3(musicFile, 40);
+        audio = Files.readAllBytes(musicFile);
+        MP3File mp3File = new MP3File(musicFile.toFile());
+        ID3v23Tag tag = new ID3v23Tag();
+        tag.setField(FieldKey.TITLE, "Title");
+        tag.setField(FieldKey.GENRE, "Rock");
+        tag.setField(FieldKey.TRACK, "3");
+        tag.setField(FieldKey.TRACK_TOTAL, "12");
+        mp3File.setID3v2Tag(tag);
+        mp3File.commit();
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(musicFile);
+    }
+
+    @Test
+    public void shouldWriteASmallChangeInPlace() throws Exception {
+        long size = Files.size(musicFile);
+        long audioStart = ID3v2Reader.read(musicFile).getAudioStart();
+        assertThat(ID3v2Writer.write(musicFile, frames("TCON", "Jazz", "TIT2", "T"))).isTrue();
+        assertThat(Files.size(musicFile)).isEqualTo(size);
+        assertThat(ID3v2Reader.read(musicFile).getAudioStart()).isEqualTo(audioStart);
+        AbstractID3v2Tag tag = new MP3File(musicFile.toFile()).getID3v2Tag();
+        assertThat(tag.getFirst("TCON")).isEqualTo("Jazz");
+        assertThat(tag.getFirst("TIT2")).isEqualTo("T");
+        assertThat(tag.getFirst("TRCK")).isEqualTo("3");
+        assertThat(audioOf(musicFile)).isEqualTo(audio);
+    }
+
+    @Test
+    public void shouldRewriteTheFileWithPaddingWhenTheTagGrows() throws Exception {
+        char[] longTitle = new char[5000];
+        Arrays.fill(longTitle, '\u0416'); // Not ISO-8859-1, so it is written as UTF-16.
+        assertThat(ID3v2Writer.write(musicFile, frames("TIT2", new String(longTitle), "TRCK", "4"))).isTrue();
+        ID3v2Reader.Tag tag = ID3v2Reader.read(musicFile);
+        assertThat(tag.getFirst("TIT2")).isEqualTo(new String(longTitle));
+        assertThat(tag.getAudioStart()).isGreaterThan(10000L + ID3v2Writer.GROWTH_PADDING);
+        assertThat(new MP3File(musicFile.toFile()).getID3v2Tag().getFirst(FieldKey.TRACK_TOTAL)).isEqualTo("12");
+        assertThat(audioOf(musicFile)).isEqualTo(audio);
+
+        // The next change fits in the padding.
+        long size = Files.size(musicFile);
+        assertThat(ID3v2Writer.write(musicFile, frames("TIT2", "Title", "TPE1", "Artist"))).isTrue();
+        assertThat(Files.size(musicFile)).isEqualTo(size);
+        assertThat(ID3v2Reader.read(musicFile).getFirst("TPE1")).isEqualTo("Artist");
+    }
+
+    @Test
+    public void shouldNotWriteFilesWithoutATag() throws IOException {
+        SyntheticMusic.writeMp3(musicFile, 40);
+        assertThat(ID3v2Writer.write(musicFile, frames("TIT2", "Title"))).isFalse();
+        assertThat(Files.readAllBytes(musicFile)).isEqualTo(audio);
+    }
+
+    private static Map<String, String> frames(String... idsAndValues) {
+        Map<String, String> frames = new HashMap<>();
+        for (int i = 0; i < idsAndValues.length; i += 2) {
+            frames.put(idsAndValues[i], idsAndValues[i + 1]);
+        }
+        return frames;
+    }
+
+    private static byte[] audioOf(Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        int audioStart = (int) ID3v2Reader.read(path).getAudioStart();
+        return Arrays.copyOfRange(bytes, audioStart, bytes.length);
+    }
+}
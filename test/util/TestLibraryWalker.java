@@ -0,0 +1,96 @@
+package util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import filesystem.PCFile;
+import framework.FileWrapper;
+
+public class TestLibraryWalker {
+    private Path root;
+
+    @Before
+    public void setup() throws IOException {
+        // Artist/Album structure with a file on each level.
+        root = Files.createTempDirectory("mlms-walker");
+        Files.createDirectories(root.resolve("Artist").resolve("Album"));
+        Files.createDirectories(root.resolve("Empty"));
+        Files.createFile(root.resolve("Single.mp3"));
+        Files.createFile(root.resolve("Artist").resolve("Loose.mp3"));
+        Files.createFile(root.resolve("Artist").resolve("Album").resolve("01 Song.mp3"));
+        Files.createFile(root.resolve("Artist").resolve("Album").resolve("cover.jpg"));
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.walk(root).sorted((path1, path2) -> path2.compareTo(path1)).forEach(path -> path.toFile().delete());
+    }
+
+    @Test
+    public void shouldOnlyListTopFolderWhenNotRecursing() throws InterruptedException {
+        List<FileWrapper> listOfFiles = new LibraryWalker(4).walk(new PCFile(root.toString()), false);
+        assertThat(relativePaths(listOfFiles)).containsExactly("Single.mp3");
+    }
+
+    @Test
+    public void shouldFindFilesInNestedFoldersInParallel() throws InterruptedException {
+        List<FileWrapper> listOfFiles = new LibraryWalker(4).walk(new PCFile(root.toString()), true);
+        assertThat(relativePaths(listOfFiles)).containsExactly(
+                "Artist" + File.separator + "Album" + File.separator + "01 Song.mp3",
+                "Artist" + File.separator + "Album" + File.separator + "cover.jpg",
+                "Artist" + File.separator + "Loose.mp3",
+                "Single.mp3");
+    }
+
+    @Test
+    public void shouldNotFollowLinksToFolders() throws InterruptedException {
+        try {
+            // A link back to the root would be walked forever if it were followed.
+            Files.createSymbolicLink(root.resolve("Artist").resolve("Album").resolve("Loop"), root);
+            Files.createSymbolicLink(root.resolve("Artist").resolve("Linked.mp3"), root.resolve("Single.mp3"));
+        } catch (IOException | UnsupportedOperationException e) {
+            Assume.assumeNoException(e); // E.g. Windows without the right to create links.
+        }
+        List<FileWrapper> listOfFiles = new LibraryWalker(4).walk(new PCFile(root.toString()), true);
+        assertThat(relativePaths(listOfFiles)).containsExactly(
+                "Artist" + File.separator + "Album" + File.separator + "01 Song.mp3",
+                "Artist" + File.separator + "Album" + File.separator + "cover.jpg",
+                "Artist" + File.separator + "Linked.mp3",
+                "Artist" + File.separator + "Loose.mp3",
+                "Single.mp3");
+    }
+
+    @Test
+    public void shouldGiveSameResultSequentially() throws InterruptedException {
+        List<FileWrapper> parallel = new LibraryWalker(4).walk(new PCFile(root.toString()), true);
+        List<FileWrapper> sequential = new LibraryWalker(1).walk(new PCFile(root.toString()), true);
+        assertThat(relativePaths(sequential)).isEqualTo(relativePaths(parallel));
+    }
+
+    @Test
+    public void shouldSplitRelativeFolder() {
+        assertThat(LibraryWalker.relativeFolder("Artist" + File.separator + "Album" + File.separator + "Song.mp3"))
+                .isEqualTo("Artist" + File.separator + "Album");
+        assertThat(LibraryWalker.relativeFolder("Song.mp3")).isEmpty();
+    }
+
+    private List<String> relativePaths(List<FileWrapper> listOfFiles) {
+        FileWrapper rootFolder = new PCFile(root.toString());
+        List<String> paths = new ArrayList<>();
+        for (FileWrapper file : listOfFiles) {
+            paths.add(LibraryWalker.relativePath(rootFolder, file));
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,91 @@
+package util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import filesystem.PCFile;
+import framework.FileWrapper;
+
+public class TestListingDiff {
+    private static final String SRC = File.separator + "src";
+    private static final String DST = File.separator + "dst";
+
+    @Test
+    public void shouldFindAddedOrphanedAndCommonFilesInOnePass() throws InterruptedException {
+        final List<String> added = new ArrayList<>();
+        final List<String> orphaned = new ArrayList<>();
+        final List<String> common = new ArrayList<>();
+        ListingDiff.diff(new PCFile(SRC), files(SRC, "B.mp3", "Artist" + File.separator + "A.mp3", "D.mp3"),
+                new PCFile(DST), files(DST, "D.mp3", "C.mp3", "Artist" + File.separator + "A.mp3"),
+                new ListingDiff.Visitor() {
+                    @Override
+                    public void added(String relativePath, FileWrapper fileSrc) {
+                        added.add(relativePath);
+                    }
+
+                    @Override
+                    public void orphaned(String relativePath, FileWrapper fileDst) {
+                        assertThat(fileDst.getAbsolutePath()).startsWith(DST);
+                        orphaned.add(relativePath);
+                    }
+
+                    @Override
+                    public void common(String relativePath, FileWrapper fileSrc, FileWrapper fileDst) {
+                        assertThat(fileSrc.getAbsolutePath()).isEqualTo(SRC + File.separator + relativePath);
+                        assertThat(fileDst.getAbsolutePath()).isEqualTo(DST + File.separator + relativePath);
+                        common.add(relativePath);
+                    }
+                });
+        assertThat(added).containsExactly("B.mp3");
+        assertThat(orphaned).containsExactly("C.mp3");
+        assertThat(common).containsExactly("Artist" + File.separator + "A.mp3", "D.mp3");
+    }
+
+    @Test
+    public void shouldMatchPathsWhichOnlyDifferInCaseWhereCaseDoesNotMatter() throws InterruptedException {
+        final List<String> srcPaths = Arrays.asList("b.mp3", "Artist" + File.separator + "C.mp3", "d.mp3");
+        final List<String> dstPaths = Arrays.asList("artist" + File.separator + "c.MP3", "B.mp3", "D.mp3");
+        final List<String> reported = new ArrayList<>();
+        ListingDiff.Visitor visitor = new ListingDiff.Visitor() {
+            @Override
+            public void added(String relativePath, FileWrapper fileSrc) {
+                reported.add("added " + relativePath);
+            }
+
+            @Override
+            public void orphaned(String relativePath, FileWrapper fileDst) {
+                reported.add("orphaned " + relativePath);
+            }
+
+            @Override
+            public void common(String relativePath, FileWrapper fileSrc, FileWrapper fileDst) {
+                assertThat(fileDst.getName()).isEqualToIgnoringCase(fileSrc.getName());
+                reported.add("common " + relativePath);
+            }
+        };
+        ListingDiff.diff(new PCFile(SRC), files(SRC, srcPaths.toArray(new String[0])), new PCFile(DST),
+                files(DST, dstPaths.toArray(new String[0])), visitor, true);
+        assertThat(reported).containsExactly("common Artist" + File.separator + "C.mp3", "common b.mp3",
+                "common d.mp3");
+
+        reported.clear();
+        ListingDiff.diff(new PCFile(SRC), files(SRC, srcPaths.toArray(new String[0])), new PCFile(DST),
+                files(DST, dstPaths.toArray(new String[0])), visitor, false);
+        assertThat(reported).containsExactlyInAnyOrder("added b.mp3", "added Artist" + File.separator + "C.mp3",
+                "added d.mp3", "orphaned artist" + File.separator + "c.MP3", "orphaned B.mp3", "orphaned D.mp3");
+    }
+
+    private static List<FileWrapper> files(String root, String... relativePaths) {
+        final List<FileWrapper> listOfFiles = new ArrayList<>();
+        for (String relativePath : Arrays.asList(relativePaths)) {
+            listOfFiles.add(new PCFile(root + File.separator + relativePath));
+        }
+        return listOfFiles;
+    }
+}
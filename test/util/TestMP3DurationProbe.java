@@ -0,0 +1,66 @@
+package util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.jaudiotagger.audio.mp3.MP3AudioHeader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import data.DataClass;
+
+public class TestMP3DurationProbe {
+    private Path musicFile;
+
+    @Before
+    public void setup() throws IOException {
+        musicFile = Files.createTempFile("mlms-duration", ".mp3");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(musicFile);
+    }
+
+    @Test
+    public void shouldComputeTheDurationOfCBRMusicFromItsSize() throws Exception {
+        SyntheticMusic.writeMp3(musicFile, 400);
+        MP3DurationProbe.Duration duration = MP3DurationProbe.probe(musicFile, 0);
+        assertThat(duration.getFrameCount()).isBetween(399L, 400L);
+        long expected = Math.round(new MP3AudioHeader(musicFile.toFile()).getPreciseTrackLength() * 1000);
+        assertThat(MP3DurationProbe.isSameDuration(duration.getMillis() + "", expected + "")).isTrue();
+    }
+
+    @Test
+    public void shouldTakeTheFrameCountFromTheXingHeader() throws IOException {
+        SyntheticMusic.writeMp3(musicFile, 10);
+        byte[] bytes = Files.readAllBytes(musicFile);
+        // MPEG-1 stereo: the Xing header follows the frame header and 32 bytes of side information.
+        ByteBuffer xing = ByteBuffer.wrap(bytes, 4 + 32, 12);
+        xing.put("Xing".getBytes(StandardCharsets.ISO_8859_1)).putInt(0x1).putInt(1000);
+        Files.write(musicFile, bytes);
+        MP3DurationProbe.Duration duration = MP3DurationProbe.probe(musicFile, 0);
+        assertThat(duration.getFrameCount()).isEqualTo(1000);
+        assertThat(duration.getMillis()).isEqualTo(1000L * 1152 * 1000 / 44100);
+    }
+
+    @Test
+    public void shouldNotFindADurationWithoutFrames() throws IOException {
+        Files.write(musicFile, new byte[1000]);
+        assertThat(MP3DurationProbe.probe(musicFile, 0)).isNull();
+    }
+
+    @Test
+    public void shouldCompareDurationsWithATolerance() {
+        assertThat(MP3DurationProbe.isSameDuration("180000", "180999")).isTrue();
+        assertThat(MP3DurationProbe.isSameDuration("180000", "181001")).isFalse();
+        assertThat(MP3DurationProbe.isSameDuration(DataClass.ERROR_STRING, "180000")).isFalse();
+        assertThat(MP3DurationProbe.isSameDuration(DataClass.ERROR_STRING, DataClass.ERROR_STRING)).isTrue();
+    }
+}
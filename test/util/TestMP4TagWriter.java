@@ -0,0 +1,145 @@
+package util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.jaudiotagger.audio.mp4.Mp4TagReader;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.mp4.Mp4Tag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestMP4TagWriter {
+    private static final byte[] AUDIO = new byte[5000];
+    private Path musicFile;
+
+    static {
+        new Random(17).nextBytes(AUDIO);
+    }
+
+    @Before
+    public void setup() throws IOException {
+        musicFile = Files.createTempFile("mlms-mp4", ".m4a");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(musicFile);
+    }
+
+    @Test
+    public void shouldWriteTheItemsInTheFreeAtomAfterThem() throws Exception {
+        Files.write(musicFile, concat(ftyp(), moov(1000), atom("mdat", AUDIO)));
+        long size = Files.size(musicFile);
+        long mdatStart = size - AUDIO.length - 8;
+        assertThat(MP4TagWriter.write(musicFile, tags(FieldKey.TITLE, "A much longer title", FieldKey.TRACK, "4",
+                FieldKey.GENRE, "Jazz"))).isTrue();
+        assertThat(Files.size(musicFile)).isEqualTo(size);
+        assertThat(audioAt(mdatStart)).isEqualTo(AUDIO);
+        Mp4Tag tag = readTag();
+        assertThat(tag.getFirst(FieldKey.TITLE)).isEqualTo("A much longer title");
+        assertThat(tag.getFirst(FieldKey.ALBUM)).isEqualTo("Album");
+        assertThat(tag.getFirst(FieldKey.TRACK)).isEqualTo("4");
+        assertThat(tag.getFirst(FieldKey.TRACK_TOTAL)).isEqualTo("12");
+        assertThat(tag.getFirst(FieldKey.GENRE)).isEqualTo("Jazz");
+    }
+
+    @Test
+    public void shouldGrowTheMoovAtomOnlyWhenItIsAfterTheAudio() throws Exception {
+        char[] longTitle = new char[2000];
+        Arrays.fill(longTitle, 'a');
+        Files.write(musicFile, concat(ftyp(), moov(0), atom("mdat", AUDIO)));
+        byte[] before = Files.readAllBytes(musicFile);
+        assertThat(MP4TagWriter.write(musicFile, tags(FieldKey.TITLE, new String(longTitle)))).isFalse();
+        assertThat(Files.readAllBytes(musicFile)).isEqualTo(before);
+
+        Files.write(musicFile, concat(ftyp(), atom("mdat", AUDIO), moov(0)));
+        assertThat(MP4TagWriter.write(musicFile, tags(FieldKey.TITLE, new String(longTitle)))).isTrue();
+        assertThat(audioAt(ftyp().length)).isEqualTo(AUDIO);
+        assertThat(readTag().getFirst(FieldKey.TITLE)).isEqualTo(new String(longTitle));
+        assertThat(Files.size(musicFile)).isGreaterThan(before.length + 1900L + MP4TagWriter.GROWTH_PADDING);
+    }
+
+    @Test
+    public void shouldNotWriteAMoovAtomWhoseSizeIsUpToTheEndOfTheFile() throws Exception {
+        char[] longTitle = new char[2000];
+        Arrays.fill(longTitle, 'a');
+        byte[] moov = moov(0);
+        Arrays.fill(moov, 0, 4, (byte) 0);
+        Files.write(musicFile, concat(ftyp(), atom("mdat", AUDIO), moov));
+        byte[] before = Files.readAllBytes(musicFile);
+        assertThat(MP4TagWriter.write(musicFile, tags(FieldKey.TITLE, new String(longTitle)))).isFalse();
+        assertThat(Files.readAllBytes(musicFile)).isEqualTo(before);
+    }
+
+    private Mp4Tag readTag() throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(musicFile.toFile(), "r")) {
+            return new Mp4TagReader().read(file);
+        }
+    }
+
+    private byte[] audioAt(long position) throws IOException {
+        byte[] bytes = Files.readAllBytes(musicFile);
+        return Arrays.copyOfRange(bytes, (int) position + 8, (int) position + 8 + AUDIO.length);
+    }
+
+    private static Map<FieldKey, String> tags(Object... keysAndValues) {
+        Map<FieldKey, String> tags = new EnumMap<>(FieldKey.class);
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            tags.put((FieldKey) keysAndValues[i], (String) keysAndValues[i + 1]);
+        }
+        return tags;
+    }
+
+    private static byte[] ftyp() throws IOException {
+        return atom("ftyp", "M4A ".getBytes(StandardCharsets.ISO_8859_1), new byte[4]);
+    }
+
+    /**
+     * A moov atom with a title, album, track number ("3/12") and an ID3v1 genre
+     * index, followed by a free atom of the given size (if not 0) in the meta
+     * atom.
+     */
+    private static byte[] moov(int freeSize) throws IOException {
+        byte[] ilst = atom("ilst", item("\u00A9nam", 1, "Title".getBytes(StandardCharsets.UTF_8)),
+                item("\u00A9alb", 1, "Album".getBytes(StandardCharsets.UTF_8)),
+                item("trkn", 0, new byte[] { 0, 0, 0, 3, 0, 12, 0, 0 }), item("gnre", 0, new byte[] { 0, 18 }));
+        byte[] hdlr = atom("hdlr", new byte[25]);
+        byte[] meta = freeSize == 0 ? atom("meta", new byte[4], hdlr, ilst)
+                : atom("meta", new byte[4], hdlr, ilst, atom("free", new byte[freeSize - 8]));
+        return atom("moov", atom("mvhd", new byte[100]), atom("udta", meta));
+    }
+
+    private static byte[] item(String name, int type, byte[] payload) throws IOException {
+        return atom(name, atom("data", ByteBuffer.allocate(8).putInt(type).array(), payload));
+    }
+
+    private static byte[] atom(String type, byte[]... children) throws IOException {
+        byte[] contents = concat(children);
+        ByteArrayOutputStream atom = new ByteArrayOutputStream();
+        atom.write(ByteBuffer.allocate(4).putInt(contents.length + 8).array());
+        atom.write(type.getBytes(StandardCharsets.ISO_8859_1));
+        atom.write(contents);
+        return atom.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part);
+        }
+        return out.toByteArray();
+    }
+}
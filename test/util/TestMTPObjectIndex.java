@@ -0,0 +1,196 @@
+package util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jaudiotagger.tag.FieldKey;
+import org.junit.Before;
+import org.junit.Test;
+
+import filesystem.MTPFile;
+import framework.FileWrapper;
+import jmtp.AudioPropertyReader;
+import jmtp.PortableDeviceAudioObject;
+import jmtp.PortableDeviceFolderObject;
+import jmtp.PortableDeviceObject;
+import jmtp.PortableDeviceStorageObject;
+
+public class TestMTPObjectIndex {
+    private static final String SEP = File.separator;
+    private final List<String> listedFolders = new ArrayList<>();
+    private final List<String> deletedFiles = new ArrayList<>();
+    private final List<String> uploadedFiles = new ArrayList<>();
+    private final Map<String, Object> writtenTags = new HashMap<>();
+    private PortableDeviceStorageObject storage;
+
+    @Before
+    public void setup() {
+        // Music/Artist/Song.mp3 and Music/Other.mp3 in the root of the storage.
+        PortableDeviceObject song = file("Song.mp3");
+        PortableDeviceObject artist = folder("Artist", song);
+        PortableDeviceObject music = folder("Music", artist, file("Other.mp3"));
+        storage = (PortableDeviceStorageObject) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { PortableDeviceStorageObject.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("getChildObjects")) {
+                        listedFolders.add("");
+                        return new PortableDeviceObject[] { music };
+                    }
+                    return null;
+                });
+    }
+
+    @Test
+    public void shouldListEachFolderOnlyOnce() {
+        MTPObjectIndex index = new MTPObjectIndex(storage);
+        assertThat(index.get("Music" + SEP + "Artist" + SEP + "Song.mp3").getOriginalFileName()).isEqualTo("Song.mp3");
+        assertThat(index.get("Music" + SEP + "Other.mp3")).isNotNull();
+        assertThat(index.get("Music" + SEP + "Artist" + SEP + "Missing.mp3")).isNull();
+        assertThat(index.get("Music" + SEP + "Artist" + SEP)).isNotNull();
+        assertThat(index.getChildren("Music" + SEP + "Artist")).containsOnlyKeys("Music" + SEP + "Artist" + SEP + "Song.mp3");
+        assertThat(listedFolders).containsExactly("", "Music", "Artist");
+    }
+
+    @Test
+    public void shouldKeepTrackOfCreatedAndDeletedObjects() {
+        MTPObjectIndex index = new MTPObjectIndex(storage);
+        PortableDeviceFolderObject album = index.getOrCreateFolder("Music" + SEP + "Artist" + SEP + "Album");
+        assertThat(album.getOriginalFileName()).isEqualTo("Album");
+        assertThat(index.get("Music" + SEP + "Artist" + SEP + "Album")).isSameAs(album);
+        assertThat(index.getChildren("Music" + SEP + "Artist")).hasSize(2);
+
+        index.put("Music" + SEP + "Artist" + SEP + "Album" + SEP + "New.mp3", file("New.mp3"));
+        assertThat(index.getChildren("Music" + SEP + "Artist" + SEP + "Album")).hasSize(1);
+        index.remove("Music" + SEP + "Artist");
+        assertThat(index.get("Music" + SEP + "Artist" + SEP + "Album" + SEP + "New.mp3")).isNull();
+        assertThat(index.getChildren("Music")).hasSize(1);
+        // Neither the created folder nor the removed ones were listed on the device.
+        assertThat(listedFolders).containsExactly("", "Music", "Artist");
+    }
+
+    @Test
+    public void shouldNotLookUpFilesUntilTheyAreUsed() {
+        MTPObjectIndex index = new MTPObjectIndex(storage);
+        MTPFile song = new MTPFile(index, "Music" + SEP + "Artist" + SEP + "Song.mp3");
+        assertThat(song.getName()).isEqualTo("Song.mp3");
+        assertThat(listedFolders).isEmpty();
+
+        FileWrapper[] children = new MTPFile(index, "Music").listFiles();
+        assertThat(children).extracting(FileWrapper::getName).containsExactly("Artist", "Other.mp3");
+        assertThat(children[0].listFiles()).hasSize(1);
+        assertThat(listedFolders).containsExactly("", "Music", "Artist");
+    }
+
+    @Test
+    public void shouldUploadIntoAFolderResolvedOnce() throws Exception {
+        MTPObjectIndex index = new MTPObjectIndex(storage);
+        new MTPFileManager(null, index).addFiles(Arrays.asList(new File("Song.mp3"), new File("New.mp3")),
+                "Music" + SEP + "Artist");
+        assertThat(deletedFiles).containsExactly("Song.mp3");
+        assertThat(uploadedFiles).containsExactly("Song.mp3", "New.mp3");
+        assertThat(index.getChildren("Music" + SEP + "Artist")).hasSize(2);
+        assertThat(listedFolders).containsExactly("", "Music", "Artist");
+    }
+
+    @Test
+    public void shouldReadThePropertiesOfAFolderOfMusicAtOnce() {
+        List<String> readTitles = new ArrayList<>();
+        MTPObjectIndex index = new MTPObjectIndex(storage, new AudioPropertyReader() {
+            @Override
+            public Properties read(PortableDeviceAudioObject object) {
+                readTitles.add(object.getOriginalFileName());
+                return new Properties(object.getOriginalFileName(), "Artist", null, null, null, null, null, 1,
+                        BigInteger.valueOf(1000), BigInteger.TEN, null);
+            }
+        });
+        MTPFile other = new MTPFile(index, "Music" + SEP + "Other.mp3");
+        assertThat(other.getTagData(FieldKey.ARTIST)).isEqualTo("Artist");
+        assertThat(other.getTagData(FieldKey.TITLE)).isEqualTo("Other.mp3");
+        assertThat(other.length()).isEqualTo(10);
+        assertThat(other.getDuration()).isEqualTo("1000");
+        // The folder Artist in Music is not music.
+        assertThat(readTitles).containsExactly("Other.mp3");
+
+        index.forgetProperties("Music" + SEP + "Other.mp3");
+        assertThat(index.getProperties("Music" + SEP + "Other.mp3")).isNotNull();
+        assertThat(index.getProperties("Music" + SEP + "Artist")).isNull();
+        assertThat(readTitles).containsExactly("Other.mp3", "Other.mp3");
+    }
+
+    @Test
+    public void shouldWriteChangedTagsOnlyWhenTheyAreApplied() {
+        Date releaseDate = new GregorianCalendar(1999, Calendar.MAY, 4).getTime();
+        MTPObjectIndex index = new MTPObjectIndex(storage, new AudioPropertyReader() {
+            @Override
+            public Properties read(PortableDeviceAudioObject object) {
+                return new Properties(null, null, null, null, releaseDate, null, null, 1, null, null, null);
+            }
+        });
+        MTPFile other = new MTPFile(index, "Music" + SEP + "Other.mp3");
+        other.changeTag(FieldKey.TITLE, "New Title");
+        other.changeTag(FieldKey.YEAR, "2005");
+        assertThat(writtenTags).isEmpty();
+        assertThat(other.hasTagChanges()).isTrue();
+
+        assertThat(other.applyTagChanges()).isTrue();
+        assertThat(other.hasTagChanges()).isFalse();
+        Calendar written = Calendar.getInstance();
+        written.setTime((Date) writtenTags.get("setReleaseDate"));
+        assertThat(written.get(Calendar.YEAR)).isEqualTo(2005);
+        assertThat(written.get(Calendar.MONTH)).isEqualTo(Calendar.MAY);
+        assertThat(writtenTags).containsOnlyKeys("setTitle", "setReleaseDate").containsEntry("setTitle", "New Title");
+    }
+
+    private PortableDeviceObject file(String name) {
+        return (PortableDeviceObject) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { PortableDeviceAudioObject.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getOriginalFileName":
+                        return name;
+                    case "canDelete":
+                        return true;
+                    case "delete":
+                        deletedFiles.add(name);
+                        return null;
+                    default:
+                        if (method.getName().startsWith("set")) {
+                            writtenTags.put(method.getName(), args[0]);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private PortableDeviceFolderObject folder(String name, PortableDeviceObject... children) {
+        return (PortableDeviceFolderObject) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { PortableDeviceFolderObject.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getOriginalFileName":
+                        return name;
+                    case "getChildObjects":
+                        listedFolders.add(name);
+                        return children;
+                    case "createFolderObject":
+                        return folder((String) args[0]);
+                    case "addAudioObject":
+                        uploadedFiles.add(((File) args[0]).getName());
+                        return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                new Class<?>[] { PortableDeviceAudioObject.class }, (audio, audioMethod,
+                                        audioArgs) -> audioMethod.getName().equals("getOriginalFileName")
+                                                ? ((File) args[0]).getName() : null);
+                    default:
+                        return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,86 @@
+package util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestPipeline {
+    private static final Pipeline.Stage<Integer, Integer> SQUARE = new Pipeline.Stage<Integer, Integer>() {
+        @Override
+        public Integer process(Integer input) {
+            return input * input;
+        }
+    };
+
+    @Test
+    public void shouldPassEveryOutputToTheCallingThread() throws InterruptedException {
+        final List<Integer> inputs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            inputs.add(i);
+        }
+        final Thread callingThread = Thread.currentThread();
+        final List<Integer> outputs = new ArrayList<>();
+        new Pipeline<Integer, Integer>(4, 8).run(inputs, SQUARE, new Pipeline.Sink<Integer>() {
+            @Override
+            public void accept(Integer output) {
+                assertThat(Thread.currentThread()).isSameAs(callingThread);
+                outputs.add(output);
+            }
+        });
+        assertThat(outputs).hasSize(1000).contains(0, 1, 998001);
+    }
+
+    @Test
+    public void shouldStopWhenAWorkerFails() throws InterruptedException {
+        final List<Integer> inputs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            inputs.add(i);
+        }
+        try {
+            new Pipeline<Integer, Integer>(4, 2).run(inputs, new Pipeline.Stage<Integer, Integer>() {
+                @Override
+                public Integer process(Integer input) throws InterruptedException {
+                    if (input == 50) {
+                        throw new InterruptedException();
+                    }
+                    return input;
+                }
+            }, new Pipeline.Sink<Integer>() {
+                @Override
+                public void accept(Integer output) {
+                }
+            });
+            fail("The interruption of the worker was not passed on.");
+        } catch (InterruptedException expected) {
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void shouldPassErrorsOfWorkersOn() throws InterruptedException {
+        final List<Integer> inputs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            inputs.add(i);
+        }
+        try {
+            new Pipeline<Integer, Integer>(4, 2).run(inputs, new Pipeline.Stage<Integer, Integer>() {
+                @Override
+                public Integer process(Integer input) {
+                    if (input == 50) {
+                        throw new StackOverflowError();
+                    }
+                    return input;
+                }
+            }, new Pipeline.Sink<Integer>() {
+                @Override
+                public void accept(Integer output) {
+                }
+            });
+            fail("The error of the worker was not passed on.");
+        } catch (StackOverflowError expected) {
+        }
+    }
+}
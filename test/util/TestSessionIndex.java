@@ -0,0 +1,88 @@
+package util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import data.FileState;
+import data.Fingerprint;
+
+public class TestSessionIndex {
+    private Path sessionFile;
+
+    @Before
+    public void setup() throws IOException {
+        sessionFile = Files.createTempFile("mlms-session", ".dat");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(sessionFile);
+    }
+
+    @Test
+    public void shouldFindEveryFileRegardlessOfInsertionOrder() throws IOException {
+        SessionIndex.Writer writer = new SessionIndex.Writer();
+        writer.add("Zebra.mp3", new FileState(3, 30, new Fingerprint(5, 6)));
+        writer.add("Artist\\Album\\Song.mp3", new FileState(1, 10, new Fingerprint(1, 2)));
+        writer.add("r.m4a", new FileState(2, 20, Fingerprint.UNKNOWN));
+        writer.write(sessionFile);
+        try (SessionIndex index = SessionIndex.load(sessionFile)) {
+            assertThat(index.size()).isEqualTo(3);
+            FileState song = index.find("Artist\\Album\\Song.mp3");
+            assertThat(song.getSize()).isEqualTo(1);
+            assertThat(song.getLastModified()).isEqualTo(10);
+            assertThat(song.getFingerprint()).isEqualTo(new Fingerprint(1, 2));
+            assertThat(index.find("Zebra.mp3").getFingerprint()).isEqualTo(new Fingerprint(5, 6));
+            assertThat(index.find("r.m4a").getFingerprint().isKnown()).isFalse();
+            assertThat(index.find("Missing.mp3")).isNull();
+        }
+    }
+
+    @Test
+    public void shouldWriteTheSessionWithoutRemovedFiles() throws IOException {
+        SessionIndex.Writer writer = new SessionIndex.Writer();
+        writer.add("Kept.mp3", new FileState(1, 10, new Fingerprint(1, 2)));
+        writer.add("Failed.mp3", new FileState(2, 20, new Fingerprint(3, 4)));
+        writer.removeAll(Arrays.asList("Failed.mp3"));
+        writer.write(sessionFile);
+        try (SessionIndex index = SessionIndex.load(sessionFile)) {
+            assertThat(index.size()).isEqualTo(1);
+            assertThat(index.find("Kept.mp3").getFingerprint()).isEqualTo(new Fingerprint(1, 2));
+            assertThat(index.find("Failed.mp3")).isNull();
+        }
+    }
+
+    @Test
+    public void shouldTreatTruncatedFilesAsEmptySession() throws IOException {
+        SessionIndex.Writer writer = new SessionIndex.Writer();
+        writer.add("Artist\\Album\\Song.mp3", new FileState(1, 10, new Fingerprint(1, 2)));
+        writer.write(sessionFile);
+        byte[] bytes = Files.readAllBytes(sessionFile);
+        // The entry table is intact, but the name is cut short.
+        Files.write(sessionFile, Arrays.copyOf(bytes, bytes.length - 5));
+        try (SessionIndex index = SessionIndex.load(sessionFile)) {
+            assertThat(index.isEmpty()).isTrue();
+            assertThat(index.find("Artist\\Album\\Song.mp3")).isNull();
+        }
+    }
+
+    @Test
+    public void shouldTreatEmptyOrForeignFilesAsEmptySession() throws IOException {
+        try (SessionIndex index = SessionIndex.load(sessionFile)) {
+            assertThat(index.isEmpty()).isTrue();
+        }
+        Files.write(sessionFile, "Song.mp3\n1 2 3 4\n".getBytes("UTF-8"));
+        try (SessionIndex index = SessionIndex.load(sessionFile)) {
+            assertThat(index.isEmpty()).isTrue();
+            assertThat(index.find("Song.mp3")).isNull();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jaudiotagger.tag.FieldKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import data.DataClass;
+import data.DestinationSnapshot;
+import data.Fingerprint;
+
+public class TestSourceMetadataStore {
+    private static final List<FieldKey> FIELD_KEYS = Arrays.asList(FieldKey.TITLE, FieldKey.ARTIST);
+    private Path storeFile;
+
+    @Before
+    public void setup() throws IOException {
+        storeFile = Files.createTempFile("mlms-src", ".dat");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(storeFile);
+    }
+
+    @Test
+    public void shouldForgetMetadataOnceTheMusicChanges() {
+        SourceMetadataStore store = new SourceMetadataStore(FIELD_KEYS);
+        store.putTagData("C:\\Music\\Song.mp3", 100, 5, FieldKey.TITLE, "Song");
+        store.putDuration("C:\\Music\\Song.mp3", 100, 5, "180");
+        assertThat(store.getTagData("C:\\Music\\Song.mp3", 100, 5, FieldKey.TITLE)).isEqualTo("Song");
+        assertThat(store.getTagData("C:\\Music\\Song.mp3", 100, 5, FieldKey.ARTIST)).isNull();
+        assertThat(store.getTagData("C:\\Music\\Song.mp3", 100, 6, FieldKey.TITLE)).isNull();
+
+        store.putTagData("C:\\Music\\Song.mp3", 101, 6, FieldKey.ARTIST, "Artist");
+        assertThat(store.getDuration("C:\\Music\\Song.mp3", 101, 6)).isNull(); // The old entry is gone.
+        assertThat(store.getTagData("C:\\Music\\Song.mp3", 101, 6, FieldKey.ARTIST)).isEqualTo("Artist");
+    }
+
+    @Test
+    public void shouldLoadTheSavedMetadata() throws IOException {
+        SourceMetadataStore store = new SourceMetadataStore(FIELD_KEYS);
+        for (int i = 0; i < 3; i++) {
+            String path = "C:\\Music\\Song" + i + ".mp3";
+            store.putTagData(path, 100 + i, 5, FieldKey.TITLE, "Song " + i);
+            store.putTagData(path, 100 + i, 5, FieldKey.ARTIST, "Same Artist");
+            store.putArtworkDigest(path, 100 + i, 5, 42 + i);
+            store.putFingerprint(path, 100 + i, 5, new Fingerprint(i, -i));
+        }
+        store.putTagData("C:\\Music\\Broken.mp3", 10, 5, FieldKey.TITLE, DataClass.ERROR_STRING);
+        store.save(storeFile);
+
+        SourceMetadataStore loadedStore = new SourceMetadataStore(FIELD_KEYS);
+        loadedStore.load(storeFile);
+        assertThat(loadedStore.size()).isEqualTo(4);
+        assertThat(loadedStore.getTagData("C:\\Music\\Song2.mp3", 102, 5, FieldKey.TITLE)).isEqualTo("Song 2");
+        assertThat(loadedStore.getTagData("C:\\Music\\Song2.mp3", 102, 5, FieldKey.ARTIST)).isEqualTo("Same Artist");
+        assertThat(loadedStore.getArtworkDigest("C:\\Music\\Song2.mp3", 102, 5)).isEqualTo(44);
+        assertThat(loadedStore.getFingerprint("C:\\Music\\Song2.mp3", 102, 5)).isEqualTo(new Fingerprint(2, -2));
+        assertThat(loadedStore.getTagData("C:\\Music\\Broken.mp3", 10, 5, FieldKey.TITLE)).isNull();
+        assertThat(loadedStore.getArtworkDigest("C:\\Music\\Broken.mp3", 10, 5))
+                .isEqualTo(DestinationSnapshot.UNKNOWN_ARTWORK);
+    }
+
+    @Test
+    public void shouldDropMusicWhichIsNoLongerInSrc() throws IOException {
+        SourceMetadataStore store = new SourceMetadataStore(FIELD_KEYS);
+        store.putTagData("C:\\Music\\Kept.mp3", 100, 5, FieldKey.TITLE, "Kept");
+        store.putTagData("C:\\Music\\Used.mp3", 100, 5, FieldKey.TITLE, "Used");
+        store.putTagData("C:\\Music\\Gone.mp3", 100, 5, FieldKey.TITLE, "Gone");
+        store.save(storeFile);
+
+        store.load(storeFile);
+        store.keep("C:\\Music\\Kept.mp3");
+        store.getTagData("C:\\Music\\Used.mp3", 100, 5, FieldKey.TITLE);
+        store.save(storeFile);
+        store.load(storeFile);
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.getTagData("C:\\Music\\Kept.mp3", 100, 5, FieldKey.TITLE)).isEqualTo("Kept");
+        assertThat(store.getTagData("C:\\Music\\Gone.mp3", 100, 5, FieldKey.TITLE)).isNull();
+    }
+
+    @Test
+    public void shouldKeepTheMusicOfOtherSrcFolders() throws IOException {
+        Path otherMusic = Files.createTempFile("mlms-other", ".mp3");
+        try {
+            SourceMetadataStore store = new SourceMetadataStore(FIELD_KEYS);
+            store.putTagData(otherMusic.toString(), 100, 5, FieldKey.TITLE, "Other");
+            store.save(storeFile);
+
+            // A session for another src folder neither uses nor keeps the music.
+            store.load(storeFile);
+            store.save(storeFile);
+            store.load(storeFile);
+            assertThat(store.getTagData(otherMusic.toString(), 100, 5, FieldKey.TITLE)).isEqualTo("Other");
+        } finally {
+            Files.delete(otherMusic);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+
+import org.jaudiotagger.tag.FieldKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import data.DestinationSnapshot;
+import data.FileState;
+import data.Fingerprint;
+import data.SyncPlan;
+import data.TagPatch;
+
+public class TestSyncPlanFile {
+    private static final List<FieldKey> FIELD_KEYS = Arrays.asList(FieldKey.TITLE, FieldKey.GENRE);
+    private static final String SRC = "C:\\Music";
+    private static final String DST = "D:\\Music";
+    private Path planFile;
+
+    @Before
+    public void setup() throws IOException {
+        planFile = Files.createTempFile("mlms-plan", ".dat");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(planFile);
+    }
+
+    @Test
+    public void shouldLoadTheSavedPlan() throws IOException {
+        SyncPlan plan = new SyncPlan(SRC, DST);
+        plan.addDelete("Old\\Song.mp3");
+        plan.addAdd("New\\Song.mp3");
+        EnumMap<FieldKey, String> tagChanges = new EnumMap<>(FieldKey.class);
+        tagChanges.put(FieldKey.GENRE, "Jazz");
+        plan.addPatch(new SyncPlan.FilePatch("Artist\\Song.mp3",
+                TagPatch.tagChanges(tagChanges, TagPatch.ArtworkAction.REPLACE),
+                new DestinationSnapshot(-1, 0, "180", new String[] { "Song", "Jazz" }, 42)));
+        plan.addSessionEntry("Artist\\Song.mp3", new FileState(1000, 2000, new Fingerprint(1, 2)));
+        plan.addSessionEntry("New\\Song.mp3", new FileState(3000, 4000, Fingerprint.UNKNOWN));
+        SyncPlanFile.save(plan, planFile, FIELD_KEYS);
+
+        SyncPlan loadedPlan = SyncPlanFile.load(planFile, FIELD_KEYS);
+        assertThat(loadedPlan.getSrcRoot()).isEqualTo(SRC);
+        assertThat(loadedPlan.getDstRoot()).isEqualTo(DST);
+        assertThat(loadedPlan.getDeletes()).containsExactly("Old\\Song.mp3");
+        assertThat(loadedPlan.getAdds()).containsExactly("New\\Song.mp3");
+        SyncPlan.FilePatch filePatch = loadedPlan.getPatches().get(0);
+        assertThat(filePatch.getRelativePath()).isEqualTo("Artist\\Song.mp3");
+        assertThat(filePatch.getPatch().getTagChanges()).containsEntry(FieldKey.GENRE, "Jazz").hasSize(1);
+        assertThat(filePatch.getPatch().getArtworkAction()).isEqualTo(TagPatch.ArtworkAction.REPLACE);
+        assertThat(filePatch.getResult().getTagValues()).containsExactly("Song", "Jazz");
+        assertThat(filePatch.getResult().getArtworkDigest()).isEqualTo(42);
+        // The session of the plan is applied along with it.
+        assertThat(loadedPlan.getSession()).containsOnlyKeys("Artist\\Song.mp3", "New\\Song.mp3");
+        FileState fileState = loadedPlan.getSession().get("Artist\\Song.mp3");
+        assertThat(fileState.getSize()).isEqualTo(1000);
+        assertThat(fileState.getLastModified()).isEqualTo(2000);
+        assertThat(fileState.getFingerprint()).isEqualTo(new Fingerprint(1, 2));
+        assertThat(loadedPlan.getSession().get("New\\Song.mp3").getFingerprint()).isEqualTo(Fingerprint.UNKNOWN);
+    }
+
+    @Test
+    public void shouldRefusePlansOfOtherFieldKeys() throws IOException {
+        SyncPlanFile.save(new SyncPlan(SRC, DST), planFile, FIELD_KEYS);
+        try {
+            SyncPlanFile.load(planFile, Arrays.asList(FieldKey.TITLE));
+            fail("A plan made with other field keys was loaded.");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Random;
+
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldKey;
+import org.junit.After;
+import org.junit.Test;
+
+import data.DestinationSnapshot;
+import data.Fingerprint;
+
+public class TestVorbisCommentReader {
+    private static final byte[] AUDIO = new byte[5000];
+    private static final byte[] IMAGE = new byte[3000];
+    private static final FieldKey[] FIELD_KEYS = { FieldKey.TITLE, FieldKey.ARTIST, FieldKey.ALBUM_ARTIST,
+            FieldKey.ALBUM, FieldKey.YEAR, FieldKey.TRACK, FieldKey.GENRE, FieldKey.COMPOSER };
+    private Path musicFile;
+
+    static {
+        new Random(17).nextBytes(AUDIO);
+        new Random(18).nextBytes(IMAGE);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(musicFile);
+    }
+
+    @Test
+    public void shouldReadFlacMetadataLikeJaudiotagger() throws Exception {
+        musicFile = Files.createTempFile("mlms-flac", ".flac");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("fLaC".getBytes(StandardCharsets.US_ASCII));
+        out.write(flacBlock(0, false, streamInfo(44100, 441000)));
+        out.write(flacBlock(4, false, comments("title=Title", "TITLE=Second Title", "ARTIST=Artist",
+                "ALBUMARTIST=Album Artist", "DATE=2001", "TRACKNUMBER=03", "GENRE=Jazz")));
+        out.write(flacBlock(6, false, picture()));
+        out.write(flacBlock(1, true, new byte[100])); // Padding.
+        long audioStart = out.size();
+        out.write(AUDIO);
+        Files.write(musicFile, out.toByteArray());
+
+        VorbisCommentReader.Tag tag = VorbisCommentReader.readFlac(musicFile);
+        AudioFile audioFile = AudioFileIO.read(musicFile.toFile());
+        for (FieldKey fieldKey : FIELD_KEYS) {
+            assertThat(tag.getFirst(fieldKey)).as(fieldKey.name()).isEqualTo(audioFile.getTag().getFirst(fieldKey));
+        }
+        assertThat(tag.getFirst(FieldKey.TITLE)).isEqualTo("Title");
+        assertThat(tag.getDurationMillis()).isEqualTo(10000);
+        assertThat(tag.getAudioStart()).isEqualTo(audioStart);
+        assertThat(tag.artworkDigest(musicFile))
+                .isEqualTo(ContentFingerprinter.artworkDigest(audioFile.getTag().getFirstArtwork()));
+    }
+
+    @Test
+    public void shouldReadOpusCommentsSpanningSeveralPages() throws Exception {
+        musicFile = Files.createTempFile("mlms-opus", ".opus");
+        long audioStart = writeOpus(musicFile, "TITLE=Title", "METADATA_BLOCK_PICTURE="
+                + Base64.getEncoder().encodeToString(picture()));
+
+        VorbisCommentReader.Tag tag = VorbisCommentReader.readOgg(musicFile);
+        assertThat(tag.getFirst(FieldKey.TITLE)).isEqualTo("Title");
+        assertThat(tag.getFirst(FieldKey.ALBUM)).isEmpty();
+        assertThat(tag.getAudioStart()).isEqualTo(audioStart);
+        // 10 pages of 960 samples each, less the pre-skip of 312 samples.
+        assertThat(tag.getDurationMillis()).isEqualTo((10 * 960 - 312) * 1000 / 48000);
+        assertThat(tag.artworkDigest(musicFile)).isEqualTo(ContentFingerprinter.artworkDigest(IMAGE, 0, IMAGE.length));
+    }
+
+    @Test
+    public void shouldFingerprintTheSameOggAudioBehindOtherComments() throws Exception {
+        musicFile = Files.createTempFile("mlms-opus", ".opus");
+        writeOpus(musicFile, "TITLE=Title");
+        Fingerprint before = ContentFingerprinter.fingerprint(musicFile, "OPUS");
+        writeOpus(musicFile, "TITLE=Title", "METADATA_BLOCK_PICTURE="
+                + Base64.getEncoder().encodeToString(picture()));
+        Fingerprint after = ContentFingerprinter.fingerprint(musicFile, "OPUS");
+        assertThat(after.getAudioHash()).isEqualTo(before.getAudioHash());
+        assertThat(after.getTagHash()).isNotEqualTo(before.getTagHash());
+        assertThat(VorbisCommentReader.readOgg(musicFile).artworkDigest(musicFile))
+                .isNotEqualTo(DestinationSnapshot.NO_ARTWORK);
+    }
+
+    @Test
+    public void shouldLeaveCommentsWithAnOverlongLengthToJaudiotagger() throws Exception {
+        musicFile = Files.createTempFile("mlms-flac", ".flac");
+        byte[] comments = comments("TITLE=Title", "ARTIST=Artist", "ALBUM=Album");
+        // The length of the second comment; adding it to its position overflows.
+        ByteBuffer.wrap(comments).order(ByteOrder.LITTLE_ENDIAN).putInt(4 + 4 + 4 + 4 + 11, Integer.MAX_VALUE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("fLaC".getBytes(StandardCharsets.US_ASCII));
+        out.write(flacBlock(0, false, streamInfo(44100, 441000)));
+        out.write(flacBlock(4, true, comments));
+        out.write(AUDIO);
+        Files.write(musicFile, out.toByteArray());
+
+        assertThat(VorbisCommentReader.readFlac(musicFile)).isNull();
+        assertThat(ContentFingerprinter.fingerprint(musicFile, "FLAC").isKnown()).isTrue();
+    }
+
+    /**
+     * Write an Opus file whose comment header is split into pages of at most 8
+     * segments, followed by 10 audio pages.
+     *
+     * @return the position of the first audio page.
+     */
+    private static long writeOpus(Path path, String... comments) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer head = ByteBuffer.allocate(19).order(ByteOrder.LITTLE_ENDIAN);
+        head.put("OpusHead".getBytes(StandardCharsets.US_ASCII)).put((byte) 1).put((byte) 2).putShort((short) 312)
+                .putInt(48000).putShort((short) 0).put((byte) 0);
+        int sequence = writePackets(out, head.array(), 0, 0, 8);
+        ByteArrayOutputStream tags = new ByteArrayOutputStream();
+        tags.write("OpusTags".getBytes(StandardCharsets.US_ASCII));
+        tags.write(comments(comments));
+        sequence = writePackets(out, tags.toByteArray(), 0, sequence, 8);
+        long audioStart = out.size();
+        for (int i = 0; i < 10; i++) {
+            byte[] packet = new byte[AUDIO.length / 10];
+            System.arraycopy(AUDIO, i * packet.length, packet, 0, packet.length);
+            sequence = writePackets(out, packet, (i + 1) * 960, sequence, 255);
+        }
+        Files.write(path, out.toByteArray());
+        return audioStart;
+    }
+
+    /**
+     * Write a packet as pages of the given amount of segments, the last of
+     * which ends with the packet.
+     *
+     * @return the sequence number of the next page.
+     */
+    private static int writePackets(ByteArrayOutputStream out, byte[] packet, long granulePosition, int sequence,
+            int maxSegments) throws IOException {
+        int segments = packet.length / 255 + 1;
+        int offset = 0;
+        while (segments > 0) {
+            int pageSegments = Math.min(segments, maxSegments);
+            segments -= pageSegments;
+            boolean isLastPage = segments == 0;
+            int bodySize = isLastPage ? packet.length - offset : pageSegments * 255;
+            ByteBuffer page = ByteBuffer.allocate(27 + pageSegments + bodySize).order(ByteOrder.LITTLE_ENDIAN);
+            page.put("OggS".getBytes(StandardCharsets.US_ASCII)).put((byte) 0)
+                    .put((byte) ((offset > 0 ? 1 : 0) | (sequence == 0 ? 2 : 0)))
+                    .putLong(isLastPage ? granulePosition : -1).putInt(7).putInt(sequence++).putInt(0)
+                    .put((byte) pageSegments);
+            for (int i = 0; i < pageSegments; i++) {
+                page.put((byte) (isLastPage && i == pageSegments - 1 ? bodySize % 255 : 255));
+            }
+            page.put(packet, offset, bodySize);
+            offset += bodySize;
+            page.putInt(22, crc(page.array()));
+            out.write(page.array());
+        }
+        return sequence;
+    }
+
+    private static int crc(byte[] page) {
+        int crc = 0;
+        for (byte b : page) {
+            crc ^= (b & 0xFF) << 24;
+            for (int i = 0; i < 8; i++) {
+                crc = (crc & 0x80000000) != 0 ? (crc << 1) ^ 0x04C11DB7 : crc << 1;
+            }
+        }
+        return crc;
+    }
+
+    private static byte[] streamInfo(int sampleRate, long totalSamples) {
+        ByteBuffer block = ByteBuffer.allocate(34);
+        block.putShort((short) 4096).putShort((short) 4096).position(10);
+        // 20 bits of sample rate, 3 bits of channels - 1, 5 bits of bits per sample - 1, 36 bits of samples.
+        block.putLong((long) sampleRate << 44 | 1L << 41 | 15L << 36 | totalSamples);
+        return block.array();
+    }
+
+    private static byte[] flacBlock(int type, boolean isLast, byte[] data) {
+        ByteBuffer block = ByteBuffer.allocate(4 + data.length);
+        block.putInt((isLast ? 0x80000000 : 0) | type << 24 | data.length).put(data);
+        return block.array();
+    }
+
+    private static byte[] comments(String... comments) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] vendor = "mlms".getBytes(StandardCharsets.UTF_8);
+        out.write(littleEndian(vendor.length));
+        out.write(vendor);
+        out.write(littleEndian(comments.length));
+        for (String comment : comments) {
+            byte[] bytes = comment.getBytes(StandardCharsets.UTF_8);
+            out.write(littleEndian(bytes.length));
+            out.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] picture() {
+        byte[] mimeType = "image/png".getBytes(StandardCharsets.US_ASCII);
+        byte[] description = "Cover".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer picture = ByteBuffer.allocate(32 + mimeType.length + description.length + IMAGE.length);
+        picture.putInt(3).putInt(mimeType.length).put(mimeType).putInt(description.length).put(description)
+                .putInt(500).putInt(500).putInt(24).putInt(0).putInt(IMAGE.length).put(IMAGE);
+        return picture.array();
+    }
+
+    private static byte[] littleEndian(int value) {
+        return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+    }
+}